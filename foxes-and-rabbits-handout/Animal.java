@@ -17,6 +17,14 @@ public abstract class Animal
         Female;
     }
 
+    // Enum to represent what an animal died of
+    enum Cause{
+        AGE,
+        STARVATION,
+        PREDATION,
+        OVERCROWDING;
+    }
+
     // Whether the animal is alive or not.
     private boolean alive;
     // The animal's field.
@@ -27,6 +35,18 @@ public abstract class Animal
     private Environment clock;
     // The animal's gender
     protected Gender gender;
+    // The animal's age.
+    protected int age;
+    // The animal's food level, which is increased by eating.
+    protected int foodLevel;
+    // What the animal died of, or null if it is alive or was removed
+    // from the field for some other reason.
+    private Cause causeOfDeath;
+    // The animal this animal is eating in a synchronous step, until it
+    // is known whether it got there first. Null at other times.
+    private Animal prey;
+    // The food value of that animal.
+    private int preyFoodValue;
     
     /**
      * Create a new animal at location in field.
@@ -37,9 +57,10 @@ public abstract class Animal
     {
         alive = true;
         this.field = field;
-        setLocation(location);
         this.clock = clock;
+        // The gender is chosen first, as the field records it on placement.
         this.setGender();
+        setLocation(location);
     }
     
     /**
@@ -94,6 +115,59 @@ public abstract class Animal
         return str;
     }
 
+    /**
+     * Return the age of the animal.
+     * @return The age of the animal.
+     */
+    protected int getAge()
+    {
+        return age;
+    }
+
+    /**
+     * Return the food level of the animal. Plants do not eat, so
+     * theirs is always zero.
+     * @return The food level of the animal.
+     */
+    protected int getFoodLevel()
+    {
+        return foodLevel;
+    }
+
+    /**
+     * Give the animal a previously saved state, e.g. when a simulation
+     * is resumed from a file. The animal is taken out of the field and
+     * placed again so that the field records its new gender.
+     * @param age The saved age.
+     * @param foodLevel The saved food level.
+     * @param gender The saved gender.
+     */
+    protected void restoreState(int age, int foodLevel, Gender gender)
+    {
+        if(location != null) {
+            field.clear(location);
+        }
+        this.age = age;
+        this.foodLevel = foodLevel;
+        this.gender = gender;
+        if(location != null) {
+            field.place(this, location);
+        }
+    }
+
+    /**
+     * Give the animal a previously saved age and food level, keeping
+     * its gender. As nothing the field records changes, the animal is
+     * left where it is.
+     * @param age The saved age.
+     * @param foodLevel The saved food level.
+     */
+    protected void restoreState(int age, int foodLevel)
+    {
+        this.age = age;
+        this.foodLevel = foodLevel;
+    }
+
     /**
      * Make this animal act - that is: make it do
      * whatever it wants/needs to do.
@@ -101,6 +175,12 @@ public abstract class Animal
      */
     abstract public void act(List<Animal> newAnimals);
 
+    /**
+     * Return the species of this animal.
+     * @return The species of this animal.
+     */
+    abstract public Species getSpecies();
+
     /**
      * Check whether the animal is alive or not.
      * @return true if the animal is still alive.
@@ -124,6 +204,133 @@ public abstract class Animal
         }
     }
 
+    /**
+     * Indicate that the animal has died of the given cause.
+     * It is removed from the field. An animal that is already dead
+     * keeps the cause it first died of.
+     * @param cause What the animal died of.
+     */
+    protected void setDead(Cause cause)
+    {
+        if(alive) {
+            causeOfDeath = cause;
+            EngineMetrics.recordDeath(getSpecies(), cause);
+        }
+        setDead();
+    }
+
+    /**
+     * Return what the animal died of.
+     * @return The cause of death, or null if the animal is alive or
+     *         was removed without dying.
+     */
+    protected Cause getCauseOfDeath()
+    {
+        return causeOfDeath;
+    }
+
+    /**
+     * Catch up on steps the animal slept through without acting (see
+     * SleepScheduler). Each of them would have aged it and left its food
+     * level as it was, unless it was too hungry to last the step. The
+     * first of them decides whether it starves, as it would have died
+     * in that step, before it grew any older.
+     * @param steps The number of steps slept through.
+     */
+    protected void sleepFor(int steps)
+    {
+        if(steps == 0) {
+            return;
+        }
+        int maxAge = getSpecies().getMaxAge();
+        boolean oldAfterFirstStep = age + 1 > maxAge;
+        age += steps;
+        if(oldAfterFirstStep) {
+            setDead(Cause.AGE);
+        }
+        else if(foodLevel <= 1) {
+            setDead(Cause.STARVATION);
+        }
+        else if(age > maxAge) {
+            setDead(Cause.AGE);
+        }
+    }
+
+    /**
+     * Indicate that the animal has been eaten by a predator.
+     * It is removed from the field.
+     */
+    protected void setEaten()
+    {
+        setDead(Cause.PREDATION);
+    }
+
+    /**
+     * Eat another animal, which dies. While the field is frozen for a
+     * synchronous step, other animals may go for the same animal, so
+     * the meal is only remembered and the food level is left alone
+     * until the step is resolved (see finishMeal).
+     * @param food The animal to eat.
+     * @param foodValue The food level it gives.
+     */
+    protected void eat(Animal food, int foodValue)
+    {
+        if(field.isFrozen()) {
+            prey = food;
+            preyFoodValue = foodValue;
+        }
+        else {
+            foodLevel = foodValue;
+            EngineMetrics.recordPredation(getSpecies(), food.getSpecies());
+            food.setEaten();
+        }
+    }
+
+    /**
+     * Eat the plant in a cell, whether it is a Plant object or a plant
+     * of the plant layer of the field (see PlantLayer).
+     * @param location The cell of the plant.
+     * @param foodValue The food level it gives.
+     */
+    protected void eatPlant(Location location, int foodValue)
+    {
+        Object plant = field.getObjectAt(location);
+        if(plant != null) {
+            eat((Animal) plant, foodValue);
+        }
+        else {
+            // The plant layer is never used with a frozen field.
+            foodLevel = foodValue;
+            field.getPlantLayer().remove(location.getRow(), location.getCol());
+            EngineMetrics.recordPredation(getSpecies(), Species.PLANT);
+            EngineMetrics.recordDeath(Species.PLANT, Cause.PREDATION);
+        }
+    }
+
+    /**
+     * Return the animal this animal went to eat in a synchronous step.
+     * @return The animal, or null if it did not eat.
+     */
+    protected Animal getPrey()
+    {
+        return prey;
+    }
+
+    /**
+     * Finish the meal remembered by eat, once it is known whether this
+     * animal got to it first.
+     * @param eaten true if this animal eats it.
+     */
+    protected void finishMeal(boolean eaten)
+    {
+        if(eaten) {
+            foodLevel = preyFoodValue;
+            EngineMetrics.recordPredation(getSpecies(), prey.getSpecies());
+            prey.setEaten();
+        }
+        prey = null;
+    }
+
     /**
      * Return the animal's location.
      * @return The animal's location.
@@ -1,6 +1,5 @@
 import java.util.List;
 import java.util.Random;
-import java.util.Iterator;
 
 
 /**
@@ -14,20 +13,20 @@ public class Baboon extends Animal
 {
     // class variables
 
-    private static final int BREEDING_AGE = 12;
-    private static final int MAX_AGE = 35;
-    private static final double BREEDING_PROBABILITY = 0.6;
-    private static final int MAX_LITTER_SIZE = 3;
-    private static final int PLANT_FOOD_VALUE = 2;
-    private static final Random rand = Randomizer.getRandom();
+    static final int BREEDING_AGE = 12;
+    static final int MAX_AGE = 35;
+    static final double BREEDING_PROBABILITY = 0.6;
+    static final int MAX_LITTER_SIZE = 3;
+    static final int PLANT_FOOD_VALUE = 2;
+    // The species a baboon eats.
+    static final int DIET = Species.PLANT.bit();
+    // The hours of the day between which a baboon sleeps.
+    static final int SLEEP_START = 21;
+    static final int SLEEP_END = 23;
     
     // A shared male birth rate for animals of this species
     //private static final float maleBirthRate;
 
-    //instance fields
-    private int age;
-    private int foodLevel;
-
     /**
      * Create a new baboon. A baboon may be created with age
      * zero (a new born) or with a random age.
@@ -41,6 +40,7 @@ public class Baboon extends Animal
         super(field, location, clock);
         age = 0;
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(PLANT_FOOD_VALUE);
         }
@@ -50,6 +50,15 @@ public class Baboon extends Animal
         }
     }
     
+    /**
+     * Return the species of a baboon.
+     * @return Species.BABOON
+     */
+    public Species getSpecies()
+    {
+        return Species.BABOON;
+    }
+
     /**
      * This is what the baboon does most of the time - it runs 
      * around. Sometimes it will breed or die of old age.
@@ -64,6 +73,8 @@ public class Baboon extends Animal
             if (shouldSleep()) {
                 // maintain hunger level
                 decrementHunger();
+                // stay where it is while asleep
+                newLocation = getLocation();
             }
             else if (isAffectedByWeather()) {
                 // vulture can't hunt prey in fog
@@ -86,7 +97,7 @@ public class Baboon extends Animal
             }
             else {
                 // Overcrowding.
-                setDead();
+                setDead(Cause.OVERCROWDING);
             }
         }
     }
@@ -99,19 +110,14 @@ public class Baboon extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Plant) {
-                Plant plant = (Plant) animal;
-                if(plant.isAlive()) { 
-                    plant.setDead();
-                    foodLevel = PLANT_FOOD_VALUE;
-                    return where;
-                }
-            }
+        Location here = getLocation();
+        // Only live plants are in the field, so any plant found can be eaten.
+        int plants = field.adjacentSpeciesMask(here, DIET);
+        if(plants != 0) {
+            int direction = field.randomDirection(plants);
+            Location there = field.adjacentLocation(here, direction);
+            eatPlant(there, PLANT_FOOD_VALUE);
+            return there;
         }
         return null;
     }
@@ -124,7 +130,7 @@ public class Baboon extends Animal
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(Cause.AGE);
         }
     }
     
@@ -135,14 +141,20 @@ public class Baboon extends Animal
      */
     private void giveBirth(List<Animal> newBaboons)
     {
-        // Get a list of adjacent free locations.
+        // Use the free adjacent locations, chosen in a random order.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Baboon young = new Baboon(false, field, loc, getClock());
-            newBaboons.add(young);
+        if(births > 0) {
+            int free = field.freeAdjacentMask(here);
+            while(births > 0 && free != 0) {
+                int direction = field.randomDirection(free);
+                free &= ~(1 << direction);
+                Location loc = field.adjacentLocation(here, direction);
+                Baboon young = new Baboon(false, field, loc, getClock());
+                newBaboons.add(young);
+                births--;
+            }
         }
     }
         
@@ -153,6 +165,7 @@ public class Baboon extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
             births = rand.nextInt(MAX_LITTER_SIZE) + 1;
@@ -181,20 +194,7 @@ public class Baboon extends Animal
      */
     private boolean isCompatibleAnimal()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Baboon){
-                Baboon baboon = (Baboon) animal;
-                if(baboon.getGender() == Gender.Male){
-                    return true;
-                }
-                }
-            }
-        return false;
+        return getField().adjacentMaleMask(getLocation(), Species.BABOON.bit()) != 0;
     }
     
     /**
@@ -204,7 +204,7 @@ public class Baboon extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(Cause.STARVATION);
         }
     }
 
@@ -219,10 +219,17 @@ public class Baboon extends Animal
      */
     public boolean isAffectedByWeather() 
     {
-        Environment.Weather weather = getClock().getCurrentWeather();
+        return isAffectedBy(getClock().getCurrentWeather());
+    }
 
-        boolean isAffectedByWeather = false;
-        return isAffectedByWeather;
+    /**
+     * Check whether baboons are affected by the given weather.
+     * @param weather The weather.
+     * @return true if a baboon cannot hunt or graze in that weather.
+     */
+    static boolean isAffectedBy(Environment.Weather weather)
+    {
+        return false;
     }
     
     /**
@@ -234,7 +241,7 @@ public class Baboon extends Animal
     {
         int hourOfDay = getClock().getHourOfDay();
         
-        return hourOfDay >= 21 && hourOfDay <= 23;
+        return hourOfDay >= SLEEP_START && hourOfDay <= SLEEP_END;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+
+/**
+ * Keeps count of what is in a field, by species code and gender, as
+ * occupants are placed and cleared, so that the population can be read
+ * without looking at the field at all.
+ *
+ * The counts are kept separately for each tile of DirtyTiles. Animals
+ * acting on several threads at once are always in tiles far enough
+ * apart that they never change cells of the same tile (see TiledStepper
+ * and PlantLayer), so they never update the same count. The changes of
+ * each tile are added into the totals for the whole field when they are
+ * next read, which must not happen while a step is running.
+ *
+ * Like the chunks of ChunkedFieldStorage, the counts of a tile are only
+ * allocated once something is placed in it, and are freed again when
+ * it is found empty, so a large, mostly empty field costs little. The
+ * tiles with changes are listed as they first change, so reading the
+ * counts only looks at those tiles, and costs nothing if none changed.
+ *
+ * An occupant that is not an Animal, such as a plant of a plant layer,
+ * is counted but has no gender.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class Census
+{
+    // The number of codes counted: each species and Species.UNKNOWN_CODE.
+    private static final int CODES = Species.UNKNOWN_CODE + 1;
+    // The counts kept for each code: every occupant, the males and the
+    // females, in that order, CODES entries each.
+    private static final int MALES = CODES;
+    private static final int FEMALES = 2 * CODES;
+    private static final int SLOTS = 3 * CODES;
+    // After the changes, each tile keeps the number of occupants in it
+    // and whether it is listed as changed, 1 if so.
+    private static final int OCCUPANTS = SLOTS;
+    private static final int LISTED = SLOTS + 1;
+    private static final int TILE_SIZE = SLOTS + 2;
+
+    // The number of tiles across the field.
+    private int tileCols;
+    // The change to each count in each tile since the totals were
+    // brought up to date, TILE_SIZE entries per tile. Null where a
+    // tile was empty when last read.
+    private int[][] changes;
+    // The tiles with changes not yet in the totals, in the order they
+    // first changed, and how many there are.
+    private int[] listed;
+    private int listedCount;
+    // The counts for the whole field, as of the last time they were read.
+    private int[] totals;
+
+    /**
+     * Create an empty census of a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public Census(int depth, int width)
+    {
+        int tileRows = (depth + DirtyTiles.TILE_ROWS - 1) / DirtyTiles.TILE_ROWS;
+        tileCols = (width + DirtyTiles.TILE_COLS - 1) / DirtyTiles.TILE_COLS;
+        changes = new int[tileRows * tileCols][];
+        listed = new int[16];
+        listedCount = 0;
+        totals = new int[SLOTS];
+    }
+
+    /**
+     * Count an occupant placed in a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param code The species code of the occupant.
+     * @param gender The gender of the occupant, or null if it has none.
+     */
+    public void add(int row, int col, int code, Animal.Gender gender)
+    {
+        update(row, col, code, gender, 1);
+    }
+
+    /**
+     * Stop counting an occupant cleared from a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param code The species code of the occupant.
+     * @param gender The gender of the occupant, or null if it has none.
+     */
+    public void remove(int row, int col, int code, Animal.Gender gender)
+    {
+        update(row, col, code, gender, -1);
+    }
+
+    /**
+     * Forget every occupant, e.g. when the field is emptied.
+     */
+    public void clear()
+    {
+        Arrays.fill(changes, null);
+        listedCount = 0;
+        Arrays.fill(totals, 0);
+    }
+
+    /**
+     * Return the number of occupants with a species code.
+     * @param code The species code, from 1 to Species.UNKNOWN_CODE.
+     * @return The number in the field.
+     */
+    public int getCount(int code)
+    {
+        gather();
+        return totals[code];
+    }
+
+    /**
+     * Return the number of male animals with a species code.
+     * @param code The species code, from 1 to Species.UNKNOWN_CODE.
+     * @return The number in the field.
+     */
+    public int getMales(int code)
+    {
+        gather();
+        return totals[MALES + code];
+    }
+
+    /**
+     * Return the number of female animals with a species code.
+     * @param code The species code, from 1 to Species.UNKNOWN_CODE.
+     * @return The number in the field.
+     */
+    public int getFemales(int code)
+    {
+        gather();
+        return totals[FEMALES + code];
+    }
+
+    /**
+     * Change the counts of the tile of a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param code The species code of the occupant.
+     * @param gender The gender of the occupant, or null if it has none.
+     * @param amount 1 for an occupant placed, -1 for one cleared.
+     */
+    private void update(int row, int col, int code, Animal.Gender gender, int amount)
+    {
+        int tile = (row / DirtyTiles.TILE_ROWS) * tileCols + col / DirtyTiles.TILE_COLS;
+        int[] counts = changes[tile];
+        if(counts == null) {
+            counts = new int[TILE_SIZE];
+            changes[tile] = counts;
+        }
+        counts[code] += amount;
+        if(gender == Animal.Gender.Male) {
+            counts[MALES + code] += amount;
+        }
+        else if(gender == Animal.Gender.Female) {
+            counts[FEMALES + code] += amount;
+        }
+        counts[OCCUPANTS] += amount;
+        if(counts[LISTED] == 0) {
+            counts[LISTED] = 1;
+            list(tile);
+        }
+    }
+
+    /**
+     * Add a tile to the tiles with changes. Tiles changed on different
+     * threads may be listed at the same time, but each is only listed
+     * once between reads.
+     * @param tile The tile.
+     */
+    private synchronized void list(int tile)
+    {
+        if(listedCount == listed.length) {
+            listed = Arrays.copyOf(listed, listed.length * 2);
+        }
+        listed[listedCount++] = tile;
+    }
+
+    /**
+     * Add the changes of the listed tiles into the totals, and free
+     * the counts of those left empty.
+     */
+    private void gather()
+    {
+        for(int i = 0; i < listedCount; i++) {
+            int tile = listed[i];
+            int[] counts = changes[tile];
+            for(int slot = 0; slot < SLOTS; slot++) {
+                totals[slot] += counts[slot];
+                counts[slot] = 0;
+            }
+            counts[LISTED] = 0;
+            if(counts[OCCUPANTS] == 0) {
+                changes[tile] = null;
+            }
+        }
+        listedCount = 0;
+    }
+}
@@ -0,0 +1,357 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A binary checkpoint of the whole state of a simulation, from which
+ * it can be resumed exactly as if it had never stopped (see
+ * Simulator.saveCheckpoint and Simulator.loadCheckpoint).
+ *
+ * The random numbers of a simulation are keyed by its seed, the step
+ * and the cell (see Randomizer), so the seed is all of their state that
+ * needs saving. Besides it, the checkpoint holds the step, the hour,
+ * day and weather of the environment, the steps each species has slept
+ * through, and then every animal in the order of the list of animals,
+ * as that order decides which animal acts first. Each animal is a fixed
+ * size record: species code, gender, row, column, age and food level.
+ * The plants of a plant layer follow as row, column and age.
+ *
+ * The file is written and read through a channel with one direct
+ * buffer, so that large states go to and from disk in big blocks
+ * without being copied through the heap.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class Checkpoint
+{
+    // Identifies a checkpoint file ("SAVC").
+    private static final int MAGIC = 0x53415643;
+    // The version of the file layout.
+    private static final int VERSION = 1;
+    // The size of the buffer the file is written and read through.
+    private static final int BUFFER_SIZE = 1 << 20;
+    // The size of the record of an animal.
+    private static final int ANIMAL_SIZE = 14;
+    // The size of the record of a plant of a plant layer.
+    private static final int LAYER_PLANT_SIZE = 9;
+
+    // The open file.
+    private FileChannel channel;
+    // The buffer between the file and the state.
+    private ByteBuffer buffer;
+
+    // The state read from the header of the file.
+    private int depth, width;
+    private long seed;
+    private int step;
+    private int hourOfDay;
+    private int day;
+    private Environment.Weather weather;
+    private int[] slept;
+    private boolean plantLayer;
+
+    /**
+     * Write a checkpoint, replacing any existing file.
+     * @param file The file to write.
+     * @param step The step the simulation is at.
+     * @param clock The environment of the simulation.
+     * @param scheduler The sleep of the species.
+     * @param field The field, which must be up to date with the animals.
+     * @param animals The animals, in the order they act.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, int step, Environment clock, SleepScheduler scheduler,
+                             Field field, List<Animal> animals)
+        throws IOException
+    {
+        Checkpoint checkpoint = new Checkpoint(FileChannel.open(file, StandardOpenOption.CREATE,
+                                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                                StandardOpenOption.WRITE));
+        try {
+            checkpoint.writeState(step, clock, scheduler, field, animals);
+        }
+        finally {
+            checkpoint.channel.close();
+        }
+    }
+
+    /**
+     * Open a checkpoint and read its header. The animals are read
+     * afterwards by readAnimals.
+     * @param file The file to read.
+     * @return The checkpoint.
+     * @throws IOException If the file cannot be read or is not a checkpoint.
+     */
+    public static Checkpoint open(Path file) throws IOException
+    {
+        Checkpoint checkpoint = new Checkpoint(FileChannel.open(file, StandardOpenOption.READ));
+        checkpoint.buffer.limit(0);
+        try {
+            checkpoint.readHeader(file);
+        }
+        catch(IOException e) {
+            checkpoint.close();
+            throw e;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Create a checkpoint on an open file.
+     * @param channel The open file.
+     */
+    private Checkpoint(FileChannel channel)
+    {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * @return The depth of the saved field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the saved field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The seed of the saved simulation.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return The step the saved simulation was at.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return true if the plants were kept in a plant layer.
+     */
+    public boolean hasPlantLayer()
+    {
+        return plantLayer;
+    }
+
+    /**
+     * Restore the environment and sleep saved in the checkpoint, and
+     * recreate its animals. The plants of a plant layer go into the
+     * layer of the field, which must have one if hasPlantLayer.
+     * @param field The empty field to place the animals in.
+     * @param clock The environment to restore.
+     * @param scheduler The sleep scheduler to restore.
+     * @param animals The list to add the animals to, in their saved order.
+     * @throws IOException If the file cannot be read.
+     */
+    public void readAnimals(Field field, Environment clock, SleepScheduler scheduler,
+                            List<Animal> animals)
+        throws IOException
+    {
+        clock.restore(hourOfDay, day, weather);
+        scheduler.restore(slept);
+        long count = readLong();
+        for(long i = 0; i < count; i++) {
+            fill(ANIMAL_SIZE);
+            int code = buffer.get();
+            Animal.Gender gender = buffer.get() != 0 ? Animal.Gender.Male : Animal.Gender.Female;
+            int row = buffer.getInt();
+            int col = buffer.getInt();
+            int age = buffer.getShort();
+            int foodLevel = buffer.getShort();
+            Species species = Species.fromCode(code);
+            if(species == null) {
+                throw new IOException("Unknown species code in checkpoint: " + code);
+            }
+            Animal animal = species.create(false, field, new Location(row, col), clock);
+            animal.restoreState(age, foodLevel, gender);
+            animals.add(animal);
+        }
+        if(plantLayer) {
+            PlantLayer plants = field.getPlantLayer();
+            long plantCount = readLong();
+            for(long i = 0; i < plantCount; i++) {
+                fill(LAYER_PLANT_SIZE);
+                int row = buffer.getInt();
+                int col = buffer.getInt();
+                plants.plant(row, col, buffer.get());
+            }
+        }
+    }
+
+    /**
+     * Close the file.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Write the whole state to the file.
+     * @param step The step the simulation is at.
+     * @param clock The environment of the simulation.
+     * @param scheduler The sleep of the species.
+     * @param field The field.
+     * @param animals The animals, in the order they act.
+     * @throws IOException If the file cannot be written.
+     */
+    private void writeState(int step, Environment clock, SleepScheduler scheduler,
+                            Field field, List<Animal> animals)
+        throws IOException
+    {
+        PlantLayer plants = field.getPlantLayer();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(field.getDepth());
+        buffer.putInt(field.getWidth());
+        buffer.putLong(clock.getRandomizer().getSeed());
+        buffer.putInt(step);
+        buffer.putInt(clock.getHourOfDay());
+        buffer.putInt(clock.getDay());
+        buffer.put((byte) clock.getCurrentWeather().ordinal());
+        for(int code = 1; code <= Species.COUNT; code++) {
+            buffer.putInt(scheduler.getSlept(code));
+        }
+        buffer.put((byte) (plants != null ? 1 : 0));
+
+        long count = 0;
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                count++;
+            }
+        }
+        buffer.putLong(count);
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                makeRoom(ANIMAL_SIZE);
+                Location location = animal.getLocation();
+                buffer.put((byte) animal.getSpecies().getCode());
+                buffer.put((byte) (animal.getGender() == Animal.Gender.Male ? 1 : 0));
+                buffer.putInt(location.getRow());
+                buffer.putInt(location.getCol());
+                buffer.putShort((short) animal.getAge());
+                buffer.putShort((short) animal.getFoodLevel());
+            }
+        }
+
+        if(plants != null) {
+            int depth = field.getDepth();
+            int width = field.getWidth();
+            long plantCount = 0;
+            for(int row = 0; row < depth; row++) {
+                for(int col = plants.nextPlantColumn(row, 0); col < width; col = plants.nextPlantColumn(row, col + 1)) {
+                    plantCount++;
+                }
+            }
+            makeRoom(Long.BYTES);
+            buffer.putLong(plantCount);
+            for(int row = 0; row < depth; row++) {
+                for(int col = plants.nextPlantColumn(row, 0); col < width; col = plants.nextPlantColumn(row, col + 1)) {
+                    makeRoom(LAYER_PLANT_SIZE);
+                    buffer.putInt(row);
+                    buffer.putInt(col);
+                    buffer.put((byte) plants.getAge(row, col));
+                }
+            }
+        }
+        drain();
+        channel.force(false);
+    }
+
+    /**
+     * Read and check the header of the file.
+     * @param file The file, for the error message.
+     * @throws IOException If the file cannot be read or is not a checkpoint.
+     */
+    private void readHeader(Path file) throws IOException
+    {
+        fill(2 * Integer.BYTES);
+        if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a checkpoint file: " + file);
+        }
+        fill(5 * Integer.BYTES + Long.BYTES + 1 + Species.COUNT * Integer.BYTES + 1);
+        depth = buffer.getInt();
+        width = buffer.getInt();
+        seed = buffer.getLong();
+        step = buffer.getInt();
+        hourOfDay = buffer.getInt();
+        day = buffer.getInt();
+        weather = Environment.Weather.values()[buffer.get()];
+        slept = new int[Species.COUNT];
+        for(int index = 0; index < Species.COUNT; index++) {
+            slept[index] = buffer.getInt();
+        }
+        plantLayer = buffer.get() != 0;
+    }
+
+    /**
+     * @return The next long of the file.
+     */
+    private long readLong() throws IOException
+    {
+        fill(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    /**
+     * Write out the buffer if it has less than the given room left.
+     * @param bytes The number of bytes about to be put in the buffer.
+     */
+    private void makeRoom(int bytes) throws IOException
+    {
+        if(buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    /**
+     * Write the contents of the buffer to the file and empty it.
+     */
+    private void drain() throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read from the file until the buffer holds at least the given
+     * number of unread bytes.
+     * @param bytes The number of bytes about to be read from the buffer.
+     * @throws EOFException If the file ends first.
+     */
+    private void fill(int bytes) throws IOException
+    {
+        if(buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while(buffer.position() < bytes) {
+            if(channel.read(buffer) < 0) {
+                throw new EOFException("Checkpoint file ends early");
+            }
+        }
+        buffer.flip();
+    }
+}
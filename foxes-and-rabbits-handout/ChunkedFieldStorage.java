@@ -0,0 +1,229 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Field storage for very large, mostly empty fields. The grid is
+ * divided into chunks which are only allocated when something
+ * is placed in them, and are freed again when they become empty, so
+ * memory grows with the occupied area rather than with the size of
+ * the field. Scans of the field skip chunks that are not allocated.
+ *
+ * Cells in different chunks may be changed by different threads at
+ * the same time, as the shared bookkeeping of the chunks is atomic.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class ChunkedFieldStorage implements FieldStorage
+{
+    // The number of rows of cells in a chunk, and its log2. Chunks are
+    // kept short so that scattered animals do not each pin a large chunk.
+    public static final int CHUNK_ROWS = 16;
+    private static final int ROW_SHIFT = 4;
+    // The number of columns of cells in a chunk, and its log2. A row of
+    // a chunk is exactly one word of its occupancy bitmap.
+    public static final int CHUNK_COLS = 64;
+    private static final int COL_SHIFT = 6;
+
+    // The depth and width of the grid.
+    private int depth, width;
+    // The number of chunks down and across the grid.
+    private int chunkRows, chunkCols;
+    // The chunks, row by row. Null where a chunk is empty.
+    private Chunk[] chunks;
+    // The number of allocated chunks in each row of chunks.
+    private AtomicIntegerArray chunksInRow;
+    // An empty chunk kept for reuse, so that an animal moving back and
+    // forth across a chunk boundary does not allocate every step.
+    private AtomicReference<Chunk> spare;
+
+    /**
+     * Create storage for a grid of the given dimensions.
+     * No cells are allocated until something is placed.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public ChunkedFieldStorage(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        chunkRows = (depth + CHUNK_ROWS - 1) >>> ROW_SHIFT;
+        chunkCols = (width + CHUNK_COLS - 1) >>> COL_SHIFT;
+        chunks = new Chunk[chunkRows * chunkCols];
+        chunksInRow = new AtomicIntegerArray(chunkRows);
+        spare = new AtomicReference<>();
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The number of chunks currently allocated.
+     */
+    public int getAllocatedChunks()
+    {
+        int allocated = 0;
+        for(int i = 0; i < chunkRows; i++) {
+            allocated += chunksInRow.get(i);
+        }
+        return allocated;
+    }
+
+    public FieldStorage createEmpty()
+    {
+        return new ChunkedFieldStorage(depth, width);
+    }
+
+    public Object get(int row, int col)
+    {
+        Chunk chunk = chunkAt(row, col);
+        if(chunk == null) {
+            return null;
+        }
+        return chunk.occupants[cellIndex(row, col)];
+    }
+
+    public int getSpeciesCode(int row, int col)
+    {
+        Chunk chunk = chunkAt(row, col);
+        if(chunk == null) {
+            return Species.EMPTY_CODE;
+        }
+        return chunk.species[cellIndex(row, col)];
+    }
+
+    public void set(int row, int col, Object occupant)
+    {
+        int index = chunkIndex(row, col);
+        Chunk chunk = chunks[index];
+        if(chunk == null) {
+            chunk = allocate();
+            chunks[index] = chunk;
+            chunksInRow.incrementAndGet(row >>> ROW_SHIFT);
+        }
+        int cell = cellIndex(row, col);
+        if(chunk.occupants[cell] == null) {
+            chunk.count++;
+        }
+        chunk.occupants[cell] = occupant;
+        chunk.species[cell] = (byte) Species.codeOf(occupant);
+        chunk.occupied[row & (CHUNK_ROWS - 1)] |= 1L << col;
+    }
+
+    public void clear(int row, int col)
+    {
+        int index = chunkIndex(row, col);
+        Chunk chunk = chunks[index];
+        if(chunk == null) {
+            return;
+        }
+        int cell = cellIndex(row, col);
+        if(chunk.occupants[cell] != null) {
+            chunk.occupants[cell] = null;
+            chunk.species[cell] = Species.EMPTY_CODE;
+            chunk.occupied[row & (CHUNK_ROWS - 1)] &= ~(1L << col);
+            chunk.count--;
+            if(chunk.count == 0) {
+                // Every cell of the chunk is empty again, so it can be reused as it is.
+                chunks[index] = null;
+                chunksInRow.decrementAndGet(row >>> ROW_SHIFT);
+                spare.set(chunk);
+            }
+        }
+    }
+
+    public void clearAll()
+    {
+        Arrays.fill(chunks, null);
+        chunksInRow = new AtomicIntegerArray(chunkRows);
+        spare.set(null);
+    }
+
+    public int nextOccupiedRow(int row)
+    {
+        while(row < depth) {
+            if(chunksInRow.get(row >>> ROW_SHIFT) > 0) {
+                return row;
+            }
+            // Skip to the first row of the next row of chunks.
+            row = ((row >>> ROW_SHIFT) + 1) << ROW_SHIFT;
+        }
+        return depth;
+    }
+
+    public int nextOccupiedColumn(int row, int col)
+    {
+        while(col < width) {
+            Chunk chunk = chunkAt(row, col);
+            if(chunk != null) {
+                long bits = chunk.occupied[row & (CHUNK_ROWS - 1)] >>> col;
+                if(bits != 0) {
+                    return col + Long.numberOfTrailingZeros(bits);
+                }
+            }
+            // Skip to the first column of the next chunk.
+            col = ((col >>> COL_SHIFT) + 1) << COL_SHIFT;
+        }
+        return width;
+    }
+
+    /**
+     * Return an empty chunk, reusing the spare one if there is one.
+     * @return An empty chunk.
+     */
+    private Chunk allocate()
+    {
+        Chunk chunk = spare.getAndSet(null);
+        if(chunk != null) {
+            return chunk;
+        }
+        return new Chunk();
+    }
+
+    /**
+     * @return The chunk holding a cell, or null if it is not allocated.
+     */
+    private Chunk chunkAt(int row, int col)
+    {
+        return chunks[chunkIndex(row, col)];
+    }
+
+    /**
+     * @return The index in chunks of the chunk holding a cell.
+     */
+    private int chunkIndex(int row, int col)
+    {
+        return (row >>> ROW_SHIFT) * chunkCols + (col >>> COL_SHIFT);
+    }
+
+    /**
+     * @return The index of a cell within its chunk.
+     */
+    private static int cellIndex(int row, int col)
+    {
+        return ((row & (CHUNK_ROWS - 1)) << COL_SHIFT) | (col & (CHUNK_COLS - 1));
+    }
+
+    /**
+     * A block of cells, stored row by row.
+     */
+    private static class Chunk
+    {
+        // The species code of each cell.
+        byte[] species = new byte[CHUNK_ROWS * CHUNK_COLS];
+        // The occupant of each cell.
+        Object[] occupants = new Object[CHUNK_ROWS * CHUNK_COLS];
+        // One word per row of the chunk, with a bit set for each occupied cell.
+        long[] occupied = new long[CHUNK_ROWS];
+        // The number of occupied cells.
+        int count;
+    }
+}
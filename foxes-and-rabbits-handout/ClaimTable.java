@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+/**
+ * The claims made on cells during a step: for each cell, the claim
+ * with the highest priority so far, ties going to the lowest
+ * claimant. An open addressing hash table, so that claims cost no
+ * more than a few array accesses. Used by the steppers that share
+ * out cells after every animal has acted.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+class ClaimTable
+{
+    // Marks an unused slot.
+    private static final long EMPTY = -1;
+
+    // The cell of each slot.
+    private long[] cells = new long[16];
+    // The best priority claimed for the cell of each slot.
+    private long[] priorities = new long[16];
+    // The claimant with that priority.
+    private int[] claimants = new int[16];
+
+    /**
+     * Empty the table, making room for the given number of claims.
+     * @param expected The number of claims to make room for.
+     */
+    void reset(int expected)
+    {
+        int size = cells.length;
+        while(size < expected * 2) {
+            size *= 2;
+        }
+        if(size != cells.length) {
+            cells = new long[size];
+            priorities = new long[size];
+            claimants = new int[size];
+        }
+        Arrays.fill(cells, EMPTY);
+    }
+
+    /**
+     * Claim a cell. The claim is kept if it beats the best one so far.
+     * @param cell The cell.
+     * @param priority The priority of the claim.
+     * @param claimant Who made the claim.
+     */
+    void offer(long cell, long priority, int claimant)
+    {
+        int slot = slotOf(cell);
+        if(cells[slot] == EMPTY) {
+            cells[slot] = cell;
+            priorities[slot] = priority;
+            claimants[slot] = claimant;
+        }
+        else if(priority > priorities[slot]
+                || (priority == priorities[slot] && claimant < claimants[slot])) {
+            priorities[slot] = priority;
+            claimants[slot] = claimant;
+        }
+    }
+
+    /**
+     * @return The winning claimant of a cell that has been claimed.
+     */
+    int winner(long cell)
+    {
+        return claimants[slotOf(cell)];
+    }
+
+    /**
+     * @return The slot holding a cell, or the empty slot it would go in.
+     */
+    private int slotOf(long cell)
+    {
+        int mask = cells.length - 1;
+        int slot = (int) CounterRandom.combine(0, cell) & mask;
+        while(cells[slot] != EMPTY && cells[slot] != cell) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * A table of counts indexed by a small dense id, such as the code of a
+ * species (see Species.getCode). Counting by id into an array, rather
+ * than looking a counter up by class, costs an array access per count.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public interface CountTable
+{
+    /**
+     * Add to the count of an id.
+     * @param id The id.
+     * @param amount The amount to add, which may be negative.
+     */
+    void add(int id, long amount);
+
+    /**
+     * Add one to the count of an id.
+     * @param id The id.
+     */
+    default void increment(int id)
+    {
+        add(id, 1);
+    }
+
+    /**
+     * Return the count of an id.
+     * @param id The id.
+     * @return The count.
+     */
+    long get(int id);
+
+    /**
+     * Set the count of an id to zero.
+     * @param id The id.
+     */
+    void reset(int id);
+
+    /**
+     * Set every count to zero.
+     */
+    void reset();
+}
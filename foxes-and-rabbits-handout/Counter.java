@@ -1,10 +1,10 @@
-import java.awt.Color;
-
 /**
  * Provide a counter for a participant in the simulation.
  * This includes an identifying string and a count of how
  * many participants of this type currently exist within 
- * the simulation.
+ * the simulation. The count itself is kept in a CountTable,
+ * under the id of the participant's type, and the counter
+ * is a view of it.
  * 
  * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
  * @version 2016.02.29
@@ -13,17 +13,32 @@ public class Counter
 {
     // A name for this type of simulation participant
     private String name;
-    // How many of this type exist in the simulation.
-    private int count;
+    // The table holding the count, and the id it is held under.
+    private CountTable table;
+    private int id;
 
     /**
-     * Provide a name for one of the simulation types.
+     * Provide a name for one of the simulation types, with a count
+     * of its own.
      * @param name  A name, e.g. "Lion".
      */
     public Counter(String name)
+    {
+        this(name, new PlainCountTable(1), 0);
+    }
+
+    /**
+     * Provide a name for one of the simulation types, whose count
+     * is kept in a table.
+     * @param name  A name, e.g. "Lion".
+     * @param table The table holding the count.
+     * @param id The id the count is held under, e.g. a species code.
+     */
+    public Counter(String name, CountTable table, int id)
     {
         this.name = name;
-        count = 0;
+        this.table = table;
+        this.id = id;
     }
     
     /**
@@ -39,7 +54,7 @@ public class Counter
      */
     public int getCount()
     {
-        return count;
+        return (int) table.get(id);
     }
 
     /**
@@ -47,7 +62,16 @@ public class Counter
      */
     public void increment()
     {
-        count++;
+        table.increment(id);
+    }
+    
+    /**
+     * Add to the current count.
+     * @param amount The amount to add.
+     */
+    public void add(int amount)
+    {
+        table.add(id, amount);
     }
     
     /**
@@ -55,6 +79,6 @@ public class Counter
      */
     public void reset()
     {
-        count = 0;
+        table.reset(id);
     }
 }
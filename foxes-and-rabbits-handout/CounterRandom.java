@@ -0,0 +1,95 @@
+import java.util.Random;
+
+/**
+ * A counter-based random generator. The n-th number drawn is a hash
+ * of the key the generator was started with and n (the SplitMix64
+ * mixing function), so a generator started with the same key always
+ * draws the same numbers, and setting a new key costs nothing.
+ *
+ * Unlike java.util.Random this is not safe to share between threads;
+ * each thread has its own (see Randomizer).
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+@SuppressWarnings("serial")
+public class CounterRandom extends Random
+{
+    // The step between counter values: the golden ratio in 64 bits.
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // The key, advanced by GOLDEN_GAMMA for every number drawn.
+    private long counter;
+
+    /**
+     * Create a generator started with the given key.
+     * @param key The key.
+     */
+    public CounterRandom(long key)
+    {
+        super(key);
+    }
+
+    /**
+     * Start the generator again with a new key.
+     * @param key The key.
+     */
+    public void setSeed(long key)
+    {
+        counter = key;
+    }
+
+    /**
+     * @return The next 64 random bits.
+     */
+    public long nextLong()
+    {
+        counter += GOLDEN_GAMMA;
+        return mix(counter);
+    }
+
+    /**
+     * @return A random number between 0 (inclusive) and 1 (exclusive),
+     *         with 53 random bits.
+     */
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Return the given number of random bits. All the other methods
+     * of Random draw their numbers from this.
+     * @param bits The number of bits, at most 32.
+     * @return The random bits.
+     */
+    protected int next(int bits)
+    {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * Combine numbers into a key, so that different combinations give
+     * unrelated streams of numbers.
+     * @param key The key to extend.
+     * @param value The number to add to it.
+     * @return The new key.
+     */
+    public static long combine(long key, long value)
+    {
+        return mix(key + GOLDEN_GAMMA * (value + 1));
+    }
+
+    /**
+     * The SplitMix64 finaliser: a hash of 64 bits to 64 bits in which
+     * every input bit affects every output bit.
+     * @param z The value to hash.
+     * @return The hashed value.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+/**
+ * Records which parts of a field have changed, so that whatever looks
+ * at the field after a step (the view, the statistics) only has to
+ * look again at those parts rather than at every cell.
+ *
+ * The field is divided into tiles of TILE_ROWS by TILE_COLS cells, the
+ * size of the chunks of ChunkedFieldStorage. Whenever a cell is placed
+ * or cleared its tile is stamped with the current epoch. Each reader
+ * keeps the stamp returned by its last call to advance, and a tile has
+ * changed for it if the tile's stamp is at least that. Stamps are only
+ * written with the epoch of the step being run, so animals acting on
+ * several threads may stamp the same tile at once.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class DirtyTiles
+{
+    // The number of rows in a tile.
+    public static final int TILE_ROWS = ChunkedFieldStorage.CHUNK_ROWS;
+    // The number of columns in a tile.
+    public static final int TILE_COLS = ChunkedFieldStorage.CHUNK_COLS;
+
+    // The number of tiles down and across the field.
+    private int tileRows, tileCols;
+    // The epoch in which each tile last changed.
+    private int[] changed;
+    // The epoch changes are currently stamped with.
+    private int epoch;
+
+    /**
+     * Create a record of the changes to a field of the given size. Every
+     * tile counts as changed for a reader that has not yet looked.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public DirtyTiles(int depth, int width)
+    {
+        tileRows = (depth + TILE_ROWS - 1) / TILE_ROWS;
+        tileCols = (width + TILE_COLS - 1) / TILE_COLS;
+        changed = new int[tileRows * tileCols];
+        epoch = 1;
+    }
+
+    /**
+     * @return The number of tiles down the field.
+     */
+    public int getTileRows()
+    {
+        return tileRows;
+    }
+
+    /**
+     * @return The number of tiles across the field.
+     */
+    public int getTileCols()
+    {
+        return tileCols;
+    }
+
+    /**
+     * Record that a cell has changed.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    public void mark(int row, int col)
+    {
+        changed[(row / TILE_ROWS) * tileCols + col / TILE_COLS] = epoch;
+    }
+
+    /**
+     * Record that every cell has changed, e.g. when the field is emptied.
+     */
+    public void markAll()
+    {
+        Arrays.fill(changed, epoch);
+    }
+
+    /**
+     * Start a new epoch, once a reader has looked at the changes so
+     * far. Must not be called while a step is running.
+     * @return The stamp for the reader to pass to hasChanged to find
+     *         the changes made from now on.
+     */
+    public int advance()
+    {
+        epoch++;
+        return epoch;
+    }
+
+    /**
+     * Check whether a tile has changed since a reader last looked.
+     * @param tileRow The row of the tile.
+     * @param tileCol The column of the tile.
+     * @param since The stamp returned to the reader by advance, or 0
+     *              if it has not looked before.
+     * @return true if a cell of the tile has been placed or cleared.
+     */
+    public boolean hasChanged(int tileRow, int tileCol, int since)
+    {
+        return changed[tileRow * tileCols + tileCol] >= since;
+    }
+}
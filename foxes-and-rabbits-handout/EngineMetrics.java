@@ -0,0 +1,441 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records where the time of each step of a simulation goes and what
+ * happens in it: the time of the step, the time the animals of each
+ * species spend acting, and the animals that act, are born, move, die
+ * of each cause and are eaten by each predator (see MetricsSnapshot).
+ * The metrics of the last step, and of every step since they were
+ * started, can be read in the same process with getLastStep and
+ * getTotals, or over JMX once registered.
+ *
+ * Each thread that runs animals counts into a Recorder of its own,
+ * bound to it while it runs them, so counting costs a few array
+ * increments and threads never share a count. The deaths by cause and
+ * the meals by predator and prey, the largest tallies, are instead
+ * kept once for all the threads, in StripedCountTables in which each
+ * thread counts into a stripe of its own. The recorders and the tables
+ * are added up and emptied at the end of each step, when no thread is
+ * counting.
+ * Reading the clock costs more than most animals take to act, so only
+ * one animal in SAMPLE of each species is timed, and the time spent
+ * acting is estimated from those.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class EngineMetrics implements EngineMetricsMXBean
+{
+    // The number of entries of the counts by species, indexed by code.
+    private static final int CODES = MetricsSnapshot.CODES;
+    // The number of causes of death.
+    private static final int CAUSES = MetricsSnapshot.CAUSES;
+    // One animal in this many is timed as it acts. A power of two.
+    public static final int SAMPLE = 16;
+    // The recorder bound to each thread while it runs animals, or null.
+    private static final ThreadLocal<Recorder> bound = new ThreadLocal<>();
+
+    // The deaths of the step, CAUSES ids per species code, and the
+    // animals eaten, CODES ids of prey per predator code, counted by
+    // every thread.
+    private CountTable deaths;
+    private CountTable predations;
+    // The recorder of each thread that has run animals for these metrics.
+    private ThreadLocal<Recorder> local;
+    // Every recorder of these metrics, to be added up at each step.
+    private List<Recorder> recorders;
+    // The metrics of the last step, and of every step so far.
+    private volatile MetricsSnapshot lastStep;
+    private volatile MetricsSnapshot totals;
+    // The name the metrics are registered under, or null.
+    private ObjectName name;
+
+    /**
+     * Create metrics with nothing recorded.
+     */
+    public EngineMetrics()
+    {
+        deaths = new StripedCountTable(CODES * CAUSES);
+        predations = new StripedCountTable(CODES * CODES);
+        local = ThreadLocal.withInitial(this::newRecorder);
+        recorders = new ArrayList<>();
+        lastStep = new MetricsSnapshot();
+        totals = lastStep;
+    }
+
+    /**
+     * Bind the recorder of the current thread to it, so that the deaths
+     * and meals of the animals it runs are counted (see recordDeath and
+     * recordPredation). unbind must be called when they have run.
+     * @return The recorder of the thread.
+     */
+    public Recorder bind()
+    {
+        Recorder recorder = local.get();
+        bound.set(recorder);
+        return recorder;
+    }
+
+    /**
+     * Stop counting the deaths and meals of animals run on the current thread.
+     */
+    public static void unbind()
+    {
+        bound.set(null);
+    }
+
+    /**
+     * Count the death of an animal, if the thread it died on is bound
+     * to a recorder.
+     * @param species The species of the animal.
+     * @param cause What it died of.
+     */
+    public static void recordDeath(Species species, Animal.Cause cause)
+    {
+        Recorder recorder = bound.get();
+        if(recorder != null) {
+            recorder.death(species.getCode(), cause);
+        }
+    }
+
+    /**
+     * Count an animal eaten by another, if the thread it was eaten on
+     * is bound to a recorder.
+     * @param predator The species that ate.
+     * @param prey The species eaten.
+     */
+    public static void recordPredation(Species predator, Species prey)
+    {
+        Recorder recorder = bound.get();
+        if(recorder != null) {
+            recorder.predation(predator.getCode(), prey.getCode());
+        }
+    }
+
+    /**
+     * Add up and empty the recorders at the end of a step. Must be
+     * called on the thread running the simulation, once every thread
+     * that ran animals in the step has finished.
+     * @param step The step.
+     * @param nanos The time the step took.
+     */
+    public void endStep(int step, long nanos)
+    {
+        long[] actNanos = new long[CODES];
+        long[] acted = new long[CODES];
+        long[] births = new long[CODES];
+        long[] deaths = new long[CODES * CAUSES];
+        long[] predations = new long[CODES * CODES];
+        long moves = 0;
+        synchronized(recorders) {
+            for(Recorder recorder : recorders) {
+                moves += recorder.drainInto(actNanos, acted, births);
+            }
+        }
+        drain(this.deaths, deaths);
+        drain(this.predations, predations);
+        MetricsSnapshot snapshot = new MetricsSnapshot(step, 1, nanos, actNanos, acted,
+                                                       births, deaths, predations, moves);
+        lastStep = snapshot;
+        totals = totals.plus(snapshot);
+    }
+
+    /**
+     * Copy the counts of a table out and empty it.
+     * @param table The table.
+     * @param counts The counts, one per id of the table.
+     */
+    private static void drain(CountTable table, long[] counts)
+    {
+        for(int id = 0; id < counts.length; id++) {
+            counts[id] = table.get(id);
+        }
+        table.reset();
+    }
+
+    /**
+     * @return The metrics of the last step.
+     */
+    public MetricsSnapshot getLastStep()
+    {
+        return lastStep;
+    }
+
+    /**
+     * @return The metrics of every step since the metrics were started.
+     */
+    public MetricsSnapshot getTotals()
+    {
+        return totals;
+    }
+
+    /**
+     * Register the metrics with the platform MBean server, so they can
+     * be watched over JMX.
+     * @param simulation A name for the simulation, unique in the process.
+     * @throws JMException If the metrics cannot be registered.
+     */
+    public void register(String simulation) throws JMException
+    {
+        unregister();
+        ObjectName objectName = new ObjectName("savanna:type=EngineMetrics,name=" + ObjectName.quote(simulation));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        name = objectName;
+    }
+
+    /**
+     * Remove the metrics from the platform MBean server, if registered.
+     * @throws JMException If the metrics cannot be removed.
+     */
+    public void unregister() throws JMException
+    {
+        if(name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName registered = name;
+            name = null;
+            if(server.isRegistered(registered)) {
+                server.unregisterMBean(registered);
+            }
+        }
+    }
+
+    public int getStep()
+    {
+        return lastStep.getStep();
+    }
+
+    public int getStepsRecorded()
+    {
+        return totals.getSteps();
+    }
+
+    public long getStepNanos()
+    {
+        return lastStep.getNanos();
+    }
+
+    public double getMeanStepMillis()
+    {
+        MetricsSnapshot snapshot = totals;
+        return snapshot.getSteps() == 0 ? 0 : snapshot.getNanos() / 1e6 / snapshot.getSteps();
+    }
+
+    public long getAgentsProcessed()
+    {
+        return lastStep.getAgentsProcessed();
+    }
+
+    public long getBirths()
+    {
+        return lastStep.getBirths();
+    }
+
+    public long getMoves()
+    {
+        return lastStep.getMoves();
+    }
+
+    public Map<String, Long> getDeathsByCause()
+    {
+        MetricsSnapshot snapshot = lastStep;
+        Map<String, Long> deaths = new LinkedHashMap<>();
+        for(Animal.Cause cause : Animal.Cause.values()) {
+            deaths.put(cause.name(), snapshot.getDeaths(cause));
+        }
+        return deaths;
+    }
+
+    public Map<String, Long> getActNanosBySpecies()
+    {
+        MetricsSnapshot snapshot = lastStep;
+        Map<String, Long> nanos = new LinkedHashMap<>();
+        for(Species species : Species.values()) {
+            nanos.put(species.getAnimalClass().getName(), snapshot.getActNanos(species));
+        }
+        return nanos;
+    }
+
+    public Map<String, Long> getPredations()
+    {
+        MetricsSnapshot snapshot = lastStep;
+        Map<String, Long> predations = new LinkedHashMap<>();
+        for(Species predator : Species.values()) {
+            for(Species prey : Species.values()) {
+                long count = snapshot.getPredations(predator, prey);
+                if(count > 0) {
+                    predations.put(predator.getAnimalClass().getName() + ">"
+                                   + prey.getAnimalClass().getName(), count);
+                }
+            }
+        }
+        return predations;
+    }
+
+    /**
+     * Create the recorder of a thread.
+     * @return The recorder.
+     */
+    private Recorder newRecorder()
+    {
+        Recorder recorder = new Recorder(deaths, predations);
+        synchronized(recorders) {
+            recorders.add(recorder);
+        }
+        return recorder;
+    }
+
+    /**
+     * The counts of one thread since the end of the last step.
+     */
+    public static class Recorder
+    {
+        // The time spent acting and the number that acted, by species code.
+        private long[] actNanos = new long[CODES];
+        private long[] acted = new long[CODES];
+        // The number born, by species code.
+        private long[] births = new long[CODES];
+        // The number of moves made.
+        private long moves;
+        // The deaths and the animals eaten, shared by every recorder of
+        // the same metrics.
+        private CountTable deaths;
+        private CountTable predations;
+
+        /**
+         * Create a recorder that counts deaths and meals into tables
+         * shared with other threads.
+         * @param deaths The deaths, CAUSES ids per species code.
+         * @param predations The animals eaten, CODES ids of prey per
+         *                   predator code.
+         */
+        private Recorder(CountTable deaths, CountTable predations)
+        {
+            this.deaths = deaths;
+            this.predations = predations;
+        }
+
+        /**
+         * Let an animal act, timing it and counting the young it has
+         * and whether it moves.
+         * @param animal The animal.
+         * @param newAnimals The list the young are added to.
+         */
+        public void act(Animal animal, List<Animal> newAnimals)
+        {
+            Location before = animal.getLocation();
+            int born = newAnimals.size();
+            time(animal, newAnimals);
+            births[animal.getSpecies().getCode()] += newAnimals.size() - born;
+            if(animal.isAlive() && !before.equals(animal.getLocation())) {
+                moves++;
+            }
+        }
+
+        /**
+         * Let an animal act and time it, when whether its young are
+         * born and whether it moves are only settled afterwards.
+         * @param animal The animal.
+         * @param newAnimals The list the young are added to.
+         */
+        public void time(Animal animal, List<Animal> newAnimals)
+        {
+            int code = animal.getSpecies().getCode();
+            if((acted[code]++ & (SAMPLE - 1)) == 0) {
+                long start = System.nanoTime();
+                animal.act(newAnimals);
+                actNanos[code] += (System.nanoTime() - start) * SAMPLE;
+            }
+            else {
+                animal.act(newAnimals);
+            }
+        }
+
+        /**
+         * Count the animals of a species acting, when they are run
+         * together rather than one by one.
+         * @param code The species code.
+         * @param count The number that acted.
+         * @param nanos The time they took.
+         */
+        public void acted(int code, int count, long nanos)
+        {
+            actNanos[code] += nanos;
+            acted[code] += count;
+        }
+
+        /**
+         * Count animals born, when their births are only settled after
+         * they have acted.
+         * @param code The species code.
+         * @param count The number born.
+         */
+        public void born(int code, int count)
+        {
+            births[code] += count;
+        }
+
+        /**
+         * Count moves, when they are only settled after the animals
+         * have acted.
+         * @param count The number of moves.
+         */
+        public void moved(int count)
+        {
+            moves += count;
+        }
+
+        /**
+         * Count a death.
+         * @param code The species code.
+         * @param cause What it died of.
+         */
+        public void death(int code, Animal.Cause cause)
+        {
+            deaths.increment(code * CAUSES + cause.ordinal());
+        }
+
+        /**
+         * Count an animal eaten.
+         * @param predator The code of the species that ate.
+         * @param prey The code of the species eaten.
+         */
+        public void predation(int predator, int prey)
+        {
+            predations.increment(predator * CODES + prey);
+        }
+
+        /**
+         * Add the counts of the thread to those of the step and empty them.
+         * @return The number of moves.
+         */
+        private long drainInto(long[] actNanos, long[] acted, long[] births)
+        {
+            drain(this.actNanos, actNanos);
+            drain(this.acted, acted);
+            drain(this.births, births);
+            long count = moves;
+            moves = 0;
+            return count;
+        }
+
+        /**
+         * Add counts to a total and empty them.
+         * @param counts The counts.
+         * @param total The total.
+         */
+        private static void drain(long[] counts, long[] total)
+        {
+            for(int i = 0; i < counts.length; i++) {
+                total[i] += counts[i];
+                counts[i] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.Map;
+
+/**
+ * The management interface of EngineMetrics, through which the metrics
+ * of a running simulation can be watched over JMX, e.g. in JConsole.
+ * Each attribute is for the last step run, unless it says otherwise.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public interface EngineMetricsMXBean
+{
+    /**
+     * @return The last step run.
+     */
+    int getStep();
+
+    /**
+     * @return The number of steps run since the metrics were started.
+     */
+    int getStepsRecorded();
+
+    /**
+     * @return The time taken by the step, in nanoseconds.
+     */
+    long getStepNanos();
+
+    /**
+     * @return The mean time taken by a step since the metrics were
+     *         started, in milliseconds.
+     */
+    double getMeanStepMillis();
+
+    /**
+     * @return The number of times an animal acted.
+     */
+    long getAgentsProcessed();
+
+    /**
+     * @return The number of animals born.
+     */
+    long getBirths();
+
+    /**
+     * @return The number of moves made.
+     */
+    long getMoves();
+
+    /**
+     * @return The number of animals that died, by cause.
+     */
+    Map<String, Long> getDeathsByCause();
+
+    /**
+     * @return The time the animals of each species spent acting, in nanoseconds.
+     */
+    Map<String, Long> getActNanosBySpecies();
+
+    /**
+     * @return The number of animals eaten, keyed by "predator>prey".
+     */
+    Map<String, Long> getPredations();
+}
@@ -0,0 +1,283 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of an ensemble of simulations (see EnsembleRunner): the
+ * population series of every run, and statistics of the populations
+ * across the runs.
+ *
+ * Runs that stopped before the last step, because they were no longer
+ * viable, count in the statistics of later steps with the population
+ * they stopped with.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class EnsembleResult
+{
+    // The runs, in the order they were added to the runner.
+    private List<Run> runs;
+    // The number of steps in the longest series.
+    private int length;
+
+    /**
+     * Collect the results of some runs.
+     * @param runs The runs.
+     */
+    public EnsembleResult(List<Run> runs)
+    {
+        this.runs = new ArrayList<>(runs);
+        length = 0;
+        for(Run run : runs) {
+            length = Math.max(length, run.getRecorder().getSteps());
+        }
+    }
+
+    /**
+     * @return The runs, in the order they were added to the runner.
+     */
+    public List<Run> getRuns()
+    {
+        return Collections.unmodifiableList(runs);
+    }
+
+    /**
+     * @return The number of recorded steps of the longest run, including
+     *         the starting state.
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return The fraction of the runs that were still viable at the end.
+     */
+    public double getViableFraction()
+    {
+        if(runs.isEmpty()) {
+            return 0;
+        }
+        int viable = 0;
+        for(Run run : runs) {
+            if(run.isViable()) {
+                viable++;
+            }
+        }
+        return (double) viable / runs.size();
+    }
+
+    /**
+     * @return The mean number of steps the runs ran for.
+     */
+    public double getMeanSteps()
+    {
+        if(runs.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        for(Run run : runs) {
+            total += run.getSteps();
+        }
+        return (double) total / runs.size();
+    }
+
+    /**
+     * Return the mean population of a species at each step.
+     * @param species The species.
+     * @return The means, one per step.
+     */
+    public double[] getMeanSeries(Species species)
+    {
+        double[] mean = new double[length];
+        for(int index = 0; index < length; index++) {
+            double total = 0;
+            for(Run run : runs) {
+                total += run.getCount(species, index);
+            }
+            mean[index] = runs.isEmpty() ? 0 : total / runs.size();
+        }
+        return mean;
+    }
+
+    /**
+     * Return the standard deviation of the population of a species
+     * at each step.
+     * @param species The species.
+     * @return The standard deviations, one per step.
+     */
+    public double[] getStandardDeviationSeries(Species species)
+    {
+        double[] mean = getMeanSeries(species);
+        double[] deviation = new double[length];
+        for(int index = 0; index < length; index++) {
+            double total = 0;
+            for(Run run : runs) {
+                double difference = run.getCount(species, index) - mean[index];
+                total += difference * difference;
+            }
+            deviation[index] = runs.size() > 1 ? Math.sqrt(total / (runs.size() - 1)) : 0;
+        }
+        return deviation;
+    }
+
+    /**
+     * Return the smallest population of a species in any run at each step.
+     * @param species The species.
+     * @return The smallest populations, one per step.
+     */
+    public int[] getMinSeries(Species species)
+    {
+        int[] min = new int[length];
+        for(int index = 0; index < length; index++) {
+            min[index] = Integer.MAX_VALUE;
+            for(Run run : runs) {
+                min[index] = Math.min(min[index], run.getCount(species, index));
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Return the largest population of a species in any run at each step.
+     * @param species The species.
+     * @return The largest populations, one per step.
+     */
+    public int[] getMaxSeries(Species species)
+    {
+        int[] max = new int[length];
+        for(int index = 0; index < length; index++) {
+            for(Run run : runs) {
+                max[index] = Math.max(max[index], run.getCount(species, index));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Describe the ensemble: how many runs survived, and the mean and
+     * standard deviation of each population at regular steps.
+     * @param interval The number of steps between rows of the table.
+     * @return The report.
+     */
+    public String getReport(int interval)
+    {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("Runs: ").append(runs.size());
+        buffer.append(String.format("  Viable: %.1f%%", 100 * getViableFraction()));
+        buffer.append(String.format("  Mean steps: %.1f%n", getMeanSteps()));
+        buffer.append("Step");
+        for(Species species : Species.values()) {
+            buffer.append(String.format("%22s", species.getAnimalClass().getName()));
+        }
+        buffer.append(String.format("%n"));
+
+        double[][] mean = new double[Species.COUNT][];
+        double[][] deviation = new double[Species.COUNT][];
+        for(Species species : Species.values()) {
+            mean[species.ordinal()] = getMeanSeries(species);
+            deviation[species.ordinal()] = getStandardDeviationSeries(species);
+        }
+        for(int index = 0; index < length; index += Math.max(interval, 1)) {
+            buffer.append(String.format("%4d", index));
+            for(Species species : Species.values()) {
+                buffer.append(String.format("%12.1f +-%7.1f", mean[species.ordinal()][index],
+                                            deviation[species.ordinal()][index]));
+            }
+            buffer.append(String.format("%n"));
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * The result of one run of an ensemble.
+     */
+    public static class Run
+    {
+        // The creation probabilities of the run.
+        private Double[] spawnParams;
+        // The seed of the run.
+        private long seed;
+        // The number of steps the run ran for.
+        private int steps;
+        // Whether the run was still viable at the end.
+        private boolean viable;
+        // The populations at each step.
+        private PopulationRecorder recorder;
+
+        /**
+         * Record the result of a run.
+         * @param spawnParams The creation probabilities of the run.
+         * @param seed The seed of the run.
+         * @param steps The number of steps the run ran for.
+         * @param viable Whether the run was still viable at the end.
+         * @param recorder The populations at each step.
+         */
+        public Run(Double[] spawnParams, long seed, int steps, boolean viable,
+                   PopulationRecorder recorder)
+        {
+            this.spawnParams = spawnParams.clone();
+            this.seed = seed;
+            this.steps = steps;
+            this.viable = viable;
+            this.recorder = recorder;
+        }
+
+        /**
+         * @return The creation probabilities of the run.
+         */
+        public Double[] getSpawnParams()
+        {
+            return spawnParams.clone();
+        }
+
+        /**
+         * @return The seed of the run.
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        /**
+         * @return The number of steps the run ran for.
+         */
+        public int getSteps()
+        {
+            return steps;
+        }
+
+        /**
+         * @return true if the run was still viable at the end.
+         */
+        public boolean isViable()
+        {
+            return viable;
+        }
+
+        /**
+         * @return The populations at each step.
+         */
+        public PopulationRecorder getRecorder()
+        {
+            return recorder;
+        }
+
+        /**
+         * Return the population of a species at a step, or the last
+         * recorded population if the run stopped before that step.
+         * @param species The species.
+         * @param index The index of the step, from 0.
+         * @return The population.
+         */
+        public int getCount(Species species, int index)
+        {
+            int last = recorder.getSteps() - 1;
+            if(last < 0) {
+                return 0;
+            }
+            return recorder.getCount(species, Math.min(index, last));
+        }
+    }
+}
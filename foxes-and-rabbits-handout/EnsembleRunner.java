@@ -0,0 +1,148 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs an ensemble of independent simulations at the same time, e.g.
+ * over different creation probabilities and seeds, and collects the
+ * population series of each run.
+ *
+ * The runs share nothing: each simulation has its own field, animals
+ * and seeded random numbers (see Randomizer), so a run gives the same
+ * result whatever else is running and however many threads are used.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class EnsembleRunner
+{
+    // The size of the field of every run.
+    private int depth, width;
+    // The number of steps each run is run for, unless it stops being viable.
+    private int steps;
+    // The number of runs run at the same time.
+    private int parallelism;
+    // The creation probabilities and seed of each run.
+    private List<Double[]> spawnParams;
+    private List<Long> seeds;
+
+    /**
+     * Create a runner with no runs.
+     * @param depth Depth of the field of every run.
+     * @param width Width of the field of every run.
+     * @param steps The number of steps each run is run for.
+     * @param parallelism The number of runs run at the same time.
+     */
+    public EnsembleRunner(int depth, int width, int steps, int parallelism)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        this.parallelism = Math.max(parallelism, 1);
+        spawnParams = new ArrayList<>();
+        seeds = new ArrayList<>();
+    }
+
+    /**
+     * Add a run.
+     * @param params The creation probabilities of the run.
+     * @param seed The seed of the run.
+     */
+    public void addRun(Double[] params, long seed)
+    {
+        spawnParams.add(params.clone());
+        seeds.add(seed);
+    }
+
+    /**
+     * Add runs with the same creation probabilities and consecutive seeds.
+     * @param params The creation probabilities of the runs.
+     * @param firstSeed The seed of the first run.
+     * @param count The number of runs.
+     */
+    public void addRuns(Double[] params, long firstSeed, int count)
+    {
+        for(int i = 0; i < count; i++) {
+            addRun(params, firstSeed + i);
+        }
+    }
+
+    /**
+     * @return The number of runs added.
+     */
+    public int getRuns()
+    {
+        return seeds.size();
+    }
+
+    /**
+     * Run every run and wait for them all to finish.
+     * @return The results of the runs, in the order they were added.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws ExecutionException If a run failed.
+     */
+    public EnsembleResult run() throws InterruptedException, ExecutionException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<EnsembleResult.Run>> futures = new ArrayList<>();
+            for(int i = 0; i < seeds.size(); i++) {
+                Double[] params = spawnParams.get(i);
+                long seed = seeds.get(i);
+                futures.add(executor.submit(new Callable<EnsembleResult.Run>() {
+                    public EnsembleResult.Run call()
+                    {
+                        return runOne(params, seed);
+                    }
+                }));
+            }
+            List<EnsembleResult.Run> runs = new ArrayList<>();
+            for(Future<EnsembleResult.Run> future : futures) {
+                runs.add(future.get());
+            }
+            return new EnsembleResult(runs);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run one simulation, recording its population at every step.
+     * @param params The creation probabilities of the run.
+     * @param seed The seed of the run.
+     * @return The result of the run.
+     */
+    private EnsembleResult.Run runOne(Double[] params, long seed)
+    {
+        Simulator simulator = new Simulator(depth, width, params, seed, false);
+        PopulationRecorder recorder = new PopulationRecorder();
+        // Record the starting state, which was shown before the recorder was added.
+        recorder.showStatus(simulator.getStep(), simulator.getField());
+        simulator.addObserver(recorder);
+        simulator.runLongSimulation(steps);
+        return new EnsembleResult.Run(params, seed, simulator.getStep(),
+                                      simulator.isViable(), recorder);
+    }
+
+    /**
+     * Run an ensemble with the default creation probabilities and print
+     * a report of it.
+     * @param args The number of runs, the number of steps and the number
+     *             of runs at the same time; all optional.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2])
+                                          : Runtime.getRuntime().availableProcessors();
+        EnsembleRunner runner = new EnsembleRunner(80, 120, steps, parallelism);
+        runner.addRuns(new Double[] {0.1, 0.1, 0.15, 0.15, 0.15, 0.18}, 1, runs);
+        System.out.print(runner.run().getReport(Math.max(steps / 10, 1)));
+    }
+}
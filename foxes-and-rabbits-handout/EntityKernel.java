@@ -0,0 +1,585 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Runs steps of the simulation on an EntityStore, going through the
+ * arrays of each species in order instead of calling act on Animal
+ * objects. Nothing is allocated while a step runs once the arrays
+ * have grown to the size of the population.
+ *
+ * The rules of each species are those of its class, whose constants
+ * are read from there, and steps are run synchronously in the same way
+ * as SynchronousStepper: every animal acts on the field as it was at
+ * the start of the step, drawing the same random numbers, and cells
+ * that more than one animal went for are shared out by the same
+ * priorities. A field run with either gives the same animals.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class EntityKernel
+{
+    // What an animal does in a step.
+    private static final byte STAY = 0;
+    private static final byte MOVE = 1;
+    private static final byte EAT = 2;
+    // The species bits of every species.
+    private static final int ANY_SPECIES = ((1 << Species.COUNT) - 1) << 1;
+    // The likelihood of an animal being born male (see Animal.setGender).
+    private static final float MALE_BIRTH_RATE = 0.5f;
+
+    // The rules of each species, indexed by species code - 1.
+    private static final int[] MAX_AGE = {
+        Lion.MAX_AGE, Vulture.MAX_AGE, Rhino.MAX_AGE, Giraffe.MAX_AGE, Baboon.MAX_AGE, Plant.MAX_AGE };
+    private static final int[] BREEDING_AGE = {
+        Lion.BREEDING_AGE, Vulture.BREEDING_AGE, Rhino.BREEDING_AGE, Giraffe.BREEDING_AGE,
+        Baboon.BREEDING_AGE, Plant.BREEDING_AGE };
+    private static final double[] BREEDING_PROBABILITY = {
+        Lion.BREEDING_PROBABILITY, Vulture.BREEDING_PROBABILITY, Rhino.BREEDING_PROBABILITY,
+        Giraffe.BREEDING_PROBABILITY, Baboon.BREEDING_PROBABILITY, Plant.BREEDING_PROBABILITY };
+    private static final int[] MAX_LITTER_SIZE = {
+        Lion.MAX_LITTER_SIZE, Vulture.MAX_LITTER_SIZE, Rhino.MAX_LITTER_SIZE, Giraffe.MAX_LITTER_SIZE,
+        Baboon.MAX_LITTER_SIZE, Plant.MAX_LITTER_SIZE };
+    private static final int[] DIET = {
+        Lion.DIET, Vulture.DIET, Rhino.DIET, Giraffe.DIET, Baboon.DIET, 0 };
+    // The food level of a newborn.
+    private static final int[] NEWBORN_FOOD = {
+        Lion.RHINO_FOOD_VALUE, Vulture.RHINO_FOOD_VALUE, Rhino.PLANT_FOOD_VALUE,
+        Giraffe.PLANT_FOOD_VALUE, Baboon.PLANT_FOOD_VALUE, 0 };
+    // The food value of a rhino, and of any other prey.
+    private static final int[] RHINO_FOOD = {
+        Lion.RHINO_FOOD_VALUE, Vulture.RHINO_FOOD_VALUE, Rhino.PLANT_FOOD_VALUE,
+        Giraffe.PLANT_FOOD_VALUE, Baboon.PLANT_FOOD_VALUE, 0 };
+    private static final int[] OTHER_FOOD = {
+        Lion.GIRAFFE_FOOD_VALUE, Vulture.GIRAFFE_FOOD_VALUE, Rhino.PLANT_FOOD_VALUE,
+        Giraffe.PLANT_FOOD_VALUE, Baboon.PLANT_FOOD_VALUE, 0 };
+
+    // The animals.
+    private EntityStore store;
+    // The random numbers of the simulation.
+    private Randomizer randomizer;
+    // Decides which species act in a step.
+    private SleepScheduler scheduler;
+    // The cells claimed in the step, and who gets them.
+    private ClaimTable claims;
+    // The depth and width of the field.
+    private int depth, width;
+
+    // The step being run.
+    private int step;
+    // Whether each species is held up by the weather this step.
+    private boolean[] affected;
+    // The number of slots of each species at the start of the step,
+    // and the claimant number of the first of them.
+    private int[] counts;
+    private int[] firstClaimant;
+    // The number of animals at the start of the step.
+    private int total;
+    // What each animal does, and the cell it does it in.
+    private byte[][] plans;
+    private int[][] targets;
+
+    // The animals born in the step: species, cell, parent's cell and gender.
+    private int births;
+    private byte[] birthCodes;
+    private int[] birthCells;
+    private int[] birthParents;
+    private boolean[] birthMales;
+
+    // Records what the animals do, or null.
+    private EngineMetrics metrics;
+    // The recorder of the step being run, or null.
+    private EngineMetrics.Recorder recorder;
+
+    /**
+     * Create a kernel for a store of animals.
+     * @param store The animals.
+     * @param randomizer The random numbers of the simulation.
+     * @param scheduler Decides which species act in a step.
+     */
+    public EntityKernel(EntityStore store, Randomizer randomizer, SleepScheduler scheduler)
+    {
+        this.store = store;
+        this.randomizer = randomizer;
+        this.scheduler = scheduler;
+        depth = store.getDepth();
+        width = store.getWidth();
+        claims = new ClaimTable();
+        affected = new boolean[Species.COUNT];
+        counts = new int[Species.COUNT];
+        firstClaimant = new int[Species.COUNT];
+        plans = new byte[Species.COUNT][0];
+        targets = new int[Species.COUNT][0];
+        birthCodes = new byte[16];
+        birthCells = new int[16];
+        birthParents = new int[16];
+        birthMales = new boolean[16];
+    }
+
+    /**
+     * @return The animals.
+     */
+    public EntityStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * Record what the animals do in each step in metrics. The animals
+     * of a species are timed together, as they act in one loop.
+     * @param metrics The metrics, or null to stop recording.
+     */
+    public void setMetrics(EngineMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Let every animal act once. Species that are asleep are passed
+     * over as a whole, and catch up on their sleep when they wake.
+     * Dead animals are removed from the store and newly born animals
+     * are added to the end of their species.
+     * @param step The step being run.
+     * @param clock The environment, giving the hour of the day and
+     *              the weather of the step.
+     */
+    public void step(int step, Environment clock)
+    {
+        this.step = step;
+        start(clock);
+        recorder = metrics != null ? metrics.bind() : null;
+        for(int code = 1; code <= Species.COUNT; code++) {
+            int count = counts[code - 1];
+            if(scheduler.isDormant(code)) {
+                for(int slot = 0; slot < count; slot++) {
+                    plans[code - 1][slot] = STAY;
+                    targets[code - 1][slot] = store.getPosition(code, slot);
+                }
+                continue;
+            }
+            long start = recorder != null ? System.nanoTime() : 0;
+            sleepFor(code, scheduler.getCatchUp(code));
+            if(code == Species.PLANT.getCode()) {
+                for(int slot = 0; slot < count; slot++) {
+                    actPlant(slot);
+                }
+            }
+            else {
+                for(int slot = 0; slot < count; slot++) {
+                    actAnimal(code, slot);
+                }
+            }
+            if(recorder != null) {
+                recorder.acted(code, count, System.nanoTime() - start);
+            }
+        }
+        resolveMeals();
+        resolveMoves();
+        finish();
+        if(recorder != null) {
+            EngineMetrics.unbind();
+            recorder = null;
+        }
+    }
+
+    /**
+     * Get ready for a step: note the conditions of the step and make
+     * room for the plans of the animals.
+     * @param clock The environment.
+     */
+    private void start(Environment clock)
+    {
+        Environment.Weather weather = clock.getCurrentWeather();
+        total = 0;
+        births = 0;
+        for(int index = 0; index < Species.COUNT; index++) {
+            int count = store.size(index + 1);
+            counts[index] = count;
+            firstClaimant[index] = total;
+            total += count;
+            if(plans[index].length < count) {
+                int size = Math.max(count, plans[index].length * 2);
+                plans[index] = new byte[size];
+                targets[index] = new int[size];
+            }
+        }
+        affected[Species.LION.getCode() - 1] = Lion.isAffectedBy(weather);
+        affected[Species.VULTURE.getCode() - 1] = Vulture.isAffectedBy(weather);
+        affected[Species.RHINO.getCode() - 1] = Rhino.isAffectedBy(weather);
+        affected[Species.GIRAFFE.getCode() - 1] = Giraffe.isAffectedBy(weather);
+        affected[Species.BABOON.getCode() - 1] = Baboon.isAffectedBy(weather);
+    }
+
+    /**
+     * Catch up on steps the animals of a species slept through, as
+     * Animal.sleepFor does for each animal.
+     * @param code The species code.
+     * @param steps The number of steps slept through.
+     */
+    private void sleepFor(int code, int steps)
+    {
+        if(steps == 0) {
+            return;
+        }
+        int maxAge = MAX_AGE[code - 1];
+        for(int slot = 0; slot < store.size(code); slot++) {
+            int age = store.getAge(code, slot);
+            store.setAge(code, slot, age + steps);
+            if(age + 1 > maxAge) {
+                kill(code, slot, Animal.Cause.AGE);
+            }
+            else if(store.getFoodLevel(code, slot) <= 1) {
+                kill(code, slot, Animal.Cause.STARVATION);
+            }
+            else if(age + steps > maxAge) {
+                kill(code, slot, Animal.Cause.AGE);
+            }
+        }
+    }
+
+    /**
+     * Let an animal that moves act, as its class would.
+     * @param code The species code of the animal.
+     * @param slot The slot of the animal.
+     */
+    private void actAnimal(int code, int slot)
+    {
+        int index = code - 1;
+        int cell = store.getPosition(code, slot);
+        int row = cell / width;
+        int col = cell % width;
+        plans[index][slot] = STAY;
+        targets[index][slot] = cell;
+        if(!store.isAlive(code, slot)) {
+            // Died in its sleep.
+            return;
+        }
+        int age = store.getAge(code, slot) + 1;
+        int foodLevel = store.getFoodLevel(code, slot) - 1;
+        store.setAge(code, slot, age);
+        store.setFoodLevel(code, slot, foodLevel);
+        if(age > MAX_AGE[index] || foodLevel <= 0) {
+            kill(code, slot, age > MAX_AGE[index] ? Animal.Cause.AGE : Animal.Cause.STARVATION);
+            return;
+        }
+
+        Random rand = randomizer.startAct(step, row, col);
+        if(affected[index]) {
+            store.setFoodLevel(code, slot, foodLevel + 1);
+            moveToFreeCell(code, slot, row, col, rand);
+        }
+        else {
+            if(!store.isMale(code, slot) && age > BREEDING_AGE[index]
+               && neighbours(row, col, 1 << code, true) != 0) {
+                giveBirth(code, row, col, rand);
+            }
+            int prey = neighbours(row, col, DIET[index], false);
+            if(prey != 0) {
+                plans[index][slot] = EAT;
+                targets[index][slot] = adjacent(cell, randomDirection(prey, rand));
+            }
+            else {
+                moveToFreeCell(code, slot, row, col, rand);
+            }
+        }
+    }
+
+    /**
+     * Let a plant act, as Plant would.
+     * @param slot The slot of the plant.
+     */
+    private void actPlant(int slot)
+    {
+        int code = Species.PLANT.getCode();
+        int index = code - 1;
+        int cell = store.getPosition(code, slot);
+        int row = cell / width;
+        int col = cell % width;
+        plans[index][slot] = STAY;
+        targets[index][slot] = cell;
+        int age = store.getAge(code, slot) + 1;
+        store.setAge(code, slot, age);
+        if(age > MAX_AGE[index]) {
+            kill(code, slot, Animal.Cause.AGE);
+            return;
+        }
+
+        Random rand = randomizer.startAct(step, row, col);
+        if(age > BREEDING_AGE[index] && neighbours(row, col, 1 << code, false) != 0) {
+            giveBirth(code, row, col, rand);
+        }
+        if(freeNeighbours(row, col) == 0) {
+            // Overcrowding.
+            kill(code, slot, Animal.Cause.OVERCROWDING);
+        }
+    }
+
+    /**
+     * Plan a move to a random free adjacent cell, or kill the animal
+     * if there is none.
+     * @param code The species code of the animal.
+     * @param slot The slot of the animal.
+     * @param row The row of the animal.
+     * @param col The column of the animal.
+     * @param rand The generator of the animal.
+     */
+    private void moveToFreeCell(int code, int slot, int row, int col, Random rand)
+    {
+        int free = freeNeighbours(row, col);
+        if(free != 0) {
+            plans[code - 1][slot] = MOVE;
+            targets[code - 1][slot] = adjacent(row * width + col, randomDirection(free, rand));
+        }
+        else {
+            // Overcrowding.
+            kill(code, slot, Animal.Cause.OVERCROWDING);
+        }
+    }
+
+    /**
+     * Breed, with the probability of the species, into free adjacent
+     * cells. The caller has checked that the animal can breed.
+     * @param code The species code of the parent.
+     * @param row The row of the parent.
+     * @param col The column of the parent.
+     * @param rand The generator of the parent.
+     */
+    private void giveBirth(int code, int row, int col, Random rand)
+    {
+        int index = code - 1;
+        if(rand.nextDouble() > BREEDING_PROBABILITY[index]) {
+            return;
+        }
+        int young = rand.nextInt(MAX_LITTER_SIZE[index]) + 1;
+        int cell = row * width + col;
+        int free = freeNeighbours(row, col);
+        while(young > 0 && free != 0) {
+            int direction = randomDirection(free, rand);
+            free &= ~(1 << direction);
+            addBirth(code, adjacent(cell, direction), cell, rand.nextFloat() < MALE_BIRTH_RATE);
+            young--;
+        }
+    }
+
+    /**
+     * Remember an animal born in this step.
+     * @param code The species code of the animal.
+     * @param cell The cell it is born into.
+     * @param parent The cell of its parent.
+     * @param male true if it is male.
+     */
+    private void addBirth(int code, int cell, int parent, boolean male)
+    {
+        if(births == birthCells.length) {
+            int size = births * 2;
+            birthCodes = Arrays.copyOf(birthCodes, size);
+            birthCells = Arrays.copyOf(birthCells, size);
+            birthParents = Arrays.copyOf(birthParents, size);
+            birthMales = Arrays.copyOf(birthMales, size);
+        }
+        birthCodes[births] = (byte) code;
+        birthCells[births] = cell;
+        birthParents[births] = parent;
+        birthMales[births] = male;
+        births++;
+    }
+
+    /**
+     * Give each animal that was eaten to one of the predators that went
+     * for it. Every meal is decided before any is eaten, so an animal
+     * that is eaten still gets the meal it won. The others stay where
+     * they were and go hungry.
+     */
+    private void resolveMeals()
+    {
+        claims.reset(total);
+        for(int code = 1; code <= Species.COUNT; code++) {
+            for(int slot = 0; slot < counts[code - 1]; slot++) {
+                if(plans[code - 1][slot] == EAT && store.isAlive(code, slot)) {
+                    claims.offer(targets[code - 1][slot], priorityOf(code, slot), claimant(code, slot));
+                }
+            }
+        }
+        for(int code = 1; code <= Species.COUNT; code++) {
+            byte[] plan = plans[code - 1];
+            int[] target = targets[code - 1];
+            for(int slot = 0; slot < counts[code - 1]; slot++) {
+                if(plan[slot] == EAT && (!store.isAlive(code, slot)
+                                         || claims.winner(target[slot]) != claimant(code, slot))) {
+                    plan[slot] = STAY;
+                    target[slot] = store.getPosition(code, slot);
+                }
+            }
+        }
+        for(int code = 1; code <= Species.COUNT; code++) {
+            for(int slot = 0; slot < counts[code - 1]; slot++) {
+                if(plans[code - 1][slot] == EAT) {
+                    int cell = targets[code - 1][slot];
+                    int preyCode = store.getCell(cell) & EntityStore.CODE_MASK;
+                    int foodValue = preyCode == Species.RHINO.getCode()
+                        ? RHINO_FOOD[code - 1] : OTHER_FOOD[code - 1];
+                    store.setFoodLevel(code, slot, foodValue);
+                    if(recorder != null && store.isAlive(preyCode, store.getSlot(cell))) {
+                        recorder.predation(code, preyCode);
+                    }
+                    kill(preyCode, store.getSlot(cell), Animal.Cause.PREDATION);
+                }
+            }
+        }
+    }
+
+    /**
+     * Give each cell that was empty at the start of the step to one of
+     * the animals that moved or were born into it. Animals that lose
+     * stay where they were; young that lose are not born.
+     */
+    private void resolveMoves()
+    {
+        claims.reset(total + births);
+        for(int code = 1; code <= Species.COUNT; code++) {
+            for(int slot = 0; slot < counts[code - 1]; slot++) {
+                if(plans[code - 1][slot] == MOVE && store.isAlive(code, slot)) {
+                    claims.offer(targets[code - 1][slot], priorityOf(code, slot), claimant(code, slot));
+                }
+            }
+        }
+        for(int k = 0; k < births; k++) {
+            long claim = CounterRandom.combine(birthParents[k], birthCells[k]);
+            claims.offer(birthCells[k], randomizer.priority(step, claim), total + k);
+        }
+
+        for(int code = 1; code <= Species.COUNT; code++) {
+            for(int slot = 0; slot < counts[code - 1]; slot++) {
+                if(plans[code - 1][slot] == MOVE && store.isAlive(code, slot)
+                   && claims.winner(targets[code - 1][slot]) != claimant(code, slot)) {
+                    targets[code - 1][slot] = store.getPosition(code, slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the survivors to their new cells, remove the dead and add
+     * the young that were born.
+     */
+    private void finish()
+    {
+        for(int code = 1; code <= Species.COUNT; code++) {
+            for(int slot = 0; slot < counts[code - 1]; slot++) {
+                store.clearCell(store.getPosition(code, slot));
+            }
+        }
+        for(int code = 1; code <= Species.COUNT; code++) {
+            for(int slot = 0; slot < counts[code - 1]; slot++) {
+                if(recorder != null && store.isAlive(code, slot)
+                   && targets[code - 1][slot] != store.getPosition(code, slot)) {
+                    recorder.moved(1);
+                }
+                store.setPosition(code, slot, targets[code - 1][slot]);
+            }
+            store.compact(code);
+        }
+        for(int k = 0; k < births; k++) {
+            if(claims.winner(birthCells[k]) == total + k) {
+                int code = birthCodes[k];
+                store.add(code, birthCells[k], 0, NEWBORN_FOOD[code - 1], birthMales[k]);
+                if(recorder != null) {
+                    recorder.born(code, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Kill an animal, recording what it died of if it was alive.
+     * @param code The species code of the animal.
+     * @param slot The slot of the animal.
+     * @param cause What it died of.
+     */
+    private void kill(int code, int slot, Animal.Cause cause)
+    {
+        if(recorder != null && store.isAlive(code, slot)) {
+            recorder.death(code, cause);
+        }
+        store.kill(code, slot);
+    }
+
+    /**
+     * @return The claimant number of an animal, unique within the step.
+     */
+    private int claimant(int code, int slot)
+    {
+        return firstClaimant[code - 1] + slot;
+    }
+
+    /**
+     * @return The priority of the claims of an animal, from the cell it
+     *         started the step in.
+     */
+    private long priorityOf(int code, int slot)
+    {
+        return randomizer.priority(step, store.getPosition(code, slot));
+    }
+
+    /**
+     * Return which of the cells adjacent to a cell hold one of a set of
+     * species, as a mask with bit d set for direction d of Field.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param speciesSet The species looked for, as Species.bit() values or'ed together.
+     * @param malesOnly true to only count males.
+     * @return The mask.
+     */
+    private int neighbours(int row, int col, int speciesSet, boolean malesOnly)
+    {
+        int mask = 0;
+        for(int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            int nextRow = row + Field.rowOffset(direction);
+            int nextCol = col + Field.colOffset(direction);
+            if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width) {
+                int found = store.getCell(nextRow * width + nextCol);
+                if((speciesSet & (1 << (found & EntityStore.CODE_MASK))) != 0
+                   && (!malesOnly || (found & EntityStore.MALE_FLAG) != 0)) {
+                    mask |= 1 << direction;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return The mask of the empty cells adjacent to a cell.
+     */
+    private int freeNeighbours(int row, int col)
+    {
+        int inField = 0;
+        for(int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            int nextRow = row + Field.rowOffset(direction);
+            int nextCol = col + Field.colOffset(direction);
+            if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width) {
+                inField |= 1 << direction;
+            }
+        }
+        return inField & ~neighbours(row, col, ANY_SPECIES, false);
+    }
+
+    /**
+     * Choose one of the directions of a mask at random, drawing the
+     * same number as Field.randomDirection.
+     * @param mask A non-empty mask of directions.
+     * @param rand The generator to draw from.
+     * @return The chosen direction.
+     */
+    private static int randomDirection(int mask, Random rand)
+    {
+        return Field.selectDirection(mask, rand.nextInt(Integer.bitCount(mask)));
+    }
+
+    /**
+     * @return The cell in a direction from a cell.
+     */
+    private int adjacent(int cell, int direction)
+    {
+        return cell + Field.rowOffset(direction) * width + Field.colOffset(direction);
+    }
+}
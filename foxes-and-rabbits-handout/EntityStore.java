@@ -0,0 +1,464 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The animals of a simulation kept as plain numbers rather than as
+ * objects. Each species has its own parallel arrays, indexed by the
+ * slot of an animal: its age and food level as shorts, its cell as
+ * row * width + col, and bitsets of which animals are male and which
+ * are alive. An animal costs a little over 8 bytes this way, against
+ * the best part of 100 for an Animal, its Location and the references
+ * to them.
+ *
+ * A grid of the field records the species code of each cell, with a
+ * flag for males, and the slot of the animal in it, so that neighbours
+ * can be found without looking at the animals.
+ *
+ * Dead animals keep their slots until the species is compacted.
+ *
+ * The store remembers what each cell held when it was last shown in a
+ * field, so that the field can be brought up to date for its observers
+ * by looking only at the cells that have changed since.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class EntityStore
+{
+    // The flag or'ed into the code of a cell holding a male.
+    public static final int MALE_FLAG = 0x8;
+    // The bits of the code of a cell that give the species.
+    public static final int CODE_MASK = 0x7;
+    // The number of slots a species starts with.
+    private static final int INITIAL_CAPACITY = 64;
+
+    // The depth and width of the field.
+    private int depth, width;
+    // The species code of each cell, row by row, with MALE_FLAG for males.
+    private byte[] cells;
+    // The slot of the animal in each cell.
+    private int[] slots;
+    // The code of each cell as it was last shown in a field.
+    private byte[] shown;
+
+    // The number of slots in use for each species, indexed by code - 1.
+    private int[] sizes;
+    // The age of each animal.
+    private short[][] ages;
+    // The food level of each animal.
+    private short[][] foodLevels;
+    // The cell of each animal.
+    private int[][] positions;
+    // One bit per animal, set if it is male.
+    private long[][] males;
+    // One bit per animal, set if it is alive.
+    private long[][] alive;
+
+    /**
+     * Create an empty store for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public EntityStore(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        cells = new byte[depth * width];
+        slots = new int[depth * width];
+        shown = new byte[depth * width];
+        sizes = new int[Species.COUNT];
+        ages = new short[Species.COUNT][INITIAL_CAPACITY];
+        foodLevels = new short[Species.COUNT][INITIAL_CAPACITY];
+        positions = new int[Species.COUNT][INITIAL_CAPACITY];
+        males = new long[Species.COUNT][INITIAL_CAPACITY / 64];
+        alive = new long[Species.COUNT][INITIAL_CAPACITY / 64];
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Remove every animal.
+     */
+    public void clear()
+    {
+        Arrays.fill(cells, (byte) Species.EMPTY_CODE);
+        Arrays.fill(sizes, 0);
+    }
+
+    /**
+     * Take the animals of a field, which then counts as showing them.
+     * Any animals already in the store are removed first.
+     * @param field The field.
+     */
+    public void load(Field field)
+    {
+        clear();
+        for(int row = field.nextOccupiedRow(0); row < depth; row = field.nextOccupiedRow(row + 1)) {
+            for(int col = field.nextOccupiedColumn(row, 0); col < width; col = field.nextOccupiedColumn(row, col + 1)) {
+                Object occupant = field.getObjectAt(row, col);
+                if(occupant instanceof Animal) {
+                    Animal animal = (Animal) occupant;
+                    add(animal.getSpecies().getCode(), row * width + col, animal.getAge(),
+                        animal.getFoodLevel(), animal.getGender() == Animal.Gender.Male);
+                }
+            }
+        }
+        System.arraycopy(cells, 0, shown, 0, cells.length);
+    }
+
+    /**
+     * Bring a field up to date with the living animals, as Animal
+     * objects, e.g. to show them or to carry on with the object model.
+     * An animal already in its cell of the field, of the same species
+     * and gender, is kept and given its age and food level; only the
+     * cells that differ are cleared or given a new Animal, so only
+     * their tiles of the field are marked as changed.
+     * @param field The field.
+     * @param clock The environment the animals live in.
+     * @param animals A list to receive the animals.
+     */
+    public void copyTo(Field field, Environment clock, List<Animal> animals)
+    {
+        Arrays.fill(shown, (byte) Species.EMPTY_CODE);
+        // Bring up to date the animals that are where the store has
+        // them, and take out whatever else is in the field.
+        for(int row = field.nextOccupiedRow(0); row < depth; row = field.nextOccupiedRow(row + 1)) {
+            for(int col = field.nextOccupiedColumn(row, 0); col < width; col = field.nextOccupiedColumn(row, col + 1)) {
+                int cell = row * width + col;
+                Object occupant = field.getObjectAt(row, col);
+                if(matches(occupant, cell)) {
+                    int index = (cells[cell] & CODE_MASK) - 1;
+                    int slot = slots[cell];
+                    ((Animal) occupant).restoreState(ages[index][slot], foodLevels[index][slot]);
+                }
+                else {
+                    field.clear(new Location(row, col));
+                }
+            }
+        }
+        for(int code = 1; code <= Species.COUNT; code++) {
+            Species species = Species.fromCode(code);
+            for(int slot = 0; slot < sizes[code - 1]; slot++) {
+                if(isAlive(code, slot)) {
+                    int cell = positions[code - 1][slot];
+                    int row = cell / width;
+                    int col = cell % width;
+                    Animal animal = (Animal) field.getObjectAt(row, col);
+                    if(animal == null) {
+                        animal = species.create(false, field, new Location(row, col), clock);
+                        Animal.Gender gender = isMale(code, slot) ? Animal.Gender.Male : Animal.Gender.Female;
+                        animal.restoreState(ages[code - 1][slot], foodLevels[code - 1][slot], gender);
+                    }
+                    shown[cell] = cells[cell];
+                    animals.add(animal);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bring the cells of a field that have changed since it last showed
+     * the animals up to date, e.g. for the observers of a simulation. A
+     * cell holding an animal of the same species and gender as before
+     * is left alone, even if the animal is not the same one, so the
+     * animal objects in the field may be behind with their ages and
+     * food levels; copyTo brings them up to date. Must be called
+     * between steps, when only the living animals are in the grid.
+     * @param field The field, which last showed the animals of this store.
+     * @param clock The environment the animals live in.
+     */
+    public void showIn(Field field, Environment clock)
+    {
+        for(int cell = 0; cell < cells.length; cell++) {
+            if(cells[cell] != shown[cell]) {
+                Location location = new Location(cell / width, cell % width);
+                int code = cells[cell] & CODE_MASK;
+                if(code == Species.EMPTY_CODE) {
+                    field.clear(location);
+                }
+                else {
+                    int slot = slots[cell];
+                    Animal animal = Species.fromCode(code).create(false, field, location, clock);
+                    Animal.Gender gender = (cells[cell] & MALE_FLAG) != 0 ? Animal.Gender.Male : Animal.Gender.Female;
+                    animal.restoreState(ages[code - 1][slot], foodLevels[code - 1][slot], gender);
+                }
+                shown[cell] = cells[cell];
+            }
+        }
+    }
+
+    /**
+     * Add a living animal and place it in its cell.
+     * @param code The species code of the animal.
+     * @param cell The cell of the animal, row * width + col.
+     * @param age The age of the animal.
+     * @param foodLevel The food level of the animal.
+     * @param male true if the animal is male.
+     * @return The slot of the animal.
+     */
+    public int add(int code, int cell, int age, int foodLevel, boolean male)
+    {
+        int index = code - 1;
+        int slot = sizes[index];
+        if(slot == positions[index].length) {
+            grow(index);
+        }
+        sizes[index] = slot + 1;
+        ages[index][slot] = (short) age;
+        foodLevels[index][slot] = (short) foodLevel;
+        positions[index][slot] = cell;
+        setBit(alive[index], slot, true);
+        setBit(males[index], slot, male);
+        place(code, slot);
+        return slot;
+    }
+
+    /**
+     * @return The number of slots in use for a species, living or dead.
+     */
+    public int size(int code)
+    {
+        return sizes[code - 1];
+    }
+
+    /**
+     * Return the number of species with any animals in their slots.
+     * Just after the store has been compacted, these are the living species.
+     * @return The number of species.
+     */
+    public int getSpeciesPresent()
+    {
+        int present = 0;
+        for(int size : sizes) {
+            if(size > 0) {
+                present++;
+            }
+        }
+        return present;
+    }
+
+    /**
+     * @return The age of an animal.
+     */
+    public int getAge(int code, int slot)
+    {
+        return ages[code - 1][slot];
+    }
+
+    /**
+     * Change the age of an animal.
+     * @param code The species code of the animal.
+     * @param slot The slot of the animal.
+     * @param age The new age.
+     */
+    public void setAge(int code, int slot, int age)
+    {
+        ages[code - 1][slot] = (short) age;
+    }
+
+    /**
+     * @return The food level of an animal.
+     */
+    public int getFoodLevel(int code, int slot)
+    {
+        return foodLevels[code - 1][slot];
+    }
+
+    /**
+     * Change the food level of an animal.
+     * @param code The species code of the animal.
+     * @param slot The slot of the animal.
+     * @param foodLevel The new food level.
+     */
+    public void setFoodLevel(int code, int slot, int foodLevel)
+    {
+        foodLevels[code - 1][slot] = (short) foodLevel;
+    }
+
+    /**
+     * @return The cell of an animal, row * width + col.
+     */
+    public int getPosition(int code, int slot)
+    {
+        return positions[code - 1][slot];
+    }
+
+    /**
+     * Change the cell of an animal, without changing the grid.
+     * @param code The species code of the animal.
+     * @param slot The slot of the animal.
+     * @param cell The new cell.
+     */
+    public void setPosition(int code, int slot, int cell)
+    {
+        positions[code - 1][slot] = cell;
+    }
+
+    /**
+     * @return true if an animal is male.
+     */
+    public boolean isMale(int code, int slot)
+    {
+        return getBit(males[code - 1], slot);
+    }
+
+    /**
+     * @return true if an animal is alive.
+     */
+    public boolean isAlive(int code, int slot)
+    {
+        return getBit(alive[code - 1], slot);
+    }
+
+    /**
+     * Mark an animal as dead. It stays in the grid and keeps its slot
+     * until the species is compacted.
+     * @param code The species code of the animal.
+     * @param slot The slot of the animal.
+     */
+    public void kill(int code, int slot)
+    {
+        setBit(alive[code - 1], slot, false);
+    }
+
+    /**
+     * Return what is in a cell.
+     * @param cell The cell, row * width + col.
+     * @return The species code of the cell, or'ed with MALE_FLAG if it
+     *         holds a male; Species.EMPTY_CODE if the cell is empty.
+     */
+    public int getCell(int cell)
+    {
+        return cells[cell];
+    }
+
+    /**
+     * @return The slot of the animal in an occupied cell.
+     */
+    public int getSlot(int cell)
+    {
+        return slots[cell];
+    }
+
+    /**
+     * Empty a cell of the grid. The animal in it is left alone.
+     * @param cell The cell.
+     */
+    public void clearCell(int cell)
+    {
+        cells[cell] = (byte) Species.EMPTY_CODE;
+    }
+
+    /**
+     * Record an animal in the grid at its cell.
+     * @param code The species code of the animal.
+     * @param slot The slot of the animal.
+     */
+    public void place(int code, int slot)
+    {
+        int cell = positions[code - 1][slot];
+        cells[cell] = (byte) (isMale(code, slot) ? code | MALE_FLAG : code);
+        slots[cell] = slot;
+    }
+
+    /**
+     * Remove the dead animals of a species, moving the living ones
+     * down over them in order, and record the living ones in the grid
+     * at their cells.
+     * @param code The species code.
+     */
+    public void compact(int code)
+    {
+        int index = code - 1;
+        int size = sizes[index];
+        int survivors = 0;
+        for(int slot = 0; slot < size; slot++) {
+            if(getBit(alive[index], slot)) {
+                if(survivors != slot) {
+                    ages[index][survivors] = ages[index][slot];
+                    foodLevels[index][survivors] = foodLevels[index][slot];
+                    positions[index][survivors] = positions[index][slot];
+                    setBit(males[index], survivors, getBit(males[index], slot));
+                    setBit(alive[index], survivors, true);
+                }
+                place(code, survivors);
+                survivors++;
+            }
+        }
+        for(int slot = survivors; slot < size; slot++) {
+            setBit(alive[index], slot, false);
+        }
+        sizes[index] = survivors;
+    }
+
+    /**
+     * @return true if an occupant of a field is a living animal of the
+     *         species and gender of the living animal in a cell.
+     */
+    private boolean matches(Object occupant, int cell)
+    {
+        if(!(occupant instanceof Animal)) {
+            return false;
+        }
+        Animal animal = (Animal) occupant;
+        int code = cells[cell] & CODE_MASK;
+        if(code == Species.EMPTY_CODE || !animal.isAlive() || animal.getSpecies().getCode() != code) {
+            return false;
+        }
+        int slot = slots[cell];
+        return slot < sizes[code - 1] && isAlive(code, slot) && positions[code - 1][slot] == cell
+            && isMale(code, slot) == (animal.getGender() == Animal.Gender.Male);
+    }
+
+    /**
+     * Double the number of slots of a species.
+     * @param index The species code - 1.
+     */
+    private void grow(int index)
+    {
+        int capacity = positions[index].length * 2;
+        ages[index] = Arrays.copyOf(ages[index], capacity);
+        foodLevels[index] = Arrays.copyOf(foodLevels[index], capacity);
+        positions[index] = Arrays.copyOf(positions[index], capacity);
+        males[index] = Arrays.copyOf(males[index], capacity / 64);
+        alive[index] = Arrays.copyOf(alive[index], capacity / 64);
+    }
+
+    /**
+     * @return The bit of a bitset for a slot.
+     */
+    private static boolean getBit(long[] bits, int slot)
+    {
+        return (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Set or clear the bit of a bitset for a slot.
+     * @param bits The bitset.
+     * @param slot The slot.
+     * @param value The new value of the bit.
+     */
+    private static void setBit(long[] bits, int slot, boolean value)
+    {
+        if(value) {
+            bits[slot >>> 6] |= 1L << slot;
+        }
+        else {
+            bits[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+}
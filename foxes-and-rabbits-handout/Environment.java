@@ -21,28 +21,53 @@ public class Environment
 
     
     private int hourOfDay;
+    private int day;
     private Weather currentWeather;
-    private Random rand;
+    // The random numbers of the simulation, including the weather.
+    private Randomizer randomizer;
     
     /**
      * Constructor for objects of class Environment
      * Initialise time to 00:00 and weather to clear.
      */
     public Environment()
+    {
+        this(new Randomizer());
+    }
+
+    /**
+     * Constructor for objects of class Environment
+     * Initialise time to 00:00 and weather to clear.
+     * @param randomizer The random numbers of the simulation.
+     */
+    public Environment(Randomizer randomizer)
     {
         // initialise instance variables
         this.hourOfDay = 0;
+        this.day = 0;
         this.currentWeather = Weather.CLEAR;
-        this.rand = new Random();
+        this.randomizer = randomizer;
+    }
+
+    /**
+     * Return the random numbers of the simulation.
+     * @return The randomizer shared by the simulation.
+     */
+    public Randomizer getRandomizer()
+    {
+        return randomizer;
     }
     
     /**
      * Determine the next weather condition.
      * This is called at the end of every day
      * (i.e every 24 ticks)
+     * A change is recorded as a FlightEvents.WeatherChange event.
      */
     public void setRandomWeather() 
     {
+        Weather previousWeather = currentWeather;
+        Random rand = randomizer.startWeather(day);
 
         if (rand.nextDouble() <= CLEAR_PROBABILITY) {
             currentWeather = Weather.CLEAR;
@@ -51,6 +76,14 @@ public class Environment
         } else if (rand.nextDouble() <= FOG_PROBABILITY) {
             currentWeather = Weather.FOG;
         }
+
+        if (currentWeather != previousWeather && FlightEvents.recordsWeather()) {
+            FlightEvents.WeatherChange event = new FlightEvents.WeatherChange();
+            event.day = day;
+            event.from = previousWeather.name();
+            event.to = currentWeather.name();
+            event.commit();
+        }
     }
     
     /**
@@ -71,6 +104,52 @@ public class Environment
         return hourOfDay;
     }
     
+    /**
+     * Return the number of days that have passed, which decides the
+     * weather of each new day.
+     * @return The day instance variable
+     */
+    public int getDay()
+    {
+        return day;
+    }
+    
+    /**
+     * Set the clock back to 00:00 on the first day, with clear weather.
+     */
+    public void reset()
+    {
+        hourOfDay = 0;
+        day = 0;
+        currentWeather = Weather.CLEAR;
+    }
+
+    /**
+     * Set the clock and weather to previously saved values,
+     * e.g. when a simulation is resumed.
+     * @param hourOfDay The saved hour of the day.
+     * @param weather The saved weather.
+     */
+    public void restore(int hourOfDay, Weather weather)
+    {
+        this.hourOfDay = hourOfDay;
+        this.currentWeather = weather;
+    }
+
+    /**
+     * Set the clock, day and weather to previously saved values, so
+     * that the weather of the days to come is the same as it would
+     * have been.
+     * @param hourOfDay The saved hour of the day.
+     * @param day The saved day.
+     * @param weather The saved weather.
+     */
+    public void restore(int hourOfDay, int day, Weather weather)
+    {
+        restore(hourOfDay, weather);
+        this.day = day;
+    }
+
     /**
      * Increment the hour of the clock
      * If it is a new day, choose a new random weather event
@@ -80,6 +159,7 @@ public class Environment
         hourOfDay++;
         if (hourOfDay > 23) {
             hourOfDay = 0;
+            day++;
             setRandomWeather();
         }
     }
@@ -0,0 +1,335 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes what happens in each step of a simulation to a compact binary
+ * file: the animals that died and what of, the animals that moved, the
+ * animals that were born and the weather. The field at any step can be
+ * rebuilt from the file without running the species again (see
+ * EventReplay).
+ *
+ * The log starts with a keyframe listing every animal, and has another
+ * whenever the simulation is reset. Each step then lists, against the
+ * animals at the end of the step before:
+ * - the deaths, by the cell the animal was in and the cause;
+ * - the moves, by that cell and the direction moved in (an animal moves
+ *   at most one cell a step);
+ * - the births, by cell, species and gender.
+ * Each list is sorted by cell and written as varints of the gap from
+ * the cell before, with the cause, direction or species in the low
+ * bits, so most events take a byte or two. Animals born and eaten in
+ * the same step never appear in the field, and are not logged.
+ *
+ * The events are worked out after each step from the list of animals,
+ * on the thread running the simulation, so the log is the same however
+ * the step was run. The file is written through a channel and one
+ * direct buffer. An error writing the file stops the log, and is
+ * reported by close.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class EventLog
+{
+    // Identifies an event log file ("SAVE").
+    static final int MAGIC = 0x53415645;
+    // The version of the file layout.
+    static final int VERSION = 1;
+    // The tag of a keyframe record and of a step record.
+    static final int KEYFRAME = 0;
+    static final int STEP = 1;
+    // The low bits of a death, move and birth entry.
+    static final int CAUSE_BITS = 3;
+    static final int DIRECTION_BITS = 3;
+    static final int ANIMAL_BITS = 4;
+    // The size of the buffer the file is written through.
+    private static final int BUFFER_SIZE = 1 << 20;
+    // The longest varint, in bytes.
+    private static final int MAX_VARINT = 10;
+
+    // The open file.
+    private FileChannel channel;
+    // The buffer between the events and the file.
+    private ByteBuffer buffer;
+    // The first error writing the file, or null.
+    private IOException error;
+    // The width of the field, to number its cells.
+    private int width;
+    // The step of the last record written.
+    private int lastStep;
+
+    // The living animals at the end of the last record, and their cells.
+    private Animal[] animals;
+    private long[] cells;
+    private int count;
+    // The entries of the step being written: deaths, moves and births.
+    private long[] deaths, moves, births;
+
+    /**
+     * Create a log file for a field, replacing any existing file.
+     * @param file The file to write.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @throws IOException If the file cannot be created.
+     */
+    public EventLog(Path file, int depth, int width) throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                   StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.WRITE);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.width = width;
+        animals = new Animal[64];
+        cells = new long[64];
+        deaths = new long[64];
+        moves = new long[64];
+        births = new long[64];
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(depth);
+        buffer.putInt(width);
+    }
+
+    /**
+     * Write a keyframe: every living animal, e.g. when logging starts or
+     * the simulation is reset.
+     * @param step The step the simulation is at.
+     * @param clock The environment of the simulation.
+     * @param list The animals of the simulation.
+     */
+    public void keyframe(int step, Environment clock, List<Animal> list)
+    {
+        count = 0;
+        for(Animal animal : list) {
+            if(animal.isAlive()) {
+                remember(animal);
+            }
+        }
+        int entries = 0;
+        for(int i = 0; i < count; i++) {
+            births = append(births, entries++, (cells[i] << ANIMAL_BITS) | animalBits(animals[i]));
+        }
+        makeRoom(1 + 2 * MAX_VARINT + 1);
+        buffer.put((byte) KEYFRAME);
+        putVarint(step);
+        buffer.put((byte) clock.getCurrentWeather().ordinal());
+        writeEntries(births, entries, ANIMAL_BITS);
+        lastStep = step;
+    }
+
+    /**
+     * Write the events of a step that has just been run.
+     * @param step The step.
+     * @param clock The environment of the simulation.
+     * @param list The animals of the simulation after the step.
+     */
+    public void afterStep(int step, Environment clock, List<Animal> list)
+    {
+        // The survivors of the last record lead the list, in order,
+        // followed by the animals born in the step.
+        int deathCount = 0;
+        int moveCount = 0;
+        int survivors = 0;
+        for(int i = 0; i < count; i++) {
+            Animal animal = animals[i];
+            if(!animal.isAlive()) {
+                Animal.Cause cause = animal.getCauseOfDeath();
+                int bits = cause != null ? cause.ordinal() + 1 : 0;
+                deaths = append(deaths, deathCount++, (cells[i] << CAUSE_BITS) | bits);
+            }
+            else {
+                survivors++;
+                long cell = cellOf(animal);
+                if(cell != cells[i]) {
+                    moves = append(moves, moveCount++, (cells[i] << DIRECTION_BITS) | directionOf(cells[i], cell));
+                }
+            }
+        }
+        int birthCount = 0;
+        for(int i = survivors; i < list.size(); i++) {
+            Animal young = list.get(i);
+            if(young.isAlive()) {
+                births = append(births, birthCount++, (cellOf(young) << ANIMAL_BITS) | animalBits(young));
+            }
+        }
+
+        makeRoom(1 + MAX_VARINT + 1);
+        buffer.put((byte) STEP);
+        putVarint(step - lastStep);
+        buffer.put((byte) clock.getCurrentWeather().ordinal());
+        writeEntries(deaths, deathCount, CAUSE_BITS);
+        writeEntries(moves, moveCount, DIRECTION_BITS);
+        writeEntries(births, birthCount, ANIMAL_BITS);
+        lastStep = step;
+
+        count = 0;
+        for(Animal animal : list) {
+            if(animal.isAlive()) {
+                remember(animal);
+            }
+        }
+    }
+
+    /**
+     * Write out what is left of the log and close the file.
+     * @throws IOException If the log could not be written.
+     */
+    public void close() throws IOException
+    {
+        drain();
+        try {
+            channel.close();
+        }
+        catch(IOException e) {
+            if(error == null) {
+                error = e;
+            }
+        }
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Remember a living animal and its cell for the next record.
+     * @param animal The animal.
+     */
+    private void remember(Animal animal)
+    {
+        if(count == animals.length) {
+            animals = Arrays.copyOf(animals, count * 2);
+            cells = Arrays.copyOf(cells, count * 2);
+        }
+        animals[count] = animal;
+        cells[count] = cellOf(animal);
+        count++;
+    }
+
+    /**
+     * @return The number of the cell an animal is in.
+     */
+    private long cellOf(Animal animal)
+    {
+        Location location = animal.getLocation();
+        return (long) location.getRow() * width + location.getCol();
+    }
+
+    /**
+     * @return The species code of an animal, with bit 3 set for a male.
+     */
+    private static int animalBits(Animal animal)
+    {
+        int bits = animal.getSpecies().getCode();
+        if(animal.getGender() == Animal.Gender.Male) {
+            bits |= 1 << 3;
+        }
+        return bits;
+    }
+
+    /**
+     * Return the direction from a cell to an adjacent one.
+     * @param from The number of the first cell.
+     * @param to The number of the adjacent cell.
+     * @return The direction, as numbered by Field.
+     * @throws IllegalStateException If the cells are not adjacent.
+     */
+    private int directionOf(long from, long to)
+    {
+        long rowOffset = to / width - from / width;
+        long colOffset = to % width - from % width;
+        for(int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            if(Field.rowOffset(direction) == rowOffset && Field.colOffset(direction) == colOffset) {
+                return direction;
+            }
+        }
+        throw new IllegalStateException("An animal moved more than one cell in a step");
+    }
+
+    /**
+     * Put an entry in a list, making the list longer if need be.
+     * @param list The list.
+     * @param index Where to put the entry.
+     * @param entry The entry.
+     * @return The list, or a longer copy of it.
+     */
+    private static long[] append(long[] list, int index, long entry)
+    {
+        if(index == list.length) {
+            list = Arrays.copyOf(list, index * 2);
+        }
+        list[index] = entry;
+        return list;
+    }
+
+    /**
+     * Write a list of entries, each a cell number shifted left by the
+     * given number of bits with other details in the low bits. The
+     * entries are sorted by cell and written as the gap from the cell
+     * before.
+     * @param entries The entries.
+     * @param entryCount The number of entries.
+     * @param bits The number of low bits.
+     */
+    private void writeEntries(long[] entries, int entryCount, int bits)
+    {
+        Arrays.sort(entries, 0, entryCount);
+        makeRoom(MAX_VARINT);
+        putVarint(entryCount);
+        long previous = 0;
+        long low = (1L << bits) - 1;
+        for(int i = 0; i < entryCount; i++) {
+            long cell = entries[i] >>> bits;
+            makeRoom(MAX_VARINT);
+            putVarint(((cell - previous) << bits) | (entries[i] & low));
+            previous = cell;
+        }
+    }
+
+    /**
+     * Put a non-negative number in the buffer, seven bits a byte with
+     * the top bit set on every byte but the last.
+     * @param value The number.
+     */
+    private void putVarint(long value)
+    {
+        while((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Write out the buffer if it has less than the given room left.
+     * @param bytes The number of bytes about to be put in the buffer.
+     */
+    private void makeRoom(int bytes)
+    {
+        if(buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    /**
+     * Write the contents of the buffer to the file and empty it. After
+     * an error the contents are dropped.
+     */
+    private void drain()
+    {
+        buffer.flip();
+        try {
+            while(error == null && buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        catch(IOException e) {
+            error = e;
+        }
+        buffer.clear();
+    }
+}
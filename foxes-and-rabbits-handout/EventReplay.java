@@ -0,0 +1,409 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Rebuilds the field of a simulation, step by step, from an event log
+ * written by EventLog, without running the species. Only what is in
+ * each cell is rebuilt: the species and gender of its animal, not its
+ * age or food level. The deaths of the last step read are counted by
+ * cause.
+ *
+ * Run from the command line with a log file, it prints the population
+ * at every step, or just at one step if one is given:
+ *     java EventReplay run.log [step]
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class EventReplay
+{
+    // The size of the buffer the file is read through.
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // The open file.
+    private FileChannel channel;
+    // The buffer between the file and the field.
+    private ByteBuffer buffer;
+    // The depth and width of the field.
+    private int depth, width;
+    // What is in each cell: a species code, with bit 3 set for a male.
+    private byte[] cells;
+    // The step the field is at, or -1 before the first record.
+    private int step;
+    // The weather in the step.
+    private Environment.Weather weather;
+    // The number of animals of each species, indexed by code - 1.
+    private int[] population;
+    // The deaths in the last step read, indexed by cause.
+    private int[] deaths;
+    // The cells moved out of and into in the step being read.
+    private long[] moveFrom, moveTo;
+
+    /**
+     * Open an event log.
+     * @param file The log file.
+     * @throws IOException If the file cannot be read or is not an event log.
+     */
+    public EventReplay(Path file) throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.limit(0);
+        try {
+            fill(4 * Integer.BYTES);
+            if(buffer.getInt() != EventLog.MAGIC || buffer.getInt() != EventLog.VERSION) {
+                throw new IOException("Not an event log: " + file);
+            }
+            depth = buffer.getInt();
+            width = buffer.getInt();
+        }
+        catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        cells = new byte[depth * width];
+        step = -1;
+        weather = Environment.Weather.CLEAR;
+        population = new int[Species.COUNT];
+        deaths = new int[Animal.Cause.values().length];
+        moveFrom = new long[64];
+        moveTo = new long[64];
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The step the field is at, or -1 before the first record.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The weather in the step the field is at.
+     */
+    public Environment.Weather getWeather()
+    {
+        return weather;
+    }
+
+    /**
+     * Return what is in a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The species code of the cell, Species.EMPTY_CODE if it is empty.
+     */
+    public int getSpeciesCode(int row, int col)
+    {
+        return cells[row * width + col] & EntityStore.CODE_MASK;
+    }
+
+    /**
+     * @return true if the cell holds a male.
+     */
+    public boolean isMale(int row, int col)
+    {
+        return (cells[row * width + col] & EntityStore.MALE_FLAG) != 0;
+    }
+
+    /**
+     * @return The number of animals of a species in the field.
+     */
+    public int getPopulation(Species species)
+    {
+        return population[species.getCode() - 1];
+    }
+
+    /**
+     * @return The number of animals that died of a cause in the last step read.
+     */
+    public int getDeaths(Animal.Cause cause)
+    {
+        return deaths[cause.ordinal()];
+    }
+
+    /**
+     * Read the next record of the log, bringing the field up to the
+     * step it is for.
+     * @return false if the log has ended.
+     * @throws IOException If the file cannot be read.
+     */
+    public boolean next() throws IOException
+    {
+        if(!fillOrEnd(1)) {
+            return false;
+        }
+        int tag = buffer.get();
+        Arrays.fill(deaths, 0);
+        if(tag == EventLog.KEYFRAME) {
+            step = (int) readVarint();
+            readWeather();
+            Arrays.fill(cells, (byte) Species.EMPTY_CODE);
+            Arrays.fill(population, 0);
+            readBirths();
+        }
+        else {
+            step += (int) readVarint();
+            readWeather();
+            readDeaths();
+            readMoves();
+            readBirths();
+        }
+        return true;
+    }
+
+    /**
+     * Read on to a step.
+     * @param target The step to read to.
+     * @return false if the log ends before the step.
+     * @throws IOException If the file cannot be read.
+     */
+    public boolean seek(int target) throws IOException
+    {
+        while(step < target) {
+            if(!next()) {
+                return false;
+            }
+        }
+        return step == target;
+    }
+
+    /**
+     * Build a field holding an animal for each occupied cell, e.g. to
+     * show it in a SimulatorView. The animals have the species and
+     * gender of the log, and are of age 0.
+     * @param clock The environment the animals are given.
+     * @return The field.
+     */
+    public Field toField(Environment clock)
+    {
+        Field field = new Field(depth, width);
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                int code = getSpeciesCode(row, col);
+                if(code != Species.EMPTY_CODE) {
+                    Animal animal = Species.fromCode(code).create(false, field, new Location(row, col), clock);
+                    animal.restoreState(0, 0, isMale(row, col) ? Animal.Gender.Male : Animal.Gender.Female);
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Close the file.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Print the population at every step of a log, or at one step.
+     * @param args The log file, and optionally the step.
+     * @throws IOException If the log cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 1) {
+            System.out.println("Usage: java EventReplay <log file> [step]");
+            return;
+        }
+        EventReplay replay = new EventReplay(Paths.get(args[0]));
+        try {
+            if(args.length > 1) {
+                int target = Integer.parseInt(args[1]);
+                if(replay.seek(target)) {
+                    replay.print();
+                }
+                else {
+                    System.out.println("The log does not reach step " + target);
+                }
+            }
+            else {
+                while(replay.next()) {
+                    replay.print();
+                }
+            }
+        }
+        finally {
+            replay.close();
+        }
+    }
+
+    /**
+     * Print the step, the weather, the population of each species and
+     * the deaths of the step by cause.
+     */
+    private void print()
+    {
+        StringBuilder line = new StringBuilder();
+        line.append("Step ").append(step).append(' ').append(weather);
+        for(Species species : Species.values()) {
+            line.append(' ').append(species.getAnimalClass().getName());
+            line.append(": ").append(getPopulation(species));
+        }
+        for(Animal.Cause cause : Animal.Cause.values()) {
+            line.append(' ').append(cause).append(": ").append(getDeaths(cause));
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Read the weather of a record.
+     */
+    private void readWeather() throws IOException
+    {
+        fill(1);
+        weather = Environment.Weather.values()[buffer.get()];
+    }
+
+    /**
+     * Read the deaths of a step and empty their cells.
+     */
+    private void readDeaths() throws IOException
+    {
+        long entries = readVarint();
+        long cell = 0;
+        long low = (1L << EventLog.CAUSE_BITS) - 1;
+        for(long i = 0; i < entries; i++) {
+            long entry = readVarint();
+            cell += entry >>> EventLog.CAUSE_BITS;
+            int cause = (int) (entry & low);
+            if(cause > 0) {
+                deaths[cause - 1]++;
+            }
+            population[(cells[(int) cell] & EntityStore.CODE_MASK) - 1]--;
+            cells[(int) cell] = (byte) Species.EMPTY_CODE;
+        }
+    }
+
+    /**
+     * Read the moves of a step and carry them out. Every animal leaves
+     * its cell before any arrives, as an animal may move into a cell
+     * another has just left.
+     */
+    private void readMoves() throws IOException
+    {
+        int entries = (int) readVarint();
+        if(entries > moveFrom.length) {
+            moveFrom = new long[entries];
+            moveTo = new long[entries];
+        }
+        long cell = 0;
+        long low = (1L << EventLog.DIRECTION_BITS) - 1;
+        for(int i = 0; i < entries; i++) {
+            long entry = readVarint();
+            cell += entry >>> EventLog.DIRECTION_BITS;
+            int direction = (int) (entry & low);
+            moveFrom[i] = cell;
+            moveTo[i] = cell + Field.rowOffset(direction) * width + Field.colOffset(direction);
+        }
+        // Carry each animal in the low bits of its destination while
+        // the cells are emptied.
+        for(int i = 0; i < entries; i++) {
+            int from = (int) moveFrom[i];
+            moveTo[i] = (moveTo[i] << 8) | (cells[from] & 0xFF);
+            cells[from] = (byte) Species.EMPTY_CODE;
+        }
+        for(int i = 0; i < entries; i++) {
+            cells[(int) (moveTo[i] >>> 8)] = (byte) moveTo[i];
+        }
+    }
+
+    /**
+     * Read the births of a step, or the animals of a keyframe, and
+     * place them.
+     */
+    private void readBirths() throws IOException
+    {
+        long entries = readVarint();
+        long cell = 0;
+        long low = (1L << EventLog.ANIMAL_BITS) - 1;
+        for(long i = 0; i < entries; i++) {
+            long entry = readVarint();
+            cell += entry >>> EventLog.ANIMAL_BITS;
+            int bits = (int) (entry & low);
+            cells[(int) cell] = (byte) bits;
+            population[(bits & EntityStore.CODE_MASK) - 1]++;
+        }
+    }
+
+    /**
+     * @return The next varint of the file.
+     */
+    private long readVarint() throws IOException
+    {
+        long value = 0;
+        int shift = 0;
+        while(true) {
+            fill(1);
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * Read from the file until the buffer holds at least the given
+     * number of unread bytes.
+     * @param bytes The number of bytes about to be read from the buffer.
+     * @throws EOFException If the file ends first.
+     */
+    private void fill(int bytes) throws IOException
+    {
+        if(!fillOrEnd(bytes)) {
+            throw new EOFException("Event log ends in the middle of a record");
+        }
+    }
+
+    /**
+     * Read from the file until the buffer holds at least the given
+     * number of unread bytes, or the file ends.
+     * @param bytes The number of bytes about to be read from the buffer.
+     * @return false if the file ends first.
+     */
+    private boolean fillOrEnd(int bytes) throws IOException
+    {
+        if(buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        try {
+            while(buffer.position() < bytes) {
+                if(channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+        }
+        finally {
+            buffer.flip();
+        }
+        return true;
+    }
+}
@@ -1,8 +1,5 @@
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Represent a rectangular grid of field positions.
@@ -13,36 +10,162 @@ import java.util.Random;
  */
 public class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    // The number of locations adjacent to a location.
+    public static final int NEIGHBOURS = 8;
+    // The row and column offsets of each direction to an adjacent location.
+    private static final int[] ROW_OFFSETS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final int[] COL_OFFSETS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    // The number of different orders in which the directions can be visited (8!).
+    private static final int ORDERINGS = 40320;
+    // Every order of the directions, NEIGHBOURS entries per ordering.
+    private static final byte[] PERMUTATIONS = buildPermutations();
+    // For every 8 bit direction mask, the direction of its j-th set bit
+    // at index mask * NEIGHBOURS + j.
+    private static final byte[] SELECT = buildSelect();
     
     // The depth and width of the field.
     private int depth, width;
     // Storage for the animals.
-    private Object[][] field;
+    private FieldStorage storage;
+    // Whether the field is frozen: while it is, animals being placed
+    // and cleared leave it unchanged (see SynchronousStepper).
+    private boolean frozen;
+    // The plants of the field, if they are kept as a layer rather than
+    // as Plant objects in the storage; otherwise null.
+    private PlantLayer plants;
+    // The tiles of the field that have changed.
+    private DirtyTiles changes;
+    // The count of what is in the field.
+    private Census census;
 
     /**
      * Represent a field of the given dimensions.
+     * The animals are kept in packed, row-major storage.
      * @param depth The depth of the field.
      * @param width The width of the field.
      */
     public Field(int depth, int width)
     {
-        this.depth = depth;
-        this.width = width;
-        field = new Object[depth][width];
+        this(new PackedFieldStorage(depth, width));
+    }
+
+    /**
+     * Represent a field kept in the given storage.
+     * The field takes its dimensions from the storage.
+     * @param storage The storage for the animals.
+     */
+    public Field(FieldStorage storage)
+    {
+        this.storage = storage;
+        depth = storage.getDepth();
+        width = storage.getWidth();
+        changes = new DirtyTiles(depth, width);
+        census = new Census(depth, width);
+        recount();
     }
     
+    /**
+     * Return whether the field is frozen. While it is, place and clear
+     * do nothing, so every animal sees the field as it was when it
+     * was frozen.
+     * @return true if the field is frozen.
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    /**
+     * Freeze or unfreeze the field.
+     * @param frozen true to freeze the field.
+     */
+    public void setFrozen(boolean frozen)
+    {
+        this.frozen = frozen;
+    }
+
+    /**
+     * Keep the plants of the field in a layer (see PlantLayer). The
+     * plants of the layer occupy their cells like any animal, but have
+     * no object: getObjectAt returns null for them.
+     * @param plants The plant layer, or null to have no layer.
+     */
+    public void setPlantLayer(PlantLayer plants)
+    {
+        if(this.plants != null) {
+            this.plants.setChanges(null, null);
+        }
+        this.plants = plants;
+        if(plants != null) {
+            plants.setChanges(changes, census);
+        }
+        changes.markAll();
+        recount();
+    }
+
+    /**
+     * @return The plant layer of the field, or null if it has none.
+     */
+    public PlantLayer getPlantLayer()
+    {
+        return plants;
+    }
+
+    /**
+     * Return the record of the tiles that have changed, so that a
+     * view or count of the field need only look again at those.
+     * @return The changes to the field.
+     */
+    public DirtyTiles getChanges()
+    {
+        return changes;
+    }
+
+    /**
+     * Return the count of what is in the field, kept up to date as
+     * animals are placed and cleared.
+     * @return The census of the field.
+     */
+    public Census getCensus()
+    {
+        return census;
+    }
+
+    /**
+     * Return the storage the animals are kept in.
+     * @return The storage of the field.
+     */
+    public FieldStorage getStorage()
+    {
+        return storage;
+    }
+
+    /**
+     * Keep the animals in other storage of the same size from now on,
+     * e.g. to swap in a buffer that has been filled with the result of
+     * a step. Whoever filled the buffer must record the cells that
+     * differ in getChanges, and the animals that differ in getCensus.
+     * @param replacement The new storage.
+     * @return The storage that was used before.
+     */
+    public FieldStorage swapStorage(FieldStorage replacement)
+    {
+        FieldStorage previous = storage;
+        storage = replacement;
+        return previous;
+    }
+
     /**
      * Empty the field.
      */
     public void clear()
     {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                field[row][col] = null;
-            }
+        storage.clearAll();
+        if(plants != null) {
+            plants.clear();
         }
+        changes.markAll();
+        census.clear();
     }
     
     /**
@@ -51,7 +174,14 @@ public class Field
      */
     public void clear(Location location)
     {
-        field[location.getRow()][location.getCol()] = null;
+        if(frozen) {
+            return;
+        }
+        int row = location.getRow();
+        int col = location.getCol();
+        uncount(row, col);
+        storage.clear(row, col);
+        changes.mark(row, col);
     }
     
     /**
@@ -76,7 +206,56 @@ public class Field
      */
     public void place(Object animal, Location location)
     {
-        field[location.getRow()][location.getCol()] = animal;
+        if(frozen) {
+            return;
+        }
+        int row = location.getRow();
+        int col = location.getCol();
+        uncount(row, col);
+        storage.set(row, col, animal);
+        census.add(row, col, storage.getSpeciesCode(row, col), genderOf(animal));
+        changes.mark(row, col);
+    }
+
+    /**
+     * Stop counting the animal in a cell, if there is one, before it
+     * is cleared or replaced.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    private void uncount(int row, int col)
+    {
+        int code = storage.getSpeciesCode(row, col);
+        if(code != Species.EMPTY_CODE) {
+            census.remove(row, col, code, genderOf(storage.get(row, col)));
+        }
+    }
+
+    /**
+     * Count everything in the field afresh, e.g. when a plant layer
+     * is added or taken away.
+     */
+    private void recount()
+    {
+        census.clear();
+        for(int row = nextOccupiedRow(0); row < depth; row = nextOccupiedRow(row + 1)) {
+            for(int col = nextOccupiedColumn(row, 0); col < width; col = nextOccupiedColumn(row, col + 1)) {
+                census.add(row, col, getSpeciesCodeAt(row, col), genderOf(getObjectAt(row, col)));
+            }
+        }
+    }
+
+    /**
+     * Return the gender of an occupant of the field.
+     * @param occupant The occupant.
+     * @return Its gender, or null if it is not an animal.
+     */
+    public static Animal.Gender genderOf(Object occupant)
+    {
+        if(occupant instanceof Animal) {
+            return ((Animal) occupant).getGender();
+        }
+        return null;
     }
     
     /**
@@ -97,9 +276,276 @@ public class Field
      */
     public Object getObjectAt(int row, int col)
     {
-        return field[row][col];
+        return storage.get(row, col);
+    }
+
+    /**
+     * Return the species code of the animal at the given location.
+     * This is cheaper than getObjectAt when only the kind of
+     * animal matters, e.g. when counting or drawing the field.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The species code, or Species.EMPTY_CODE if there is no animal.
+     */
+    public int getSpeciesCodeAt(int row, int col)
+    {
+        int code = storage.getSpeciesCode(row, col);
+        if(code == Species.EMPTY_CODE && plants != null && plants.isPlant(row, col)) {
+            return Species.PLANT.getCode();
+        }
+        return code;
     }
     
+    /**
+     * Choose a random order in which to visit the locations adjacent
+     * to a location. Every order is equally likely. The directions
+     * of the order are obtained with direction(ordering, k).
+     * @return The chosen ordering.
+     */
+    public int randomOrdering()
+    {
+        return Randomizer.getRandom().nextInt(ORDERINGS);
+    }
+
+    /**
+     * Return a direction of an ordering of the adjacent locations.
+     * @param ordering An ordering, as returned by randomOrdering.
+     * @param k Which direction of the ordering, from 0 to NEIGHBOURS - 1.
+     * @return The k-th direction of the ordering.
+     */
+    public static int direction(int ordering, int k)
+    {
+        return PERMUTATIONS[ordering * NEIGHBOURS + k];
+    }
+
+    /**
+     * Return the first row, at or after the given one, that may hold
+     * an animal. Together with nextOccupiedColumn this lets a scan of
+     * the field skip empty regions:
+     * for(row = nextOccupiedRow(0); row < depth; row = nextOccupiedRow(row + 1))
+     *     for(col = nextOccupiedColumn(row, 0); col < width; col = nextOccupiedColumn(row, col + 1))
+     * @param row The row to start from.
+     * @return A row that may hold an animal, or the depth if there is none.
+     */
+    public int nextOccupiedRow(int row)
+    {
+        if(plants != null) {
+            return row;
+        }
+        return storage.nextOccupiedRow(row);
+    }
+
+    /**
+     * Return the first column of a row, at or after the given one,
+     * that holds an animal.
+     * @param row The row to look in.
+     * @param col The column to start from.
+     * @return The column, or the width if there is none.
+     */
+    public int nextOccupiedColumn(int row, int col)
+    {
+        if(plants != null) {
+            return Math.min(storage.nextOccupiedColumn(row, col), plants.nextPlantColumn(row, col));
+        }
+        return storage.nextOccupiedColumn(row, col);
+    }
+
+    /**
+     * Return the row offset of a direction.
+     * @param direction A direction, from 0 to NEIGHBOURS - 1.
+     * @return -1, 0 or 1.
+     */
+    public static int rowOffset(int direction)
+    {
+        return ROW_OFFSETS[direction];
+    }
+
+    /**
+     * Return the column offset of a direction.
+     * @param direction A direction, from 0 to NEIGHBOURS - 1.
+     * @return -1, 0 or 1.
+     */
+    public static int colOffset(int direction)
+    {
+        return COL_OFFSETS[direction];
+    }
+
+    /**
+     * Check whether the location in the given direction from a
+     * location lies within the field.
+     * @param location The location to look from.
+     * @param direction The direction to look in.
+     * @return true if the adjacent location is within the field.
+     */
+    public boolean isAdjacentInField(Location location, int direction)
+    {
+        int row = location.getRow() + ROW_OFFSETS[direction];
+        int col = location.getCol() + COL_OFFSETS[direction];
+        return row >= 0 && row < depth && col >= 0 && col < width;
+    }
+
+    /**
+     * Return the animal in the given direction from a location, if any.
+     * @param location The location to look from.
+     * @param direction The direction to look in.
+     * @return The animal found, or null if there is none or the
+     *         adjacent location lies outside the field.
+     */
+    public Object getAdjacentObject(Location location, int direction)
+    {
+        if(isAdjacentInField(location, direction)) {
+            return storage.get(location.getRow() + ROW_OFFSETS[direction],
+                               location.getCol() + COL_OFFSETS[direction]);
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Check whether the location in the given direction from a
+     * location is within the field and empty.
+     * @param location The location to look from.
+     * @param direction The direction to look in.
+     * @return true if the adjacent location is free.
+     */
+    public boolean isAdjacentFree(Location location, int direction)
+    {
+        return isAdjacentInField(location, direction)
+            && getSpeciesCodeAt(location.getRow() + ROW_OFFSETS[direction],
+                                location.getCol() + COL_OFFSETS[direction]) == Species.EMPTY_CODE;
+    }
+
+    /**
+     * Return the location in the given direction from a location.
+     * The caller must have checked that it lies within the field.
+     * @param location The location to look from.
+     * @param direction The direction to look in.
+     * @return The adjacent location.
+     */
+    public Location adjacentLocation(Location location, int direction)
+    {
+        return new Location(location.getRow() + ROW_OFFSETS[direction],
+                            location.getCol() + COL_OFFSETS[direction]);
+    }
+
+    /**
+     * Return which of the locations adjacent to a location lie within
+     * the field, as a mask with bit d set for direction d.
+     * @param location The location to look from.
+     * @return The mask of adjacent locations within the field.
+     */
+    public int inFieldMask(Location location)
+    {
+        return inFieldMask(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Return which of the cells adjacent to a cell lie within the
+     * field, as a mask with bit d set for direction d.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The mask of adjacent cells within the field.
+     */
+    public int inFieldMask(int row, int col)
+    {
+        int mask = 0xFF;
+        if(row == 0) {
+            mask &= ~0x07;
+        }
+        if(row == depth - 1) {
+            mask &= ~0xE0;
+        }
+        if(col == 0) {
+            mask &= ~0x29;
+        }
+        if(col == width - 1) {
+            mask &= ~0x94;
+        }
+        return mask;
+    }
+
+    /**
+     * Return which of the locations adjacent to a location are free,
+     * as a mask with bit d set for direction d.
+     * @param location The location to look from.
+     * @return The mask of free adjacent locations.
+     */
+    public int freeAdjacentMask(Location location)
+    {
+        int row = location.getRow();
+        int col = location.getCol();
+        int occupied = storage.occupiedNeighbours(row, col);
+        if(plants != null) {
+            occupied |= plants.neighbours(row, col);
+        }
+        return inFieldMask(row, col) & ~occupied;
+    }
+
+    /**
+     * Return which of the locations adjacent to a location hold one
+     * of a set of species, as a mask with bit d set for direction d.
+     * @param location The location to look from.
+     * @param speciesSet The species looked for, as Species.bit() values or'ed together.
+     * @return The mask of adjacent locations holding one of the species.
+     */
+    public int adjacentSpeciesMask(Location location, int speciesSet)
+    {
+        int row = location.getRow();
+        int col = location.getCol();
+        int mask = storage.speciesNeighbours(row, col, speciesSet);
+        if(plants != null && (speciesSet & Species.PLANT.bit()) != 0) {
+            mask |= plants.neighbours(row, col);
+        }
+        return mask;
+    }
+
+    /**
+     * Return which of the locations adjacent to a location hold a
+     * male of one of a set of species, as a mask with bit d set for
+     * direction d.
+     * @param location The location to look from.
+     * @param speciesSet The species looked for, as Species.bit() values or'ed together.
+     * @return The mask of adjacent locations holding a male of one of the species.
+     */
+    public int adjacentMaleMask(Location location, int speciesSet)
+    {
+        return storage.maleNeighbours(location.getRow(), location.getCol(), speciesSet);
+    }
+
+    /**
+     * Choose one of the directions of a mask at random, each being
+     * equally likely.
+     * @param mask A non-empty mask of directions.
+     * @return The chosen direction.
+     */
+    public int randomDirection(int mask)
+    {
+        int chosen = Randomizer.getRandom().nextInt(Integer.bitCount(mask));
+        return selectDirection(mask, chosen);
+    }
+
+    /**
+     * Return one of the directions of a mask.
+     * @param mask A mask of directions.
+     * @param k Which of its set bits, counting from direction 0.
+     * @return The direction of the k-th set bit of the mask.
+     */
+    public static int selectDirection(int mask, int k)
+    {
+        return SELECT[mask * NEIGHBOURS + k];
+    }
+
+    /**
+     * Check whether there is any free location adjacent to a location.
+     * @param location The location to look from.
+     * @return true if at least one adjacent location is free.
+     */
+    public boolean hasFreeAdjacentLocation(Location location)
+    {
+        return freeAdjacentMask(location) != 0;
+    }
+
     /**
      * Generate a random location that is adjacent to the
      * given location, or is the same location.
@@ -110,8 +556,14 @@ public class Field
      */
     public Location randomAdjacentLocation(Location location)
     {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        int ordering = randomOrdering();
+        for(int k = 0; k < NEIGHBOURS; k++) {
+            int direction = direction(ordering, k);
+            if(isAdjacentInField(location, direction)) {
+                return adjacentLocation(location, direction);
+            }
+        }
+        return location;
     }
     
     /**
@@ -122,11 +574,11 @@ public class Field
     public List<Location> getFreeAdjacentLocations(Location location)
     {
         List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for(Location next : adjacent) {
-            if(getObjectAt(next) == null) {
-                free.add(next);
-            }
+        int mask = freeAdjacentMask(location);
+        while(mask != 0) {
+            int direction = randomDirection(mask);
+            mask &= ~(1 << direction);
+            free.add(adjacentLocation(location, direction));
         }
         return free;
     }
@@ -141,10 +593,9 @@ public class Field
      */
     public Location freeAdjacentLocation(Location location)
     {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if(free.size() > 0) {
-            return free.get(0);
+        int mask = freeAdjacentMask(location);
+        if(mask != 0) {
+            return adjacentLocation(location, randomDirection(mask));
         }
         else {
             return null;
@@ -164,24 +615,14 @@ public class Field
         // The list of locations to be returned.
         List<Location> locations = new LinkedList<>();
         if(location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
+            // Several other methods rely on the list being in a random order.
+            int ordering = randomOrdering();
+            for(int k = 0; k < NEIGHBOURS; k++) {
+                int direction = direction(ordering, k);
+                if(isAdjacentInField(location, direction)) {
+                    locations.add(adjacentLocation(location, direction));
                 }
             }
-            
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
         }
         return locations;
     }
@@ -203,4 +644,61 @@ public class Field
     {
         return width;
     }
+
+    /**
+     * Build the table of every order of the NEIGHBOURS directions,
+     * generated in lexicographic order.
+     * @return The table, NEIGHBOURS entries per ordering.
+     */
+    private static byte[] buildPermutations()
+    {
+        byte[] table = new byte[ORDERINGS * NEIGHBOURS];
+        byte[] current = new byte[NEIGHBOURS];
+        for(int i = 0; i < NEIGHBOURS; i++) {
+            current[i] = (byte) i;
+        }
+        for(int ordering = 0; ordering < ORDERINGS; ordering++) {
+            System.arraycopy(current, 0, table, ordering * NEIGHBOURS, NEIGHBOURS);
+            // Step to the next permutation.
+            int i = NEIGHBOURS - 2;
+            while(i >= 0 && current[i] > current[i + 1]) {
+                i--;
+            }
+            if(i >= 0) {
+                int j = NEIGHBOURS - 1;
+                while(current[j] < current[i]) {
+                    j--;
+                }
+                byte swap = current[i];
+                current[i] = current[j];
+                current[j] = swap;
+                for(int left = i + 1, right = NEIGHBOURS - 1; left < right; left++, right--) {
+                    swap = current[left];
+                    current[left] = current[right];
+                    current[right] = swap;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Build the table giving the direction of the j-th set bit of
+     * every 8 bit direction mask.
+     * @return The table, NEIGHBOURS entries per mask.
+     */
+    private static byte[] buildSelect()
+    {
+        byte[] table = new byte[256 * NEIGHBOURS];
+        for(int mask = 0; mask < 256; mask++) {
+            int j = 0;
+            for(int direction = 0; direction < NEIGHBOURS; direction++) {
+                if((mask & (1 << direction)) != 0) {
+                    table[mask * NEIGHBOURS + j] = (byte) direction;
+                    j++;
+                }
+            }
+        }
+        return table;
+    }
 }
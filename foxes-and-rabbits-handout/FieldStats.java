@@ -1,5 +1,7 @@
-import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * This class collects and provides some statistical data on the state 
@@ -11,8 +13,15 @@ import java.util.HashMap;
  */
 public class FieldStats
 {
-    // Counters for each type of entity (fox, rabbit, etc.) in the simulation.
-    private HashMap<Class, Counter> counters;
+    // The count of each type of entity (fox, rabbit, etc.) in the
+    // simulation, by id: the species code of each species, and the
+    // ids after Species.COUNT for any other classes found in the field.
+    private CountTable counts;
+    // Counters for each type found so far, indexed by id, null for
+    // the types not yet found.
+    private Counter[] counters;
+    // The classes other than the species, in the order of their ids.
+    private List<Class<?>> otherClasses;
     // Whether the counters are currently up to date.
     private boolean countsValid;
 
@@ -21,9 +30,11 @@ public class FieldStats
      */
     public FieldStats()
     {
-        // Set up a collection for counters for each type of animal that
+        // Set up a table of counts for each type of animal that
         // we might find
-        counters = new HashMap<>();
+        counts = new PlainCountTable(Species.COUNT + 1);
+        counters = new Counter[Species.COUNT + 1];
+        otherClasses = new ArrayList<>();
         countsValid = true;
     }
 
@@ -37,8 +48,10 @@ public class FieldStats
         if(!countsValid) {
             generateCounts(field);
         }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
+        for(Counter info : counters) {
+            if(info == null) {
+                continue;
+            }
             buffer.append(info.getName());
             buffer.append(": ");
             buffer.append(info.getCount());
@@ -47,59 +60,107 @@ public class FieldStats
         return buffer.toString();
     }
 
-    public String getPopulationStatistics(Field field){
+    /**
+     * Get the population of the field by species and gender.
+     * @param field The field.
+     * @return The population.
+     */
+    public PopulationStatistics getStatistics(Field field)
+    {
+        return new PopulationStatistics(field.getCensus());
+    }
+
+    /**
+     * Get the population of the field by species, gender and age. The
+     * ages are counted in one pass over the field.
+     * @param field The field.
+     * @return The population.
+     */
+    public PopulationStatistics getAgeStatistics(Field field)
+    {
+        return new PopulationStatistics(field.getCensus(), field);
+    }
+
+    /**
+     * Get details of what is in the field, with the number of males
+     * and females of each class, and of each species in each age group.
+     * @param field The field.
+     * @return A string describing what is in the field.
+     */
+    public String getPopulationStatistics(Field field)
+    {
         StringBuffer buffer = new StringBuffer();
         if(!countsValid) {
             generateCounts(field);
         }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
+        PopulationStatistics statistics = getAgeStatistics(field);
+        HashMap<Class<?>, int[]> otherGenders = null;
+        for(int id = 1; id < counters.length; id++) {
+            Counter info = counters[id];
+            if(info == null) {
+                continue;
+            }
+            int males;
+            int females;
+            if(id <= Species.COUNT) {
+                Species species = Species.fromCode(id);
+                males = statistics.getMales(species);
+                females = statistics.getFemales(species);
+            }
+            else {
+                if(otherGenders == null) {
+                    otherGenders = countOtherGenders(field);
+                }
+                int[] genders = otherGenders.getOrDefault(otherClasses.get(id - Species.COUNT - 1), new int[2]);
+                males = genders[0];
+                females = genders[1];
+            }
             buffer.append(" [Class ");
             buffer.append(info.getName());
             buffer.append("] : [Count ");
             buffer.append(info.getCount());
-            buffer.append("] : [Genders ");
-            String genders = getGenders(key,field);
-            buffer.append(genders);
-            buffer.append("] \n");
+            buffer.append("] : [Genders {Males : ");
+            buffer.append(males);
+            buffer.append(" } : {Females : ");
+            buffer.append(females);
+            buffer.append(" }]");
+            if(id <= Species.COUNT) {
+                buffer.append(" : [Ages by quarter of life {");
+                for(int group = 0; group < PopulationStatistics.AGE_GROUPS; group++) {
+                    buffer.append(group == 0 ? " " : ", ");
+                    buffer.append(statistics.getCountInAgeGroup(Species.fromCode(id), group));
+                }
+                buffer.append(" }]");
+            }
+            buffer.append(" \n");
         }
         return buffer.toString();
     }
 
-    private String getGenders(Class key, Field field){
-
-        Integer males = 0;
-        Integer females = 0;
-
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if (animal != null){
-                    if(animal.getClass().equals(key)) {
-                        Animal currentAnimal = (Animal) animal;
-                        if (currentAnimal.getGenderString().equals("Male")){
-                            males++;
-                        }
-                        else if (currentAnimal.getGenderString().equals("Female")){
-                            females++;
-                        }
+    /**
+     * Count the males and females of the animals in the field that are
+     * not of one of the species, which the census cannot tell apart.
+     * @param field The field.
+     * @return The males and females of each such class.
+     */
+    private HashMap<Class<?>, int[]> countOtherGenders(Field field)
+    {
+        HashMap<Class<?>, int[]> genders = new HashMap<>();
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        for(int row = field.nextOccupiedRow(0); row < depth; row = field.nextOccupiedRow(row + 1)) {
+            for(int col = field.nextOccupiedColumn(row, 0); col < width; col = field.nextOccupiedColumn(row, col + 1)) {
+                if(field.getSpeciesCodeAt(row, col) == Species.UNKNOWN_CODE) {
+                    Object occupant = field.getObjectAt(row, col);
+                    Animal.Gender gender = Field.genderOf(occupant);
+                    if(gender != null) {
+                        int[] count = genders.computeIfAbsent(occupant.getClass(), key -> new int[2]);
+                        count[gender == Animal.Gender.Male ? 0 : 1]++;
                     }
                 }
             }
         }
-
-        StringBuffer strBuffer = new StringBuffer();
-        
-        String malesStr = males.toString();
-        String femalesStr = females.toString();
-
-        strBuffer.append("{Males : ");
-        strBuffer.append(malesStr);
-        strBuffer.append(" } : {Females : ");
-        strBuffer.append(femalesStr);
-        strBuffer.append(" }");
-
-        return strBuffer.toString();
+        return genders;
     }
 
     /**
@@ -109,10 +170,7 @@ public class FieldStats
     public void reset()
     {
         countsValid = false;
-        for(Class key : counters.keySet()) {
-            Counter count = counters.get(key);
-            count.reset();
-        }
+        counts.reset();
     }
 
     /**
@@ -121,14 +179,49 @@ public class FieldStats
      */
     public void incrementCount(Class animalClass)
     {
-        Counter count = counters.get(animalClass);
+        counterFor(idOf(animalClass)).increment();
+    }
+
+    /**
+     * Return the id of a class of animal, giving it one if it is not
+     * one of the species and has not been seen before.
+     * @param animalClass The class of animal.
+     * @return The id.
+     */
+    private int idOf(Class<?> animalClass)
+    {
+        Species species = Species.forClass(animalClass);
+        if(species != null) {
+            return species.getCode();
+        }
+        int index = otherClasses.indexOf(animalClass);
+        if(index < 0) {
+            index = otherClasses.size();
+            otherClasses.add(animalClass);
+        }
+        return Species.COUNT + 1 + index;
+    }
+
+    /**
+     * Return the counter for one id, creating it if need be.
+     * @param id The id of a species or other class.
+     * @return The counter.
+     */
+    private Counter counterFor(int id)
+    {
+        if(id >= counters.length) {
+            counters = Arrays.copyOf(counters, id + 1);
+        }
+        Counter count = counters[id];
         if(count == null) {
             // We do not have a counter for this species yet.
             // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
+            Class<?> animalClass = id <= Species.COUNT ? Species.fromCode(id).getAnimalClass()
+                                                       : otherClasses.get(id - Species.COUNT - 1);
+            count = new Counter(animalClass.getName(), counts, id);
+            counters[id] = count;
         }
-        count.increment();
+        return count;
     }
 
     /**
@@ -151,33 +244,79 @@ public class FieldStats
         if(!countsValid) {
             generateCounts(field);
         }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            if(info.getCount() > 0) {
+        for(int id = 1; id < counters.length; id++) {
+            if(counts.get(id) > 0) {
                 nonZero++;
             }
         }
         return nonZero > 1;
     }
-    
+
     /**
-     * Generate counts of the number of foxes and rabbits.
-     * These are not kept up to date as foxes and rabbits
-     * are placed in the field, but only when a request
-     * is made for the information.
+     * Generate counts of the number of each species.
+     * They are read from the census of the field, which is kept
+     * up to date as animals are placed and cleared, so the field
+     * itself is only looked at if it holds objects of classes
+     * other than the species.
      * @param field The field to generate the stats for.
      */
     private void generateCounts(Field field)
     {
         reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    incrementCount(animal.getClass());
+        Census census = field.getCensus();
+        if(census.getCount(Species.UNKNOWN_CODE) > 0) {
+            // Objects of other classes must each be looked at.
+            countCells(field);
+        }
+        else {
+            for(int code = 1; code <= Species.COUNT; code++) {
+                if(census.getCount(code) > 0) {
+                    counterFor(code).add(census.getCount(code));
                 }
             }
         }
         countsValid = true;
     }
+
+    /**
+     * Count every occupied cell of the field by class.
+     * @param field The field to count.
+     */
+    private void countCells(Field field)
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        for(int row = field.nextOccupiedRow(0); row < depth; row = field.nextOccupiedRow(row + 1)) {
+            for(int col = field.nextOccupiedColumn(row, 0); col < width; col = field.nextOccupiedColumn(row, col + 1)) {
+                int code = field.getSpeciesCodeAt(row, col);
+                if(code != Species.UNKNOWN_CODE) {
+                    counterFor(code).increment();
+                }
+                else {
+                    incrementCount(field.getObjectAt(row, col).getClass());
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the class of the animal in an occupied cell, using the
+     * species code so that the animal itself is only looked at if
+     * it is not one of the known species.
+     * @param field The field being scanned.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param code The species code of the cell.
+     * @return The class of the occupant.
+     */
+    static Class<?> classOf(Field field, int row, int col, int code)
+    {
+        Species species = Species.fromCode(code);
+        if(species != null) {
+            return species.getAnimalClass();
+        }
+        else {
+            return field.getObjectAt(row, col).getClass();
+        }
+    }
 }
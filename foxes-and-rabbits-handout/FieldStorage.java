@@ -0,0 +1,173 @@
+/**
+ * The storage behind a Field. A Field keeps its occupants in one of
+ * these, so that the layout of the grid in memory can be changed
+ * without changing the Field API used by the species.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public interface FieldStorage
+{
+    /**
+     * @return The depth of the stored grid.
+     */
+    int getDepth();
+
+    /**
+     * @return The width of the stored grid.
+     */
+    int getWidth();
+
+    /**
+     * Return the occupant of a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The occupant, or null if the cell is empty.
+     */
+    Object get(int row, int col);
+
+    /**
+     * Return the species code of the occupant of a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The species code, Species.EMPTY_CODE if the cell is empty.
+     */
+    int getSpeciesCode(int row, int col);
+
+    /**
+     * Store an occupant in a cell, replacing any previous occupant.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param occupant The new occupant, not null.
+     */
+    void set(int row, int col, Object occupant);
+
+    /**
+     * Empty a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    void clear(int row, int col);
+
+    /**
+     * Empty every cell.
+     */
+    void clearAll();
+
+    /**
+     * Create empty storage of the same kind and size as this one.
+     * @return The new storage.
+     */
+    FieldStorage createEmpty();
+
+    /**
+     * Return the first row, at or after the given one, that may hold
+     * an occupied cell. Storage that knows where its empty regions are
+     * should override this so that scans can skip them.
+     * @param row The row to start from.
+     * @return A row that may be occupied, or the depth if there is none.
+     */
+    default int nextOccupiedRow(int row)
+    {
+        return row;
+    }
+
+    /**
+     * Return the first occupied column of a row, at or after the
+     * given column.
+     * @param row The row to look in.
+     * @param col The column to start from.
+     * @return The occupied column, or the width if there is none.
+     */
+    default int nextOccupiedColumn(int row, int col)
+    {
+        while(col < getWidth() && getSpeciesCode(row, col) == Species.EMPTY_CODE) {
+            col++;
+        }
+        return col;
+    }
+
+    /**
+     * Return which of the cells adjacent to a cell are occupied, as
+     * a mask with bit d set if the neighbour in direction d of the
+     * Field direction table is occupied. Neighbours outside the grid
+     * read as empty. Storage that keeps an occupancy bitmap should
+     * override this with something cheaper than looking at each cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The mask of occupied neighbours.
+     */
+    default int occupiedNeighbours(int row, int col)
+    {
+        int mask = 0;
+        for(int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            if(neighbourCode(row, col, direction) != Species.EMPTY_CODE) {
+                mask |= 1 << direction;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Return which of the cells adjacent to a cell hold one of a set
+     * of species, as a mask in the same form as occupiedNeighbours.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param speciesSet The species looked for, as Species.bit() values or'ed together.
+     * @return The mask of neighbours holding one of the species.
+     */
+    default int speciesNeighbours(int row, int col, int speciesSet)
+    {
+        int mask = 0;
+        for(int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            if((speciesSet & (1 << neighbourCode(row, col, direction))) != 0) {
+                mask |= 1 << direction;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Return which of the cells adjacent to a cell hold a male of one
+     * of a set of species, as a mask in the same form as occupiedNeighbours.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param speciesSet The species looked for, as Species.bit() values or'ed together.
+     * @return The mask of neighbours holding a male of one of the species.
+     */
+    default int maleNeighbours(int row, int col, int speciesSet)
+    {
+        int mask = speciesNeighbours(row, col, speciesSet);
+        int males = 0;
+        for(int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            if((mask & (1 << direction)) != 0) {
+                Animal animal = (Animal) get(row + Field.rowOffset(direction),
+                                             col + Field.colOffset(direction));
+                if(animal.getGender() == Animal.Gender.Male) {
+                    males |= 1 << direction;
+                }
+            }
+        }
+        return males;
+    }
+
+    /**
+     * Return the species code of a neighbour of a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param direction The direction of the neighbour.
+     * @return The species code, Species.EMPTY_CODE if the neighbour
+     *         is empty or outside the grid.
+     */
+    private int neighbourCode(int row, int col, int direction)
+    {
+        int nextRow = row + Field.rowOffset(direction);
+        int nextCol = col + Field.colOffset(direction);
+        if(nextRow >= 0 && nextRow < getDepth() && nextCol >= 0 && nextCol < getWidth()) {
+            return getSpeciesCode(nextRow, nextCol);
+        }
+        else {
+            return Species.EMPTY_CODE;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+/**
+ * The events a simulation writes to a JDK Flight Recorder recording, so
+ * that what the simulation does can be lined up with allocation and
+ * garbage collection in the same recording: each step, the phases of a
+ * step, changes of weather, crashes in the population of a species and
+ * bursts of predation.
+ *
+ * The events are disabled unless a recording enables them, e.g. one
+ * started with record. Whether each is enabled is asked of its event
+ * type, looked up once, and while they are disabled no event objects
+ * are created and the checks for crashes and bursts are not made at
+ * all. The recording can be summarised with FlightSummary.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class FlightEvents
+{
+    // The category the events are shown under.
+    private static final String CATEGORY = "Savanna";
+    // The fraction of its peak a species must lose to have crashed.
+    private static final double CRASH_FRACTION = 0.5;
+    // The smallest peak a species can crash from, other than to extinction.
+    private static final int CRASH_MIN_PEAK = 20;
+    // How many times the mean a step's predations must be to be a burst.
+    private static final double BURST_FACTOR = 2.0;
+    // The fewest predations in a step that can be a burst.
+    private static final long BURST_MIN = 20;
+    // The weight of each step in the mean number of predations.
+    private static final double BURST_SMOOTHING = 0.1;
+    // The types of the events, which say whether they are enabled.
+    private static final EventType STEP_TYPE = EventType.getEventType(Step.class);
+    private static final EventType PHASE_TYPE = EventType.getEventType(Phase.class);
+    private static final EventType WEATHER_TYPE = EventType.getEventType(WeatherChange.class);
+    private static final EventType CRASH_TYPE = EventType.getEventType(PopulationCrash.class);
+    private static final EventType BURST_TYPE = EventType.getEventType(PredationBurst.class);
+
+    // The highest population of each species since it last crashed, and
+    // the step it was reached in, indexed by code; null when not watched.
+    private int[] peaks;
+    private int[] peakSteps;
+    // The mean number of predations per step, or -1 before the first step.
+    private double meanPredations;
+
+    /**
+     * Create the state of the checks for crashes and bursts.
+     */
+    public FlightEvents()
+    {
+        meanPredations = -1;
+    }
+
+    /**
+     * Start a recording with the default settings of the flight recorder
+     * and every event of the simulation enabled. The recording is
+     * written to the file when it is stopped or closed.
+     * @param file The file to write.
+     * @return The recording.
+     * @throws IOException If the default settings cannot be read.
+     * @throws ParseException If the default settings cannot be parsed.
+     */
+    public static Recording record(Path file) throws IOException, ParseException
+    {
+        Recording recording = new Recording(Configuration.getConfiguration("default"));
+        recording.enable(Step.class);
+        recording.enable(Phase.class);
+        recording.enable(WeatherChange.class);
+        recording.enable(PopulationCrash.class);
+        recording.enable(PredationBurst.class);
+        recording.setDestination(file);
+        recording.start();
+        return recording;
+    }
+
+    /**
+     * @return true if a recording has Step events enabled.
+     */
+    public static boolean recordsSteps()
+    {
+        return STEP_TYPE.isEnabled();
+    }
+
+    /**
+     * @return true if a recording has Phase events enabled.
+     */
+    public static boolean recordsPhases()
+    {
+        return PHASE_TYPE.isEnabled();
+    }
+
+    /**
+     * @return true if a recording has WeatherChange events enabled.
+     */
+    public static boolean recordsWeather()
+    {
+        return WEATHER_TYPE.isEnabled();
+    }
+
+    /**
+     * @return true if a recording is looking for bursts of predation.
+     */
+    public static boolean watchesPredation()
+    {
+        return BURST_TYPE.isEnabled();
+    }
+
+    /**
+     * Write a PopulationCrash event for each species that has lost
+     * CRASH_FRACTION of its peak, or died out, and start its peak again.
+     * Does nothing, and does not count the population, unless the
+     * event is enabled.
+     * @param step The step just run.
+     * @param population Gives the population of a species from its code.
+     */
+    public void checkPopulation(int step, IntUnaryOperator population)
+    {
+        if(!CRASH_TYPE.isEnabled()) {
+            peaks = null;
+            return;
+        }
+        if(peaks == null) {
+            peaks = new int[Species.COUNT + 1];
+            peakSteps = new int[Species.COUNT + 1];
+            for(int code = 1; code <= Species.COUNT; code++) {
+                peaks[code] = population.applyAsInt(code);
+            }
+            Arrays.fill(peakSteps, step);
+            return;
+        }
+        for(int code = 1; code <= Species.COUNT; code++) {
+            int count = population.applyAsInt(code);
+            if(count > peaks[code]) {
+                peaks[code] = count;
+                peakSteps[code] = step;
+            }
+            else if((count == 0 && peaks[code] > 0)
+                    || (peaks[code] >= CRASH_MIN_PEAK && count <= peaks[code] * (1 - CRASH_FRACTION))) {
+                PopulationCrash event = new PopulationCrash();
+                event.step = step;
+                event.species = Species.fromCode(code).getAnimalClass().getName();
+                event.peak = peaks[code];
+                event.peakStep = peakSteps[code];
+                event.population = count;
+                event.commit();
+                peaks[code] = count;
+                peakSteps[code] = step;
+            }
+        }
+    }
+
+    /**
+     * Write a PredationBurst event if more animals were eaten in a step
+     * than BURST_FACTOR times the mean of the steps before.
+     * @param step The step just run.
+     * @param snapshot The metrics of the step.
+     */
+    public void checkPredation(int step, MetricsSnapshot snapshot)
+    {
+        long predations = 0;
+        long most = 0;
+        Species predator = null;
+        Species prey = null;
+        for(Species eater : Species.values()) {
+            for(Species eaten : Species.values()) {
+                long count = snapshot.getPredations(eater, eaten);
+                predations += count;
+                if(count > most) {
+                    most = count;
+                    predator = eater;
+                    prey = eaten;
+                }
+            }
+        }
+        if(meanPredations >= 0 && predations >= BURST_MIN
+           && predations > BURST_FACTOR * meanPredations) {
+            PredationBurst event = new PredationBurst();
+            event.step = step;
+            event.predations = predations;
+            event.mean = meanPredations;
+            event.predator = predator.getAnimalClass().getName();
+            event.prey = prey.getAnimalClass().getName();
+            event.commit();
+        }
+        meanPredations = meanPredations < 0 ? predations
+            : meanPredations + BURST_SMOOTHING * (predations - meanPredations);
+    }
+
+    /**
+     * Forget the populations and predations seen, e.g. when the
+     * simulation is reset.
+     */
+    public void reset()
+    {
+        peaks = null;
+        meanPredations = -1;
+    }
+
+    /**
+     * A step of the simulation, from when it starts to when the
+     * observers have been shown it.
+     */
+    @Name("savanna.Step")
+    @Label("Simulation Step")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Step extends Event
+    {
+        @Label("Step")
+        public int step;
+        @Label("Animals")
+        @Description("The number of animals at the end of the step, unless they are kept by the entity kernel")
+        public int animals;
+    }
+
+    /**
+     * A phase of a step: the animals acting, the newborn being added to
+     * the list of animals, the plant layer growing, the event log being
+     * written or the observers being shown the field.
+     */
+    @Name("savanna.Phase")
+    @Label("Simulation Phase")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Phase extends Event
+    {
+        @Label("Step")
+        public int step;
+        @Label("Phase")
+        public String phase;
+    }
+
+    /**
+     * The weather changing at the start of a day.
+     */
+    @Name("savanna.WeatherChange")
+    @Label("Weather Change")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class WeatherChange extends Event
+    {
+        @Label("Day")
+        public int day;
+        @Label("From")
+        public String from;
+        @Label("To")
+        public String to;
+    }
+
+    /**
+     * The population of a species falling to CRASH_FRACTION of its
+     * peak or below, or to nothing.
+     */
+    @Name("savanna.PopulationCrash")
+    @Label("Population Crash")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class PopulationCrash extends Event
+    {
+        @Label("Step")
+        public int step;
+        @Label("Species")
+        public String species;
+        @Label("Peak")
+        public int peak;
+        @Label("Peak Step")
+        public int peakStep;
+        @Label("Population")
+        public int population;
+    }
+
+    /**
+     * A step in which far more animals were eaten than usual.
+     */
+    @Name("savanna.PredationBurst")
+    @Label("Predation Burst")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class PredationBurst extends Event
+    {
+        @Label("Step")
+        public int step;
+        @Label("Predations")
+        public long predations;
+        @Label("Mean Predations")
+        @Description("The mean number of predations per step before this one")
+        public double mean;
+        @Label("Predator")
+        @Description("The species that ate the most of one kind of prey")
+        public String predator;
+        @Label("Prey")
+        public String prey;
+    }
+}
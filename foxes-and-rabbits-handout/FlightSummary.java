@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Summarises a flight recording of a simulation (see FlightEvents):
+ * the time taken by the steps and by each phase of a step, how much of
+ * each phase the garbage collector spent in collections and how much
+ * was allocated during it, and the weather changes, population crashes
+ * and predation bursts recorded.
+ *
+ * Allocation is estimated from the allocation samples of the recording,
+ * so it is only shown if they were recorded, and is put down to the
+ * phase running when it was sampled, on whichever thread.
+ *
+ * The phases are expected to come from one simulation at a time.
+ *
+ * Run from the command line with a recording:
+ *     java FlightSummary run.jfr
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class FlightSummary
+{
+    // The names of the events read.
+    private static final String STEP = "savanna.Step";
+    private static final String PHASE = "savanna.Phase";
+    private static final String WEATHER = "savanna.WeatherChange";
+    private static final String CRASH = "savanna.PopulationCrash";
+    private static final String BURST = "savanna.PredationBurst";
+    private static final String GC = "jdk.GarbageCollection";
+    private static final String ALLOCATION = "jdk.ObjectAllocationSample";
+
+    // The durations of the steps, in nanoseconds.
+    private List<Long> steps;
+    // The start, end and name of every phase, in the order they started.
+    private List<long[]> phaseTimes;
+    private List<String> phaseNames;
+    // The start and end of every collection.
+    private List<long[]> collections;
+    // The time and estimated size of every allocation sample.
+    private List<long[]> allocations;
+    // The weather changes, crashes and bursts, as lines to print.
+    private List<String> weather, crashes, bursts;
+
+    /**
+     * Read the events of a recording.
+     * @param recording The recording.
+     * @throws IOException If the recording cannot be read.
+     */
+    public FlightSummary(RecordingFile recording) throws IOException
+    {
+        steps = new ArrayList<>();
+        phaseTimes = new ArrayList<>();
+        phaseNames = new ArrayList<>();
+        collections = new ArrayList<>();
+        allocations = new ArrayList<>();
+        weather = new ArrayList<>();
+        crashes = new ArrayList<>();
+        bursts = new ArrayList<>();
+        List<RecordedEvent> phases = new ArrayList<>();
+        // The weather changes, crashes and bursts, to be put in order.
+        List<RecordedEvent> notable = new ArrayList<>();
+        while(recording.hasMoreEvents()) {
+            RecordedEvent event = recording.readEvent();
+            switch(event.getEventType().getName()) {
+                case STEP:
+                    steps.add(event.getDuration().toNanos());
+                    break;
+                case PHASE:
+                    phases.add(event);
+                    break;
+                case GC:
+                    collections.add(new long[] {nanos(event.getStartTime()), nanos(event.getEndTime())});
+                    break;
+                case ALLOCATION:
+                    allocations.add(new long[] {nanos(event.getStartTime()), event.getLong("weight")});
+                    break;
+                case WEATHER:
+                case CRASH:
+                case BURST:
+                    notable.add(event);
+                    break;
+                default:
+                    break;
+            }
+        }
+        // The recording is written in chunks by thread, not in order.
+        phases.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+        for(RecordedEvent phase : phases) {
+            phaseTimes.add(new long[] {nanos(phase.getStartTime()), nanos(phase.getEndTime())});
+            phaseNames.add(phase.getString("phase"));
+        }
+        notable.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+        for(RecordedEvent event : notable) {
+            String name = event.getEventType().getName();
+            if(name.equals(WEATHER)) {
+                weather.add("day " + event.getInt("day") + ": " + event.getString("from")
+                            + " -> " + event.getString("to"));
+            }
+            else if(name.equals(CRASH)) {
+                crashes.add("step " + event.getInt("step") + ": " + event.getString("species")
+                            + " " + event.getInt("peak") + " (step " + event.getInt("peakStep")
+                            + ") -> " + event.getInt("population"));
+            }
+            else {
+                bursts.add("step " + event.getInt("step") + ": " + event.getLong("predations")
+                           + " eaten, mean " + String.format("%.1f", event.getDouble("mean"))
+                           + ", mostly " + event.getString("prey") + " by " + event.getString("predator"));
+            }
+        }
+    }
+
+    /**
+     * Print the summary.
+     */
+    public void print()
+    {
+        if(steps.isEmpty()) {
+            System.out.println("No steps were recorded. Were the events of FlightEvents enabled?");
+        }
+        else {
+            long[] durations = new long[steps.size()];
+            long total = 0;
+            for(int i = 0; i < durations.length; i++) {
+                durations[i] = steps.get(i);
+                total += durations[i];
+            }
+            Arrays.sort(durations);
+            System.out.printf("%d steps, %.1f ms in all: mean %.3f ms, median %.3f ms, 99th percentile %.3f ms, max %.3f ms%n",
+                              durations.length, millis(total), millis(total) / durations.length,
+                              millis(durations[durations.length / 2]),
+                              millis(durations[(int) (durations.length * 0.99)]),
+                              millis(durations[durations.length - 1]));
+        }
+
+        // The count, total, longest, collection time and allocation of each phase.
+        Map<String, long[]> byPhase = new LinkedHashMap<>();
+        for(int i = 0; i < phaseTimes.size(); i++) {
+            long[] times = phaseTimes.get(i);
+            long[] row = byPhase.computeIfAbsent(phaseNames.get(i), name -> new long[5]);
+            row[0]++;
+            row[1] += times[1] - times[0];
+            row[2] = Math.max(row[2], times[1] - times[0]);
+        }
+        for(long[] collection : collections) {
+            for(int i = firstEndingAfter(collection[0]); i < phaseTimes.size(); i++) {
+                long[] times = phaseTimes.get(i);
+                if(times[0] >= collection[1]) {
+                    break;
+                }
+                long overlap = Math.min(times[1], collection[1]) - Math.max(times[0], collection[0]);
+                if(overlap > 0) {
+                    byPhase.get(phaseNames.get(i))[3] += overlap;
+                }
+            }
+        }
+        for(long[] allocation : allocations) {
+            int i = firstEndingAfter(allocation[0]);
+            if(i < phaseTimes.size() && phaseTimes.get(i)[0] <= allocation[0]) {
+                byPhase.get(phaseNames.get(i))[4] += allocation[1];
+            }
+        }
+        if(!byPhase.isEmpty()) {
+            System.out.printf("%n%-12s %8s %12s %10s %10s %12s %14s%n",
+                              "phase", "count", "total ms", "mean ms", "max ms", "in GC ms", "allocated MB");
+            for(Map.Entry<String, long[]> entry : byPhase.entrySet()) {
+                long[] row = entry.getValue();
+                System.out.printf("%-12s %8d %12.1f %10.3f %10.3f %12.1f %14s%n",
+                                  entry.getKey(), row[0], millis(row[1]), millis(row[1]) / row[0],
+                                  millis(row[2]), millis(row[3]),
+                                  allocations.isEmpty() ? "-" : String.format("%.1f", row[4] / 1e6));
+            }
+        }
+
+        printAll("weather changes", weather);
+        printAll("population crashes", crashes);
+        printAll("predation bursts", bursts);
+    }
+
+    /**
+     * Summarise a recording.
+     * @param args The recording file.
+     * @throws IOException If the recording cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 1) {
+            System.out.println("Usage: java FlightSummary <recording file>");
+            return;
+        }
+        try(RecordingFile recording = new RecordingFile(Paths.get(args[0]))) {
+            new FlightSummary(recording).print();
+        }
+    }
+
+    /**
+     * Print a count of events and the events themselves.
+     * @param title What the events are.
+     * @param lines The events.
+     */
+    private static void printAll(String title, List<String> lines)
+    {
+        System.out.printf("%n%d %s%n", lines.size(), title);
+        for(String line : lines) {
+            System.out.println("  " + line);
+        }
+    }
+
+    /**
+     * Find the first phase that ends after a time. Phases on the thread
+     * running the simulation never overlap, so they end in the order
+     * they start.
+     * @param time The time.
+     * @return The index of the phase, or the number of phases if none.
+     */
+    private int firstEndingAfter(long time)
+    {
+        int low = 0;
+        int high = phaseTimes.size();
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(phaseTimes.get(middle)[1] <= time) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return An instant in nanoseconds since the epoch.
+     */
+    private static long nanos(Instant instant)
+    {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    /**
+     * @return A time in nanoseconds, in milliseconds.
+     */
+    private static double millis(long nanos)
+    {
+        return nanos / 1e6;
+    }
+}
@@ -1,6 +1,5 @@
 import java.util.List;
 import java.util.Random;
-import java.util.Iterator;
 
 /**
  * A simple model of a Giraffe.
@@ -13,22 +12,21 @@ public class Giraffe extends Animal
 {
     //class variables
 
-    private static final int BREEDING_AGE = 15;
-    private static final int MAX_AGE = 50;
-    private static final double BREEDING_PROBABILITY = 0.96;
-    private static final int MAX_LITTER_SIZE = 2;
+    static final int BREEDING_AGE = 15;
+    static final int MAX_AGE = 50;
+    static final double BREEDING_PROBABILITY = 0.96;
+    static final int MAX_LITTER_SIZE = 2;
 
-    private static final int PLANT_FOOD_VALUE = 1;
+    static final int PLANT_FOOD_VALUE = 1;
+    // The species a giraffe eats.
+    static final int DIET = Species.PLANT.bit();
+    // The hours of the day between which a giraffe sleeps.
+    static final int SLEEP_START = 1;
+    static final int SLEEP_END = 4;
 
-    private static final Random rand = Randomizer.getRandom();
     // A shared male birth rate for animals of this species
     //private static final float maleBirthRate;
 
-    //instance fields
-
-    private int age;
-    private int foodLevel;
-
     /**
      * Create a new Giraffe. A giraffe may be created with age
      * zero (a new born) or with a random age.
@@ -45,6 +43,7 @@ public class Giraffe extends Animal
         super(field, location, clock);
         age = 0;
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(PLANT_FOOD_VALUE);
         }
@@ -55,6 +54,15 @@ public class Giraffe extends Animal
     }
     
         
+    /**
+     * Return the species of a giraffe.
+     * @return Species.GIRAFFE
+     */
+    public Species getSpecies()
+    {
+        return Species.GIRAFFE;
+    }
+
     /**
      * This is what the giraffe does most of the time - it runs 
      * around. Sometimes it will breed or die of old age.
@@ -69,6 +77,8 @@ public class Giraffe extends Animal
             if (shouldSleep()) {
                 // maintain hunger level
                 decrementHunger();
+                // stay where it is while asleep
+                newLocation = getLocation();
             }
             else if (isAffectedByWeather()) {
                 // vulture can't hunt prey in fog
@@ -91,7 +101,7 @@ public class Giraffe extends Animal
             }
             else {
                 // Overcrowding.
-                setDead();
+                setDead(Cause.OVERCROWDING);
             }
         }
     }
@@ -104,19 +114,14 @@ public class Giraffe extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Plant) {
-                Plant plant = (Plant) animal;
-                if(plant.isAlive()) { 
-                    plant.setDead();
-                    foodLevel = PLANT_FOOD_VALUE;
-                    return where;
-                }
-            }
+        Location here = getLocation();
+        // Only live plants are in the field, so any plant found can be eaten.
+        int plants = field.adjacentSpeciesMask(here, DIET);
+        if(plants != 0) {
+            int direction = field.randomDirection(plants);
+            Location there = field.adjacentLocation(here, direction);
+            eatPlant(there, PLANT_FOOD_VALUE);
+            return there;
         }
         return null;
     }
@@ -129,7 +134,7 @@ public class Giraffe extends Animal
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(Cause.AGE);
         }
     }
     
@@ -140,14 +145,20 @@ public class Giraffe extends Animal
      */
     private void giveBirth(List<Animal> newGiraffes)
     {
-        // Get a list of adjacent free locations.
+        // Use the free adjacent locations, chosen in a random order.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Giraffe young = new Giraffe(false, field, loc, getClock());
-            newGiraffes.add(young);
+        if(births > 0) {
+            int free = field.freeAdjacentMask(here);
+            while(births > 0 && free != 0) {
+                int direction = field.randomDirection(free);
+                free &= ~(1 << direction);
+                Location loc = field.adjacentLocation(here, direction);
+                Giraffe young = new Giraffe(false, field, loc, getClock());
+                newGiraffes.add(young);
+                births--;
+            }
         }
     }
         
@@ -158,6 +169,7 @@ public class Giraffe extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
             births = rand.nextInt(MAX_LITTER_SIZE) + 1;
@@ -171,20 +183,7 @@ public class Giraffe extends Animal
      */
     private boolean isCompatibleAnimal()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Giraffe){
-                Giraffe giraffe = (Giraffe) animal;
-                if(giraffe.getGender() == Gender.Male){
-                    return true;
-                }
-                }
-            }
-        return false;
+        return getField().adjacentMaleMask(getLocation(), Species.GIRAFFE.bit()) != 0;
     }
 
     /**
@@ -209,7 +208,7 @@ public class Giraffe extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(Cause.STARVATION);
         }
     }
 
@@ -224,10 +223,17 @@ public class Giraffe extends Animal
      */
     public boolean isAffectedByWeather() 
     {
-        Environment.Weather weather = getClock().getCurrentWeather();
+        return isAffectedBy(getClock().getCurrentWeather());
+    }
 
-        boolean isAffectedByWeather = (weather == Environment.Weather.RAIN);
-        return isAffectedByWeather;
+    /**
+     * Check whether giraffes are affected by the given weather.
+     * @param weather The weather.
+     * @return true if a giraffe cannot hunt or graze in that weather.
+     */
+    static boolean isAffectedBy(Environment.Weather weather)
+    {
+        return (weather == Environment.Weather.RAIN);
     }
     
     /**
@@ -240,6 +246,6 @@ public class Giraffe extends Animal
         int hourOfDay = getClock().getHourOfDay();
         
         // Lions should sleep between 18:00 and 23:00
-        return hourOfDay >= 1 && hourOfDay <= 4;
+        return hourOfDay >= SLEEP_START && hourOfDay <= SLEEP_END;
     }
 }
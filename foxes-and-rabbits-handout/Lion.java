@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -14,29 +13,26 @@ public class Lion extends Animal
     //class variables
     
     // The age at which a Lion can start to breed.
-    private static final int BREEDING_AGE = 6;
+    static final int BREEDING_AGE = 6;
     // The age to which a Lion can live.
-    private static final int MAX_AGE = 45;
+    static final int MAX_AGE = 45;
     // The likelihood of a Lion breeding.
-    private static final double BREEDING_PROBABILITY = 0.4;
+    static final double BREEDING_PROBABILITY = 0.4;
     // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 6;
+    static final int MAX_LITTER_SIZE = 6;
     
     // The food values of each prey. In effect, these is the
     // number of steps a lion can go before it has to eat again.
-    private static final int GIRAFFE_FOOD_VALUE = 20;
-    private static final int RHINO_FOOD_VALUE = 23;
+    static final int GIRAFFE_FOOD_VALUE = 20;
+    static final int RHINO_FOOD_VALUE = 23;
+    // The species a lion eats.
+    static final int DIET = Species.RHINO.bit() | Species.GIRAFFE.bit();
+    // The hours of the day between which a lion sleeps.
+    static final int SLEEP_START = 3;
+    static final int SLEEP_END = 6;
     
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
     // A shared male birth rate for animals of this species
 
-    // Individual characteristics (instance fields).
-    // The Lion's age.
-    private int age;
-    // The Lion's food level, which is increased by eating prey.
-    private int foodLevel;
-
     
 
     /**
@@ -54,6 +50,7 @@ public class Lion extends Animal
     {
         super(field, location, clock);
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(RHINO_FOOD_VALUE);
         }
@@ -63,6 +60,15 @@ public class Lion extends Animal
         }
     }
     
+    /**
+     * Return the species of a lion.
+     * @return Species.LION
+     */
+    public Species getSpecies()
+    {
+        return Species.LION;
+    }
+
     /**
      * This is what the lion does most of the time: it hunts for
      * prey. In the process, it might: breed, die of hunger/old age or 
@@ -80,6 +86,7 @@ public class Lion extends Animal
             if (shouldSleep()) {
                 // don't move and maintain hunger level
                 decrementHunger();
+                newLocation = getLocation();
             } 
             else if (isAffectedByWeather()) {
                 // unable to hunt prey, move to random location
@@ -101,7 +108,7 @@ public class Lion extends Animal
             }
             else {
                 // Overcrowding.
-                setDead();
+                setDead(Cause.OVERCROWDING);
             }
             
         }
@@ -114,7 +121,7 @@ public class Lion extends Animal
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(Cause.AGE);
         }
     }
     
@@ -125,7 +132,7 @@ public class Lion extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(Cause.STARVATION);
         }
     }
     
@@ -146,28 +153,21 @@ public class Lion extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
+        Location here = getLocation();
+        // Only live animals are in the field, so any prey found can be eaten.
+        int prey = field.adjacentSpeciesMask(here, DIET);
+        if(prey != 0) {
+            int direction = field.randomDirection(prey);
+            Animal animal = (Animal) field.getAdjacentObject(here, direction);
+            int foodValue;
             if(animal instanceof Rhino) {
-                Rhino rhino = (Rhino) animal;
-                if(rhino.isAlive()) { 
-                    rhino.setDead();
-                    foodLevel = RHINO_FOOD_VALUE;
-                    return where;
-                }
+                foodValue = RHINO_FOOD_VALUE;
             }
-            
-            if (animal instanceof Giraffe) {
-                Giraffe giraffe = (Giraffe) animal;
-                if(giraffe.isAlive()) { 
-                    giraffe.setDead();
-                    foodLevel = GIRAFFE_FOOD_VALUE;
-                    return where;
-                }    
+            else {
+                foodValue = GIRAFFE_FOOD_VALUE;
             }
+            eat(animal, foodValue);
+            return field.adjacentLocation(here, direction);
         }
         return null;
     }
@@ -180,14 +180,20 @@ public class Lion extends Animal
     private void giveBirth(List<Animal> newLions)
     {
         // New lion are born into adjacent locations.
-        // Get a list of adjacent free locations.
+        // Use the free adjacent locations, chosen in a random order.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Lion young = new Lion(false, field, loc, getClock());
-            newLions.add(young);
+        if(births > 0) {
+            int free = field.freeAdjacentMask(here);
+            while(births > 0 && free != 0) {
+                int direction = field.randomDirection(free);
+                free &= ~(1 << direction);
+                Location loc = field.adjacentLocation(here, direction);
+                Lion young = new Lion(false, field, loc, getClock());
+                newLions.add(young);
+                births--;
+            }
         }
     }
         
@@ -198,6 +204,7 @@ public class Lion extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
             births = rand.nextInt(MAX_LITTER_SIZE) + 1;
@@ -225,20 +232,7 @@ public class Lion extends Animal
      */
     private boolean isCompatibleAnimal()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Lion){
-                Lion lion = (Lion) animal;
-                if(lion.getGender() == Gender.Male){
-                    return true;
-                }
-                }
-            }
-        return false;
+        return getField().adjacentMaleMask(getLocation(), Species.LION.bit()) != 0;
     }
     
     /**
@@ -249,10 +243,17 @@ public class Lion extends Animal
      */
     public boolean isAffectedByWeather() 
     {
-        Environment.Weather weather = getClock().getCurrentWeather();
+        return isAffectedBy(getClock().getCurrentWeather());
+    }
 
-        boolean isAffectedByWeather = (weather == Environment.Weather.FOG || weather == Environment.Weather.RAIN);
-        return isAffectedByWeather;
+    /**
+     * Check whether lions are affected by the given weather.
+     * @param weather The weather.
+     * @return true if a lion cannot hunt or graze in that weather.
+     */
+    static boolean isAffectedBy(Environment.Weather weather)
+    {
+        return (weather == Environment.Weather.FOG || weather == Environment.Weather.RAIN);
     }
     
     /**
@@ -265,6 +266,6 @@ public class Lion extends Animal
         int hourOfDay = getClock().getHourOfDay();
         
         // Lions should sleep between 18:00 and 23:00
-        return hourOfDay >= 3 && hourOfDay <= 6;
+        return hourOfDay >= SLEEP_START && hourOfDay <= SLEEP_END;
     }
 }
\ No newline at end of file
@@ -0,0 +1,455 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Field storage that keeps the state of every cell in a memory-mapped
+ * file, so that fields larger than the heap can be simulated with the
+ * operating system deciding which parts are resident. The file can be
+ * kept when a run is stopped and opened again later to resume it.
+ *
+ * Each cell has a fixed size record: its species code, gender, age and
+ * food level. A small header holds the dimensions of the field and the
+ * step, day, hour, weather and seed of the run, and the steps each
+ * species has slept through, which its animals have not yet caught up
+ * on (see SleepScheduler). The animals themselves are held in
+ * chunked storage, which only uses memory where there are animals.
+ * Ages and food levels change without the animal moving, so they are
+ * only written to the file by flush.
+ *
+ * The animals act in the order of the list of the simulation, which
+ * the cells alone do not keep, so flush also writes the place of each
+ * animal in that order, in a section of an int per cell after the
+ * records.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class MappedFieldStorage implements FieldStorage
+{
+    // Identifies a field file ("SAVA").
+    private static final int MAGIC = 0x53415641;
+    // The version of the file layout.
+    private static final int VERSION = 4;
+    // The size of the header, and the offsets of its entries.
+    private static final int HEADER_SIZE = 128;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int DEPTH_OFFSET = 8;
+    private static final int WIDTH_OFFSET = 12;
+    private static final int STEP_OFFSET = 16;
+    private static final int HOUR_OFFSET = 20;
+    private static final int WEATHER_OFFSET = 24;
+    private static final int DAY_OFFSET = 28;
+    private static final int SEED_OFFSET = 32;
+    private static final int SLEPT_OFFSET = 40;
+    private static final int ANIMALS_OFFSET = 64;
+    // The size of a cell record, and the offsets of its entries.
+    private static final int RECORD_SIZE = 8;
+    private static final int SPECIES_OFFSET = 0;
+    private static final int GENDER_OFFSET = 1;
+    private static final int AGE_OFFSET = 2;
+    private static final int FOOD_OFFSET = 4;
+    // The size of the place of a cell's animal in the acting order.
+    private static final int ORDER_SIZE = 4;
+    // The file is mapped in regions of 2^REGION_SHIFT bytes, as one
+    // mapping cannot be larger than 2GB.
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+    // The depth and width of the grid.
+    private int depth, width;
+    // The animals, which are only on the heap while they are alive.
+    private ChunkedFieldStorage cells;
+    // The open file.
+    private FileChannel channel;
+    // The mapped header.
+    private MappedByteBuffer header;
+    // The mapped cell records, followed by the places in the acting order.
+    private MappedByteBuffer[] regions;
+
+    /**
+     * Create a new field file, replacing any existing file.
+     * @param file The file to create.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     * @return Storage backed by the new file.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public static MappedFieldStorage create(Path file, int depth, int width) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                               StandardOpenOption.TRUNCATE_EXISTING,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedFieldStorage storage = new MappedFieldStorage(channel, depth, width);
+        storage.header.putInt(MAGIC_OFFSET, MAGIC);
+        storage.header.putInt(VERSION_OFFSET, VERSION);
+        storage.header.putInt(DEPTH_OFFSET, depth);
+        storage.header.putInt(WIDTH_OFFSET, width);
+        return storage;
+    }
+
+    /**
+     * Open a field file written by an earlier run. The cell records
+     * are read from the file; the field holds no animals until they
+     * are recreated from the records (see Simulator.resume).
+     * @param file The file to open.
+     * @return Storage backed by the file.
+     * @throws IOException If the file cannot be read or is not a field file.
+     */
+    public static MappedFieldStorage open(Path file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if(header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            channel.close();
+            throw new IOException("Not a field file: " + file);
+        }
+        return new MappedFieldStorage(channel, header.getInt(DEPTH_OFFSET),
+                                      header.getInt(WIDTH_OFFSET));
+    }
+
+    /**
+     * Map an open file as storage of the given dimensions.
+     * @param channel The open file.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private MappedFieldStorage(FileChannel channel, int depth, int width) throws IOException
+    {
+        this.channel = channel;
+        this.depth = depth;
+        this.width = width;
+        cells = new ChunkedFieldStorage(depth, width);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        long size = (long) depth * width * (RECORD_SIZE + ORDER_SIZE);
+        int count = (int) ((size + REGION_MASK) >>> REGION_SHIFT);
+        regions = new MappedByteBuffer[count];
+        for(int i = 0; i < count; i++) {
+            long start = (long) i << REGION_SHIFT;
+            long length = Math.min(size - start, 1L << REGION_SHIFT);
+            regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + start, length);
+        }
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * A field file holds one field, so it cannot provide a second one.
+     * @throws UnsupportedOperationException Always.
+     */
+    public FieldStorage createEmpty()
+    {
+        throw new UnsupportedOperationException("A field kept in a file cannot be double buffered.");
+    }
+
+    public Object get(int row, int col)
+    {
+        return cells.get(row, col);
+    }
+
+    public int getSpeciesCode(int row, int col)
+    {
+        return cells.getSpeciesCode(row, col);
+    }
+
+    public void set(int row, int col, Object occupant)
+    {
+        cells.set(row, col, occupant);
+        writeRecord(row, col, occupant);
+    }
+
+    public void clear(int row, int col)
+    {
+        cells.clear(row, col);
+        writeRecord(row, col, null);
+    }
+
+    public void clearAll()
+    {
+        // Every occupied cell has a record, and every record of an empty
+        // cell is already zero, so only the occupied cells need clearing.
+        for(int row = cells.nextOccupiedRow(0); row < depth; row = cells.nextOccupiedRow(row + 1)) {
+            for(int col = cells.nextOccupiedColumn(row, 0); col < width; col = cells.nextOccupiedColumn(row, col + 1)) {
+                writeRecord(row, col, null);
+            }
+        }
+        cells.clearAll();
+    }
+
+    public int nextOccupiedRow(int row)
+    {
+        return cells.nextOccupiedRow(row);
+    }
+
+    public int nextOccupiedColumn(int row, int col)
+    {
+        return cells.nextOccupiedColumn(row, col);
+    }
+
+    public int occupiedNeighbours(int row, int col)
+    {
+        return cells.occupiedNeighbours(row, col);
+    }
+
+    public int speciesNeighbours(int row, int col, int speciesSet)
+    {
+        return cells.speciesNeighbours(row, col, speciesSet);
+    }
+
+    public int maleNeighbours(int row, int col, int speciesSet)
+    {
+        return cells.maleNeighbours(row, col, speciesSet);
+    }
+
+    /**
+     * Write the current age and food level of every animal, the order
+     * the animals act in, and the state of the run, to the file and
+     * force it to disk. After this the file holds everything needed to
+     * resume the run.
+     * @param step The current step of the run.
+     * @param clock The shared environment of the run.
+     * @param scheduler The sleep of the species.
+     * @param animals The animals of the run, in the order they act.
+     */
+    public void flush(int step, Environment clock, SleepScheduler scheduler, List<Animal> animals)
+    {
+        for(int row = cells.nextOccupiedRow(0); row < depth; row = cells.nextOccupiedRow(row + 1)) {
+            for(int col = cells.nextOccupiedColumn(row, 0); col < width; col = cells.nextOccupiedColumn(row, col + 1)) {
+                writeRecord(row, col, cells.get(row, col));
+            }
+        }
+        // The list can still hold animals that died since they acted,
+        // which are no longer in the field and are left out.
+        int placed = 0;
+        for(Animal animal : animals) {
+            Location location = animal.getLocation();
+            if(animal.isAlive() && cells.get(location.getRow(), location.getCol()) == animal) {
+                placed++;
+                long offset = orderOffset(location.getRow(), location.getCol());
+                regionOf(offset).putInt(positionOf(offset), placed);
+            }
+        }
+        header.putInt(ANIMALS_OFFSET, placed);
+        header.putInt(STEP_OFFSET, step);
+        header.putInt(HOUR_OFFSET, clock.getHourOfDay());
+        header.putInt(WEATHER_OFFSET, clock.getCurrentWeather().ordinal());
+        header.putInt(DAY_OFFSET, clock.getDay());
+        header.putLong(SEED_OFFSET, clock.getRandomizer().getSeed());
+        for(int code = 1; code <= Species.COUNT; code++) {
+            header.putInt(SLEPT_OFFSET + (code - 1) * 4, scheduler.getSlept(code));
+        }
+        for(MappedByteBuffer region : regions) {
+            region.force();
+        }
+        header.force();
+    }
+
+    /**
+     * Flush the file and close it. The storage must not be used afterwards.
+     * @param step The current step of the run.
+     * @param clock The shared environment of the run.
+     * @param scheduler The sleep of the species.
+     * @param animals The animals of the run, in the order they act.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close(int step, Environment clock, SleepScheduler scheduler, List<Animal> animals)
+        throws IOException
+    {
+        flush(step, clock, scheduler, animals);
+        channel.close();
+    }
+
+    /**
+     * @return The step saved in the file.
+     */
+    public int getSavedStep()
+    {
+        return header.getInt(STEP_OFFSET);
+    }
+
+    /**
+     * @return The hour of the day saved in the file.
+     */
+    public int getSavedHourOfDay()
+    {
+        return header.getInt(HOUR_OFFSET);
+    }
+
+    /**
+     * @return The weather saved in the file.
+     */
+    public Environment.Weather getSavedWeather()
+    {
+        return Environment.Weather.values()[header.getInt(WEATHER_OFFSET)];
+    }
+
+    /**
+     * @return The day saved in the file.
+     */
+    public int getSavedDay()
+    {
+        return header.getInt(DAY_OFFSET);
+    }
+
+    /**
+     * @return The seed of the random numbers saved in the file.
+     */
+    public long getSavedSeed()
+    {
+        return header.getLong(SEED_OFFSET);
+    }
+
+    /**
+     * @return The steps each species had slept through when the file was
+     *         saved, indexed by code - 1.
+     */
+    public int[] getSavedSlept()
+    {
+        int[] slept = new int[Species.COUNT];
+        for(int index = 0; index < Species.COUNT; index++) {
+            slept[index] = header.getInt(SLEPT_OFFSET + index * 4);
+        }
+        return slept;
+    }
+
+    /**
+     * @return The number of animals whose places in the acting order
+     *         were saved in the file.
+     */
+    public int getSavedAnimals()
+    {
+        return header.getInt(ANIMALS_OFFSET);
+    }
+
+    /**
+     * Return the saved place in the acting order of the animal in a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The place, from 1 to getSavedAnimals(), or any other
+     *         value if the place of the animal was not saved.
+     */
+    public int getSavedOrder(int row, int col)
+    {
+        long offset = orderOffset(row, col);
+        return regionOf(offset).getInt(positionOf(offset));
+    }
+
+    /**
+     * Return the species code saved in the record of a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The saved species code.
+     */
+    public int getSavedSpeciesCode(int row, int col)
+    {
+        long offset = recordOffset(row, col);
+        return regionOf(offset).get(positionOf(offset) + SPECIES_OFFSET);
+    }
+
+    /**
+     * Return the gender saved in the record of a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The saved gender.
+     */
+    public Animal.Gender getSavedGender(int row, int col)
+    {
+        long offset = recordOffset(row, col);
+        int male = regionOf(offset).get(positionOf(offset) + GENDER_OFFSET);
+        return male != 0 ? Animal.Gender.Male : Animal.Gender.Female;
+    }
+
+    /**
+     * Return the age saved in the record of a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The saved age.
+     */
+    public int getSavedAge(int row, int col)
+    {
+        long offset = recordOffset(row, col);
+        return regionOf(offset).getShort(positionOf(offset) + AGE_OFFSET);
+    }
+
+    /**
+     * Return the food level saved in the record of a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The saved food level.
+     */
+    public int getSavedFoodLevel(int row, int col)
+    {
+        long offset = recordOffset(row, col);
+        return regionOf(offset).getShort(positionOf(offset) + FOOD_OFFSET);
+    }
+
+    /**
+     * Write the record of a cell for its occupant.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param occupant The occupant, or null for an empty cell.
+     */
+    private void writeRecord(int row, int col, Object occupant)
+    {
+        long offset = recordOffset(row, col);
+        MappedByteBuffer region = regionOf(offset);
+        int position = positionOf(offset);
+        if(occupant instanceof Animal) {
+            Animal animal = (Animal) occupant;
+            region.put(position + SPECIES_OFFSET, (byte) animal.getSpecies().getCode());
+            region.put(position + GENDER_OFFSET, (byte) (animal.getGender() == Animal.Gender.Male ? 1 : 0));
+            region.putShort(position + AGE_OFFSET, (short) animal.getAge());
+            region.putShort(position + FOOD_OFFSET, (short) animal.getFoodLevel());
+        }
+        else {
+            region.putLong(position, 0L);
+        }
+    }
+
+    /**
+     * @return The offset of the record of a cell from the first record.
+     */
+    private long recordOffset(int row, int col)
+    {
+        return ((long) row * width + col) * RECORD_SIZE;
+    }
+
+    /**
+     * @return The offset of the place in the acting order of a cell
+     *         from the first record.
+     */
+    private long orderOffset(int row, int col)
+    {
+        return (long) depth * width * RECORD_SIZE + ((long) row * width + col) * ORDER_SIZE;
+    }
+
+    /**
+     * @return The mapped region holding a record offset.
+     */
+    private MappedByteBuffer regionOf(long offset)
+    {
+        return regions[(int) (offset >>> REGION_SHIFT)];
+    }
+
+    /**
+     * @return The position of a record offset within its region.
+     */
+    private static int positionOf(long offset)
+    {
+        return (int) (offset & REGION_MASK);
+    }
+}
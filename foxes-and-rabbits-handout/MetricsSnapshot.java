@@ -0,0 +1,216 @@
+/**
+ * What the engine did over one or more steps of a simulation, as
+ * recorded by EngineMetrics: the time taken, the time the animals of
+ * each species spent acting, how many acted, were born and moved, how
+ * many died of each cause and how many of each species each predator
+ * ate. A snapshot never changes once made.
+ *
+ * The plants of a plant layer do not act, and are only counted when
+ * they are eaten.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class MetricsSnapshot
+{
+    // The number of entries of the counts by species, indexed by code.
+    static final int CODES = Species.COUNT + 1;
+    // The number of causes of death.
+    static final int CAUSES = Animal.Cause.values().length;
+
+    // The last step covered and the number of steps covered.
+    private int step;
+    private int steps;
+    // The time taken by the steps, in nanoseconds.
+    private long nanos;
+    // The time spent acting and the number that acted, by species code.
+    private long[] actNanos;
+    private long[] acted;
+    // The number born, by species code.
+    private long[] births;
+    // The number that died, CAUSES entries per species code.
+    private long[] deaths;
+    // The number eaten, CODES entries of prey per predator code.
+    private long[] predations;
+    // The number of moves made.
+    private long moves;
+
+    /**
+     * Make a snapshot of counts that have been added up.
+     * @param step The last step covered.
+     * @param steps The number of steps covered.
+     * @param nanos The time taken by the steps.
+     * @param actNanos The time spent acting, by species code.
+     * @param acted The number that acted, by species code.
+     * @param births The number born, by species code.
+     * @param deaths The number that died, by species code and cause.
+     * @param predations The number eaten, by predator and prey code.
+     * @param moves The number of moves made.
+     */
+    MetricsSnapshot(int step, int steps, long nanos, long[] actNanos, long[] acted,
+                    long[] births, long[] deaths, long[] predations, long moves)
+    {
+        this.step = step;
+        this.steps = steps;
+        this.nanos = nanos;
+        this.actNanos = actNanos;
+        this.acted = acted;
+        this.births = births;
+        this.deaths = deaths;
+        this.predations = predations;
+        this.moves = moves;
+    }
+
+    /**
+     * Make an empty snapshot, covering no steps.
+     */
+    MetricsSnapshot()
+    {
+        this(0, 0, 0, new long[CODES], new long[CODES], new long[CODES],
+             new long[CODES * CAUSES], new long[CODES * CODES], 0);
+    }
+
+    /**
+     * Add another snapshot to this one.
+     * @param later A snapshot of the steps after those of this one.
+     * @return A snapshot covering the steps of both.
+     */
+    MetricsSnapshot plus(MetricsSnapshot later)
+    {
+        return new MetricsSnapshot(later.step, steps + later.steps, nanos + later.nanos,
+                                   sum(actNanos, later.actNanos), sum(acted, later.acted),
+                                   sum(births, later.births), sum(deaths, later.deaths),
+                                   sum(predations, later.predations), moves + later.moves);
+    }
+
+    /**
+     * @return The last step covered.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The number of steps covered.
+     */
+    public int getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return The time taken by the steps, in nanoseconds.
+     */
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    /**
+     * @return The time the animals of a species spent acting, in
+     *         nanoseconds, as estimated by EngineMetrics.
+     */
+    public long getActNanos(Species species)
+    {
+        return actNanos[species.getCode()];
+    }
+
+    /**
+     * @return The number of times animals of a species acted.
+     */
+    public long getActed(Species species)
+    {
+        return acted[species.getCode()];
+    }
+
+    /**
+     * @return The number of times animals of any species acted.
+     */
+    public long getAgentsProcessed()
+    {
+        return total(acted);
+    }
+
+    /**
+     * @return The number of animals of a species born.
+     */
+    public long getBirths(Species species)
+    {
+        return births[species.getCode()];
+    }
+
+    /**
+     * @return The number of animals of any species born.
+     */
+    public long getBirths()
+    {
+        return total(births);
+    }
+
+    /**
+     * Return the number of animals of a species that died of a cause.
+     * @param species The species.
+     * @param cause The cause of death.
+     * @return The number that died.
+     */
+    public long getDeaths(Species species, Animal.Cause cause)
+    {
+        return deaths[species.getCode() * CAUSES + cause.ordinal()];
+    }
+
+    /**
+     * @return The number of animals of any species that died of a cause.
+     */
+    public long getDeaths(Animal.Cause cause)
+    {
+        long count = 0;
+        for(int code = 1; code < CODES; code++) {
+            count += deaths[code * CAUSES + cause.ordinal()];
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of animals of one species eaten by another.
+     * @param predator The species that ate.
+     * @param prey The species eaten.
+     * @return The number eaten.
+     */
+    public long getPredations(Species predator, Species prey)
+    {
+        return predations[predator.getCode() * CODES + prey.getCode()];
+    }
+
+    /**
+     * @return The number of moves made from one cell to another.
+     */
+    public long getMoves()
+    {
+        return moves;
+    }
+
+    /**
+     * @return The sum of two arrays of counts.
+     */
+    private static long[] sum(long[] a, long[] b)
+    {
+        long[] sum = new long[a.length];
+        for(int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return The sum of an array of counts.
+     */
+    private static long total(long[] counts)
+    {
+        long total = 0;
+        for(long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+}
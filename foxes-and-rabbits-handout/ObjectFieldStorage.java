@@ -0,0 +1,71 @@
+/**
+ * Field storage holding the occupants in a two dimensional array
+ * of object references. This is the original layout of the field;
+ * the species code of a cell is worked out from its occupant.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class ObjectFieldStorage implements FieldStorage
+{
+    // The depth and width of the grid.
+    private int depth, width;
+    // Storage for the animals.
+    private Object[][] field;
+
+    /**
+     * Create storage for a grid of the given dimensions.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public ObjectFieldStorage(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        field = new Object[depth][width];
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public FieldStorage createEmpty()
+    {
+        return new ObjectFieldStorage(depth, width);
+    }
+
+    public Object get(int row, int col)
+    {
+        return field[row][col];
+    }
+
+    public int getSpeciesCode(int row, int col)
+    {
+        return Species.codeOf(field[row][col]);
+    }
+
+    public void set(int row, int col, Object occupant)
+    {
+        field[row][col] = occupant;
+    }
+
+    public void clear(int row, int col)
+    {
+        field[row][col] = null;
+    }
+
+    public void clearAll()
+    {
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                field[row][col] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.Arrays;
+
+/**
+ * Field storage using flat, row-major arrays. The species code of
+ * every cell is kept in a byte array next to the array of occupants,
+ * so that scans which only need to know what kind of animal is in a
+ * cell (statistics, drawing the view) never touch the animals.
+ * An occupancy bitmap, with each row padded to a whole number of
+ * 64 bit words, lets the occupied neighbours of a cell be read with
+ * a few word operations. A bitmap per species and one of the males
+ * of every species answer "is there prey or a mate next to me" in
+ * the same way.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class PackedFieldStorage implements FieldStorage
+{
+    // The depth and width of the grid.
+    private int depth, width;
+    // The species code of each cell, row by row.
+    private byte[] species;
+    // The occupant of each cell, row by row.
+    private Object[] occupants;
+    // The number of words of the occupancy bitmap used by each row.
+    private int wordsPerRow;
+    // One bit per cell, set if the cell is occupied.
+    private long[] occupied;
+    // One bitmap per species, indexed by species code - 1.
+    private long[][] speciesPlanes;
+    // One bit per cell, set if the cell holds a male animal.
+    private long[] males;
+
+    /**
+     * Create storage for a grid of the given dimensions.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public PackedFieldStorage(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        species = new byte[depth * width];
+        occupants = new Object[depth * width];
+        wordsPerRow = (width + 63) >>> 6;
+        occupied = new long[depth * wordsPerRow];
+        speciesPlanes = new long[Species.COUNT][depth * wordsPerRow];
+        males = new long[depth * wordsPerRow];
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public FieldStorage createEmpty()
+    {
+        return new PackedFieldStorage(depth, width);
+    }
+
+    public Object get(int row, int col)
+    {
+        return occupants[row * width + col];
+    }
+
+    public int getSpeciesCode(int row, int col)
+    {
+        return species[row * width + col];
+    }
+
+    public void set(int row, int col, Object occupant)
+    {
+        int index = row * width + col;
+        if(occupants[index] != null) {
+            clear(row, col);
+        }
+        int code = Species.codeOf(occupant);
+        occupants[index] = occupant;
+        species[index] = (byte) code;
+        int word = row * wordsPerRow + (col >>> 6);
+        long bit = 1L << col;
+        occupied[word] |= bit;
+        if(code >= 1 && code <= Species.COUNT) {
+            speciesPlanes[code - 1][word] |= bit;
+        }
+        if(occupant instanceof Animal && ((Animal) occupant).getGender() == Animal.Gender.Male) {
+            males[word] |= bit;
+        }
+    }
+
+    public void clear(int row, int col)
+    {
+        int index = row * width + col;
+        int code = species[index];
+        occupants[index] = null;
+        species[index] = Species.EMPTY_CODE;
+        int word = row * wordsPerRow + (col >>> 6);
+        long bit = ~(1L << col);
+        occupied[word] &= bit;
+        if(code >= 1 && code <= Species.COUNT) {
+            speciesPlanes[code - 1][word] &= bit;
+        }
+        males[word] &= bit;
+    }
+
+    public void clearAll()
+    {
+        Arrays.fill(occupants, null);
+        Arrays.fill(species, (byte) Species.EMPTY_CODE);
+        Arrays.fill(occupied, 0L);
+        for(long[] plane : speciesPlanes) {
+            Arrays.fill(plane, 0L);
+        }
+        Arrays.fill(males, 0L);
+    }
+
+    public int nextOccupiedColumn(int row, int col)
+    {
+        int base = row * wordsPerRow;
+        int word = col >>> 6;
+        if(word >= wordsPerRow) {
+            return width;
+        }
+        long bits = occupied[base + word] & (-1L << col);
+        while(bits == 0) {
+            word++;
+            if(word == wordsPerRow) {
+                return width;
+            }
+            bits = occupied[base + word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    public int occupiedNeighbours(int row, int col)
+    {
+        return neighbours(occupied, row, col);
+    }
+
+    public int speciesNeighbours(int row, int col, int speciesSet)
+    {
+        int mask = 0;
+        for(int code = 1; code <= Species.COUNT; code++) {
+            if((speciesSet & (1 << code)) != 0) {
+                mask |= neighbours(speciesPlanes[code - 1], row, col);
+            }
+        }
+        return mask;
+    }
+
+    public int maleNeighbours(int row, int col, int speciesSet)
+    {
+        int mask = speciesNeighbours(row, col, speciesSet);
+        if(mask != 0) {
+            mask &= neighbours(males, row, col);
+        }
+        return mask;
+    }
+
+    /**
+     * Read the neighbours of a cell from a bitmap.
+     * @param bitmap The bitmap to read.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The mask of neighbours whose bit is set, bit d for direction d.
+     */
+    private int neighbours(long[] bitmap, int row, int col)
+    {
+        int above = row > 0 ? threeBits(bitmap, row - 1, col) : 0;
+        int level = threeBits(bitmap, row, col);
+        int below = row < depth - 1 ? threeBits(bitmap, row + 1, col) : 0;
+        // Directions 0-2 are the row above, 3 and 4 the left and
+        // right of this row and 5-7 the row below.
+        return above | ((level & 1) << 3) | ((level & 4) << 2) | (below << 5);
+    }
+
+    /**
+     * Read the bits of a row of a bitmap for the columns either side
+     * of, and including, the given column. Columns outside the grid
+     * read as zero, as the padding at the end of a row is never set.
+     * @param bitmap The bitmap to read.
+     * @param row The row to read.
+     * @param col The middle column.
+     * @return Bit 0 for col - 1, bit 1 for col and bit 2 for col + 1.
+     */
+    private int threeBits(long[] bitmap, int row, int col)
+    {
+        int base = row * wordsPerRow;
+        if(col == 0) {
+            return (int) (bitmap[base] << 1) & 0x7;
+        }
+        int start = col - 1;
+        int word = start >>> 6;
+        int shift = start & 63;
+        long bits = bitmap[base + word] >>> shift;
+        if(shift > 61 && word + 1 < wordsPerRow) {
+            bits |= bitmap[base + word + 1] << (64 - shift);
+        }
+        return (int) bits & 0x7;
+    }
+}
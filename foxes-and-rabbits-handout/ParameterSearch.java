@@ -0,0 +1,368 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches for creation probabilities (the spawnParams of Simulator)
+ * with which a simulation stays viable for as long as possible.
+ * Candidates are tried on several threads at once, each stopping as
+ * soon as it is no longer viable, and are ranked by the number of steps
+ * they survived.
+ *
+ * Candidates can be tried exhaustively over a grid of values, at random,
+ * or by successive halving: every candidate is run for a short time,
+ * the better part of them is kept and run for longer, and so on, so most
+ * of the time goes on the promising candidates.
+ *
+ * Every candidate is run with the same seed, so that they are compared
+ * on the same random numbers.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class ParameterSearch
+{
+    // The number of creation probabilities in a candidate.
+    public static final int PARAMETERS = 6;
+
+    // The size of the field of every run.
+    private int depth, width;
+    // The most steps a candidate is run for.
+    private int maxSteps;
+    // The seed every candidate is run with.
+    private long seed;
+    // The number of candidates run at the same time.
+    private int parallelism;
+
+    /**
+     * Create a search.
+     * @param depth Depth of the field of every run.
+     * @param width Width of the field of every run.
+     * @param maxSteps The most steps a candidate is run for.
+     * @param seed The seed every candidate is run with.
+     * @param parallelism The number of candidates run at the same time.
+     */
+    public ParameterSearch(int depth, int width, int maxSteps, long seed, int parallelism)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.maxSteps = maxSteps;
+        this.seed = seed;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Make every combination of the given values of each parameter.
+     * @param values The values to try for each of the six parameters.
+     * @return The candidates.
+     */
+    public static List<Double[]> gridCandidates(double[][] values)
+    {
+        List<Double[]> candidates = new ArrayList<>();
+        int[] choice = new int[PARAMETERS];
+        while(true) {
+            Double[] params = new Double[PARAMETERS];
+            for(int i = 0; i < PARAMETERS; i++) {
+                params[i] = values[i][choice[i]];
+            }
+            candidates.add(params);
+
+            // Move on to the next combination, like the digits of a counter.
+            int i = PARAMETERS - 1;
+            while(i >= 0 && ++choice[i] == values[i].length) {
+                choice[i] = 0;
+                i--;
+            }
+            if(i < 0) {
+                return candidates;
+            }
+        }
+    }
+
+    /**
+     * Make candidates with every parameter chosen at random.
+     * @param count The number of candidates.
+     * @param low The lowest value of a parameter.
+     * @param high The highest value of a parameter.
+     * @param seed The seed for choosing the values.
+     * @return The candidates.
+     */
+    public static List<Double[]> randomCandidates(int count, double low, double high, long seed)
+    {
+        Random rand = new Random(seed);
+        List<Double[]> candidates = new ArrayList<>();
+        for(int n = 0; n < count; n++) {
+            Double[] params = new Double[PARAMETERS];
+            for(int i = 0; i < PARAMETERS; i++) {
+                params[i] = low + rand.nextDouble() * (high - low);
+            }
+            candidates.add(params);
+        }
+        return candidates;
+    }
+
+    /**
+     * Try every combination of the given values of each parameter.
+     * @param values The values to try for each of the six parameters.
+     * @return The candidates, best first.
+     */
+    public List<Candidate> gridSearch(double[][] values)
+        throws InterruptedException, ExecutionException
+    {
+        return evaluate(gridCandidates(values));
+    }
+
+    /**
+     * Try candidates chosen at random.
+     * @param count The number of candidates.
+     * @param low The lowest value of a parameter.
+     * @param high The highest value of a parameter.
+     * @param candidateSeed The seed for choosing the candidates.
+     * @return The candidates, best first.
+     */
+    public List<Candidate> randomSearch(int count, double low, double high, long candidateSeed)
+        throws InterruptedException, ExecutionException
+    {
+        return evaluate(randomCandidates(count, low, high, candidateSeed));
+    }
+
+    /**
+     * Run every candidate for the most steps, stopping each as soon as
+     * it is no longer viable.
+     * @param params The candidates.
+     * @return The candidates, best first.
+     */
+    public List<Candidate> evaluate(List<Double[]> params)
+        throws InterruptedException, ExecutionException
+    {
+        List<Candidate> candidates = createCandidates(params);
+        runAll(candidates, maxSteps);
+        Collections.sort(candidates);
+        return candidates;
+    }
+
+    /**
+     * Search by successive halving. Every candidate is run for the first
+     * budget of steps; the best 1/eta of them are kept and run on until
+     * the budget multiplied by eta, and so on until one candidate is
+     * left or the most steps have been run. Candidates carry on from
+     * where they stopped, so no step is run twice.
+     * @param params The candidates.
+     * @param firstBudget The number of steps of the first round.
+     * @param eta The factor by which the candidates are cut down and the
+     *            budget is raised each round, at least 2.
+     * @return The candidates of the last round, best first, followed by
+     *         those dropped in earlier rounds.
+     */
+    public List<Candidate> successiveHalving(List<Double[]> params, int firstBudget, int eta)
+        throws InterruptedException, ExecutionException
+    {
+        eta = Math.max(eta, 2);
+        List<Candidate> remaining = createCandidates(params);
+        List<Candidate> dropped = new ArrayList<>();
+        int budget = Math.min(Math.max(firstBudget, 1), maxSteps);
+        while(true) {
+            runAll(remaining, budget);
+            Collections.sort(remaining);
+            if(remaining.size() <= 1 || budget >= maxSteps) {
+                break;
+            }
+            int keep = Math.max(1, remaining.size() / eta);
+            List<Candidate> losers = remaining.subList(keep, remaining.size());
+            for(Candidate loser : losers) {
+                loser.finish();
+            }
+            dropped.addAll(0, losers);
+            losers.clear();
+            budget = (int) Math.min((long) budget * eta, maxSteps);
+        }
+        for(Candidate candidate : remaining) {
+            candidate.finish();
+        }
+        Collections.sort(dropped);
+        remaining.addAll(dropped);
+        return remaining;
+    }
+
+    /**
+     * Create a candidate for each set of parameters.
+     * @param params The sets of parameters.
+     * @return The candidates.
+     */
+    private List<Candidate> createCandidates(List<Double[]> params)
+    {
+        List<Candidate> candidates = new ArrayList<>();
+        for(Double[] set : params) {
+            candidates.add(new Candidate(set));
+        }
+        return candidates;
+    }
+
+    /**
+     * Run candidates on until they have run the given number of steps,
+     * or are no longer viable.
+     * @param candidates The candidates.
+     * @param budget The number of steps.
+     */
+    private void runAll(List<Candidate> candidates, int budget)
+        throws InterruptedException, ExecutionException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(Candidate candidate : candidates) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call()
+                    {
+                        candidate.runUntil(budget);
+                        return null;
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Search at random followed by successive halving, and print the
+     * best candidates.
+     * @param args The number of candidates and the most steps; both optional.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        ParameterSearch search = new ParameterSearch(80, 120, steps, 1,
+                                                     Runtime.getRuntime().availableProcessors());
+        List<Candidate> ranked = search.successiveHalving(randomCandidates(count, 0.01, 0.3, 1),
+                                                          Math.max(steps / 27, 1), 3);
+        for(Candidate candidate : ranked.subList(0, Math.min(10, ranked.size()))) {
+            System.out.println(candidate);
+        }
+    }
+
+    /**
+     * A set of creation probabilities being tried, and how long it
+     * survived. Candidates are ordered best first: the most steps
+     * survived, then the most species alive at the end.
+     */
+    public class Candidate implements Comparable<Candidate>
+    {
+        // The creation probabilities.
+        private Double[] params;
+        // The simulation, while the candidate is still being run.
+        private Simulator simulator;
+        // The number of steps survived.
+        private int steps;
+        // Whether the simulation was viable when it was last run.
+        private boolean viable;
+        // The number of species alive when it was last run.
+        private int speciesAlive;
+
+        /**
+         * Create a candidate that has not been run.
+         * @param params The creation probabilities.
+         */
+        private Candidate(Double[] params)
+        {
+            this.params = params.clone();
+            viable = true;
+        }
+
+        /**
+         * Run the simulation on until it has run the given number of
+         * steps, or is no longer viable.
+         * @param budget The number of steps.
+         */
+        private void runUntil(int budget)
+        {
+            if(simulator == null) {
+                simulator = new Simulator(depth, width, params, seed, false);
+            }
+            if(simulator.getStep() < budget) {
+                simulator.simulate(budget - simulator.getStep());
+            }
+            steps = simulator.getStep();
+            viable = simulator.isViable();
+            PopulationStatistics population = new FieldStats().getStatistics(simulator.getField());
+            speciesAlive = 0;
+            for(Species species : Species.values()) {
+                if(population.getCount(species) > 0) {
+                    speciesAlive++;
+                }
+            }
+        }
+
+        /**
+         * Let go of the simulation once the candidate will not be run again.
+         */
+        private void finish()
+        {
+            simulator = null;
+        }
+
+        /**
+         * @return The creation probabilities.
+         */
+        public Double[] getParams()
+        {
+            return params.clone();
+        }
+
+        /**
+         * @return The number of steps the candidate survived.
+         */
+        public int getSteps()
+        {
+            return steps;
+        }
+
+        /**
+         * @return true if the simulation was still viable when it was last run.
+         */
+        public boolean isViable()
+        {
+            return viable;
+        }
+
+        /**
+         * @return The number of species alive when it was last run.
+         */
+        public int getSpeciesAlive()
+        {
+            return speciesAlive;
+        }
+
+        public int compareTo(Candidate other)
+        {
+            if(steps != other.steps) {
+                return Integer.compare(other.steps, steps);
+            }
+            return Integer.compare(other.speciesAlive, speciesAlive);
+        }
+
+        public String toString()
+        {
+            StringBuffer buffer = new StringBuffer();
+            buffer.append("Steps: ").append(steps);
+            buffer.append(viable ? " (viable)" : "");
+            buffer.append(" Species: ").append(speciesAlive);
+            buffer.append(" Params:");
+            for(Double param : params) {
+                buffer.append(String.format(" %.3f", param));
+            }
+            return buffer.toString();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.Arrays;
+
+/**
+ * A count table kept in a plain array, for counting on one thread.
+ * The table grows to hold any id it is given.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class PlainCountTable implements CountTable
+{
+    // The count of each id.
+    private long[] counts;
+
+    /**
+     * Create a table with every count zero.
+     * @param size The number of ids expected, from 0 to size - 1.
+     */
+    public PlainCountTable(int size)
+    {
+        counts = new long[Math.max(size, 1)];
+    }
+
+    public void add(int id, long amount)
+    {
+        if(id >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+        }
+        counts[id] += amount;
+    }
+
+    public long get(int id)
+    {
+        return id < counts.length ? counts[id] : 0;
+    }
+
+    public void reset(int id)
+    {
+        if(id < counts.length) {
+            counts[id] = 0;
+        }
+    }
+
+    public void reset()
+    {
+        Arrays.fill(counts, 0);
+    }
+}
@@ -1,6 +1,5 @@
 import java.util.List;
 import java.util.Random;
-import java.util.Iterator;
 
 /**
  * A model of a Plant
@@ -13,16 +12,11 @@ import java.util.Iterator;
 public class Plant extends Animal
 {
 
-    private static final int BREEDING_AGE = 1;
-    private static final int MAX_AGE = 60;
-    private static final double BREEDING_PROBABILITY = 0.5;
-    private static final int MAX_LITTER_SIZE = 2;
-    private static final Random rand = Randomizer.getRandom();
+    static final int BREEDING_AGE = 1;
+    static final int MAX_AGE = 60;
+    static final double BREEDING_PROBABILITY = 0.5;
+    static final int MAX_LITTER_SIZE = 2;
     
-    // Individual characteristics (instance fields).
-
-    private int age;
-
 	/**
      * Create a new plant. A plant may be created with age
      * zero (a new born) or with a random age.
@@ -37,10 +31,20 @@ public class Plant extends Animal
         super(field, location, clock);
         age = 0;
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
         }
     }
 
+    /**
+     * Return the species of a plant.
+     * @return Species.PLANT
+     */
+    public Species getSpecies()
+    {
+        return Species.PLANT;
+    }
+
 	/**
      * This is what the plant does most of the time - it will 
      * breed.
@@ -52,13 +56,9 @@ public class Plant extends Animal
         incrementAge();
         if(isAlive()) {
             giveBirth(newPlants);            
-            Location newLocation = getField().freeAdjacentLocation(getLocation());
-            if(newLocation != null) {
-            
-            }
-            else {
+            if(!getField().hasFreeAdjacentLocation(getLocation())) {
                 // Overcrowding.
-                setDead();
+                setDead(Cause.OVERCROWDING);
             }
         }
     }
@@ -71,7 +71,7 @@ public class Plant extends Animal
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(Cause.AGE);
         }
     }
 
@@ -82,14 +82,20 @@ public class Plant extends Animal
      */
     private void giveBirth(List<Animal> newPlants)
     {
-        // Get a list of adjacent free locations.
+        // Use the free adjacent locations, chosen in a random order.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Plant young = new Plant(false, field, loc, getClock());
-            newPlants.add(young);
+        if(births > 0) {
+            int free = field.freeAdjacentMask(here);
+            while(births > 0 && free != 0) {
+                int direction = field.randomDirection(free);
+                free &= ~(1 << direction);
+                Location loc = field.adjacentLocation(here, direction);
+                Plant young = new Plant(false, field, loc, getClock());
+                newPlants.add(young);
+                births--;
+            }
         }
     }
         
@@ -100,6 +106,7 @@ public class Plant extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
             births = rand.nextInt(MAX_LITTER_SIZE) + 1;
@@ -120,17 +127,7 @@ public class Plant extends Animal
 
     private boolean isCompatibleAnimal()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Plant){
-                    return true;
-                }
-            }
-        return false;
+        return getField().adjacentSpeciesMask(getLocation(), Species.PLANT.bit()) != 0;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,487 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The plants of a field kept as a grid of ages rather than as Plant
+ * objects, and stepped as a cellular automaton. Plants never move, so
+ * all a plant needs is its age: a byte per cell, holding the age + 1,
+ * or 0 where there is no plant.
+ *
+ * Each step reads the grid as it was at the start of the step and
+ * writes a new one, so every row can be worked out independently:
+ * - a plant ages, and dies when it is older than Plant.MAX_AGE or has
+ *   no free cell next to it;
+ * - a free cell is seeded by the plants around it that can breed. A
+ *   breeding plant with f free neighbours breeds with Plant's
+ *   probability and has between 1 and Plant.MAX_LITTER_SIZE young,
+ *   so each of those neighbours is seeded with the chance that one of
+ *   the young lands there. The cell pulls those chances together
+ *   rather than the plants pushing young into it, so no two rows ever
+ *   write to the same cell.
+ * The random numbers of a row are keyed by the step and the row, so
+ * the results are the same whatever the number of threads.
+ *
+ * Stretches of a row with no plant in or next to them can neither
+ * change nor draw random numbers, so they are skipped a bitmap word
+ * at a time, and an empty region costs almost nothing to step.
+ *
+ * The layer is attached to a Field (see Field.setPlantLayer), which
+ * then reports its plants as occupying their cells.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class PlantLayer
+{
+    // The number of rows handed to a thread at a time. A whole row of
+    // tiles of DirtyTiles, so that threads never count into the same tile
+    // of the census.
+    private static final int ROW_BLOCK = DirtyTiles.TILE_ROWS;
+    // The chance that a free cell is not seeded by a breeding plant
+    // next to it, indexed by the number of free cells next to the plant.
+    private static final double[] NOT_SEEDED = buildNotSeeded();
+
+    // The depth and width of the field.
+    private int depth, width;
+    // The age + 1 of the plant in each cell, 0 if there is none.
+    private byte[] ages;
+    // The grid being written by a step.
+    private byte[] next;
+    // The number of words of the plant bitmap used by each row.
+    private int wordsPerRow;
+    // One bit per cell, set if it holds a plant.
+    private long[] occupied;
+    // The bitmap being written by a step.
+    private long[] nextOccupied;
+    // The number of free cells next to each plant, worked out at the
+    // start of a step.
+    private byte[] free;
+    // Whether each plant breeds in the step.
+    private boolean[] breeding;
+    // The threads the rows are worked out on, or null to use this one.
+    private ForkJoinPool pool;
+    // Where to record the cells that gain or lose a plant, or null.
+    private DirtyTiles changes;
+    // Where to count the plants gained and lost, or null.
+    private Census census;
+
+    // The field, the storage of its animals and the random numbers
+    // of the step being run.
+    private Field field;
+    private FieldStorage animals;
+    private Randomizer randomizer;
+    private int step;
+
+    /**
+     * Create an empty layer for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public PlantLayer(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        ages = new byte[depth * width];
+        next = new byte[depth * width];
+        wordsPerRow = (width + 63) >>> 6;
+        occupied = new long[depth * wordsPerRow];
+        nextOccupied = new long[depth * wordsPerRow];
+        free = new byte[depth * width];
+        breeding = new boolean[depth * width];
+    }
+
+    /**
+     * Set the number of threads the rows are worked out on.
+     * @param threads The number of threads, 1 or less to use the
+     *                thread running the step.
+     */
+    public void setThreads(int threads)
+    {
+        shutdown();
+        if(threads > 1) {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    /**
+     * Stop the threads, if any.
+     */
+    public void shutdown()
+    {
+        if(pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Record the cells that gain or lose a plant from now on, e.g. in
+     * the changes and census of the field the layer is attached to.
+     * @param changes The record of changes, or null for none.
+     * @param census The census to count the plants in, or null for none.
+     */
+    public void setChanges(DirtyTiles changes, Census census)
+    {
+        this.changes = changes;
+        this.census = census;
+    }
+
+    /**
+     * @return true if a cell holds a plant.
+     */
+    public boolean isPlant(int row, int col)
+    {
+        return ages[row * width + col] != 0;
+    }
+
+    /**
+     * @return The age of the plant in a cell.
+     */
+    public int getAge(int row, int col)
+    {
+        return ages[row * width + col] - 1;
+    }
+
+    /**
+     * Put a plant in a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param age The age of the plant.
+     */
+    public void plant(int row, int col, int age)
+    {
+        if(census != null && ages[row * width + col] == 0) {
+            census.add(row, col, Species.PLANT.getCode(), null);
+        }
+        ages[row * width + col] = (byte) (age + 1);
+        occupied[row * wordsPerRow + (col >>> 6)] |= 1L << col;
+        if(changes != null) {
+            changes.mark(row, col);
+        }
+    }
+
+    /**
+     * Remove the plant from a cell, e.g. when it is eaten.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    public void remove(int row, int col)
+    {
+        if(census != null && ages[row * width + col] != 0) {
+            census.remove(row, col, Species.PLANT.getCode(), null);
+        }
+        ages[row * width + col] = 0;
+        occupied[row * wordsPerRow + (col >>> 6)] &= ~(1L << col);
+        if(changes != null) {
+            changes.mark(row, col);
+        }
+    }
+
+    /**
+     * Remove every plant.
+     */
+    public void clear()
+    {
+        Arrays.fill(ages, (byte) 0);
+        Arrays.fill(occupied, 0L);
+        if(changes != null) {
+            changes.markAll();
+        }
+    }
+
+    /**
+     * Return which of the cells adjacent to a cell hold a plant, as a
+     * mask with bit d set for direction d of Field.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The mask of adjacent plants.
+     */
+    public int neighbours(int row, int col)
+    {
+        int mask = 0;
+        for(int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            int nextRow = row + Field.rowOffset(direction);
+            int nextCol = col + Field.colOffset(direction);
+            if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width
+               && ages[nextRow * width + nextCol] != 0) {
+                mask |= 1 << direction;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Return the first column of a row, at or after the given one,
+     * that holds a plant.
+     * @param row The row to look in.
+     * @param col The column to start from.
+     * @return The column, or the width if there is none.
+     */
+    public int nextPlantColumn(int row, int col)
+    {
+        int base = row * wordsPerRow;
+        int word = col >>> 6;
+        if(word >= wordsPerRow) {
+            return width;
+        }
+        long bits = occupied[base + word] & (-1L << col);
+        while(bits == 0) {
+            word++;
+            if(word == wordsPerRow) {
+                return width;
+            }
+            bits = occupied[base + word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Run a step of the plants, after the animals have acted.
+     * @param field The field, giving the cells the animals are in.
+     * @param randomizer The random numbers of the simulation.
+     * @param step The step being run.
+     */
+    public void step(Field field, Randomizer randomizer, int step)
+    {
+        this.field = field;
+        animals = field.getStorage();
+        this.randomizer = randomizer;
+        this.step = step;
+        runRows(false);
+        runRows(true);
+
+        byte[] swap = ages;
+        ages = next;
+        next = swap;
+        long[] swapOccupied = occupied;
+        occupied = nextOccupied;
+        nextOccupied = swapOccupied;
+        this.field = null;
+        animals = null;
+    }
+
+    /**
+     * Run one of the passes of a step over every row.
+     * @param grow false to look at the plants, true to work out the new grid.
+     */
+    private void runRows(boolean grow)
+    {
+        int blocks = (depth + ROW_BLOCK - 1) / ROW_BLOCK;
+        if(pool != null && blocks > 1) {
+            pool.invoke(new RowTask(0, blocks, grow));
+        }
+        else {
+            for(int row = 0; row < depth; row++) {
+                runRow(row, grow);
+            }
+        }
+    }
+
+    /**
+     * Run one of the passes of a step over a row.
+     * @param row The row.
+     * @param grow false to look at the plants, true to work out the new grid.
+     */
+    private void runRow(int row, boolean grow)
+    {
+        if(grow) {
+            growRow(row);
+        }
+        else {
+            inspectRow(row);
+        }
+    }
+
+    /**
+     * Work out, for each plant of a row, how many free cells are next
+     * to it and whether it breeds.
+     * @param row The row.
+     */
+    private void inspectRow(int row)
+    {
+        int base = row * width;
+        for(int col = 0; col < width; col++) {
+            if(occupied[row * wordsPerRow + (col >>> 6)] == 0) {
+                // No plants in this word of the row.
+                int end = Math.min(width, (col | 63) + 1);
+                Arrays.fill(breeding, base + col, base + end, false);
+                col = end - 1;
+                continue;
+            }
+            int age = ages[base + col];
+            if(age != 0) {
+                int plants = neighbours(row, col);
+                int freeMask = field.inFieldMask(row, col) & ~plants
+                    & ~animals.occupiedNeighbours(row, col);
+                free[base + col] = (byte) Integer.bitCount(freeMask);
+                // The stored age + 1 is the age the plant reaches this step.
+                breeding[base + col] = age > Plant.BREEDING_AGE && age <= Plant.MAX_AGE
+                    && plants != 0;
+            }
+            else {
+                breeding[base + col] = false;
+            }
+        }
+    }
+
+    /**
+     * Work out the new grid for a row.
+     * @param row The row.
+     */
+    private void growRow(int row)
+    {
+        int base = row * width;
+        Random rand = randomizer.startPlants(step, row);
+        long[] bits = nextOccupied;
+        int wordBase = row * wordsPerRow;
+        Arrays.fill(bits, wordBase, wordBase + wordsPerRow, 0L);
+        for(int col = 0; col < width; col++) {
+            if(isQuiet(row, col >>> 6)) {
+                // Nothing can grow or die here; the new bitmap word
+                // has already been cleared.
+                int end = Math.min(width, (col | 63) + 1);
+                Arrays.fill(next, base + col, base + end, (byte) 0);
+                col = end - 1;
+                continue;
+            }
+            int age = ages[base + col];
+            int grown = 0;
+            if(age != 0) {
+                if(age <= Plant.MAX_AGE && free[base + col] != 0) {
+                    grown = age + 1;
+                }
+            }
+            else if(animals.getSpeciesCode(row, col) == Species.EMPTY_CODE) {
+                double notSeeded = notSeeded(row, col);
+                if(notSeeded < 1.0 && rand.nextDouble() >= notSeeded) {
+                    grown = 1;
+                }
+            }
+            next[base + col] = (byte) grown;
+            if(grown != 0) {
+                bits[wordBase + (col >>> 6)] |= 1L << col;
+            }
+            if((grown == 0) != (age == 0)) {
+                if(changes != null) {
+                    changes.mark(row, col);
+                }
+                if(census != null) {
+                    if(grown != 0) {
+                        census.add(row, col, Species.PLANT.getCode(), null);
+                    }
+                    else {
+                        census.remove(row, col, Species.PLANT.getCode(), null);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether a stretch of a row is quiet: neither it nor any cell
+     * next to it holds a plant, so it stays empty through the step.
+     * @param row The row.
+     * @param word The word of the row's bitmap covering the stretch.
+     * @return true if the stretch is quiet.
+     */
+    private boolean isQuiet(int row, int word)
+    {
+        int firstRow = Math.max(0, row - 1);
+        int lastRow = Math.min(depth - 1, row + 1);
+        int firstWord = Math.max(0, word - 1);
+        int lastWord = Math.min(wordsPerRow - 1, word + 1);
+        for(int r = firstRow; r <= lastRow; r++) {
+            for(int w = firstWord; w <= lastWord; w++) {
+                if(occupied[r * wordsPerRow + w] != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The chance that a free cell is not seeded by any of the
+     *         plants around it.
+     */
+    private double notSeeded(int row, int col)
+    {
+        double chance = 1.0;
+        for(int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            int nextRow = row + Field.rowOffset(direction);
+            int nextCol = col + Field.colOffset(direction);
+            if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width) {
+                int index = nextRow * width + nextCol;
+                if(breeding[index]) {
+                    chance *= NOT_SEEDED[free[index]];
+                }
+            }
+        }
+        return chance;
+    }
+
+    /**
+     * Work out the chance that a given free cell next to a breeding
+     * plant gets none of its young, for each number of free cells
+     * next to the plant. The plant breeds with Plant.BREEDING_PROBABILITY
+     * and then has k young, k equally likely to be 1 to MAX_LITTER_SIZE,
+     * which go to min(k, free) of its free cells chosen at random.
+     * @return The table, indexed by the number of free cells.
+     */
+    private static double[] buildNotSeeded()
+    {
+        double[] table = new double[Field.NEIGHBOURS + 1];
+        table[0] = 1.0;
+        for(int cells = 1; cells <= Field.NEIGHBOURS; cells++) {
+            double young = 0;
+            for(int k = 1; k <= Plant.MAX_LITTER_SIZE; k++) {
+                young += Math.min(k, cells);
+            }
+            young /= Plant.MAX_LITTER_SIZE;
+            table[cells] = 1.0 - Plant.BREEDING_PROBABILITY * young / cells;
+        }
+        return table;
+    }
+
+    /**
+     * Runs a pass over a range of blocks of rows, splitting the range
+     * between threads.
+     */
+    @SuppressWarnings("serial")
+    private class RowTask extends RecursiveAction
+    {
+        // The range of blocks.
+        private int from, to;
+        // Which pass to run.
+        private boolean grow;
+
+        /**
+         * Create a task for a range of blocks.
+         * @param from The first block of the range.
+         * @param to The end of the range, exclusive.
+         * @param grow Which pass to run.
+         */
+        RowTask(int from, int to, boolean grow)
+        {
+            this.from = from;
+            this.to = to;
+            this.grow = grow;
+        }
+
+        protected void compute()
+        {
+            if(to - from == 1) {
+                int end = Math.min(depth, (from + 1) * ROW_BLOCK);
+                for(int row = from * ROW_BLOCK; row < end; row++) {
+                    runRow(row, grow);
+                }
+            }
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(from, middle, grow), new RowTask(middle, to, grow));
+            }
+        }
+    }
+}
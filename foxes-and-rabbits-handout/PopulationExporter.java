@@ -0,0 +1,371 @@
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams the population of each species, in all and by gender, at
+ * every step of a simulation to a file while it runs. As an observer
+ * it is told about every step; it copies the census of the field into
+ * a row of numbers and hands the row to a writer thread through a
+ * bounded queue, so the simulation thread never formats or writes
+ * anything. If the writer falls behind by a whole queue the simulation
+ * waits for it. Rows are recycled through a second queue, so nothing
+ * is allocated per step.
+ *
+ * Each row holds the step and then, for each species in code order,
+ * the number of the species, of its males and of its females. Plants
+ * of a plant layer have no gender, so they are only counted in the
+ * number of their species (see PopulationStatistics). The file is
+ * either CSV with a header line, or a binary columnar file: blocks of
+ * up to BLOCK_ROWS rows, each holding its row count and then every
+ * column in turn as varints of the zigzagged change from the row
+ * before (see readColumns).
+ *
+ * close must be called at the end of the run to write out the last rows.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class PopulationExporter implements SimulatorObserver
+{
+    // The formats a series can be written in.
+    public enum Format {
+        CSV,
+        COLUMNAR,
+    }
+
+    // The number of columns of each species: in all, males and females.
+    public static final int SPECIES_COLUMNS = 3;
+    // The number of columns: the step, then those of each species.
+    public static final int COLUMNS = 1 + SPECIES_COLUMNS * Species.COUNT;
+    // The most rows in a block of a columnar file.
+    public static final int BLOCK_ROWS = 4096;
+    // Identifies a columnar population file ("SAVP").
+    private static final int MAGIC = 0x53415650;
+    // The version of the columnar layout.
+    private static final int VERSION = 2;
+    // The row that tells the writer thread to stop.
+    private static final int[] END = new int[0];
+
+    // The rows waiting to be written.
+    private BlockingQueue<int[]> pending;
+    // The rows that have been written and can be filled again.
+    private BlockingQueue<int[]> free;
+    // The thread writing the file.
+    private Thread writer;
+    // The first error writing the file, or null.
+    private volatile IOException error;
+
+    /**
+     * Create an exporter writing to a file, and start its writer thread.
+     * @param file The file to write. Any existing file is replaced.
+     * @param format The format to write in.
+     * @param capacity The number of rows that can wait to be written.
+     * @throws IOException If the file cannot be created.
+     */
+    public PopulationExporter(Path file, Format format, int capacity) throws IOException
+    {
+        pending = new ArrayBlockingQueue<>(capacity);
+        free = new ArrayBlockingQueue<>(capacity + 1);
+        for(int i = 0; i <= capacity; i++) {
+            free.add(new int[COLUMNS]);
+        }
+        if(format == Format.CSV) {
+            BufferedWriter out = Files.newBufferedWriter(file);
+            writer = new Thread(() -> writeCsv(out), "population-exporter");
+        }
+        else {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            writer = new Thread(() -> writeColumnar(out), "population-exporter");
+        }
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Read the count of the animals from the census of the field and
+     * queue it for writing.
+     * @param step The step the simulation is at.
+     * @param field The field.
+     */
+    public void showStatus(int step, Field field)
+    {
+        int[] row;
+        try {
+            row = free.take();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        row[0] = step;
+        Census census = field.getCensus();
+        for(int code = 1; code <= Species.COUNT; code++) {
+            int column = 1 + (code - 1) * SPECIES_COLUMNS;
+            row[column] = census.getCount(code);
+            row[column + 1] = census.getMales(code);
+            row[column + 2] = census.getFemales(code);
+        }
+        try {
+            pending.put(row);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write out the rows still queued, stop the writer thread and
+     * close the file.
+     * @throws IOException If the file could not be written.
+     */
+    public void close() throws IOException
+    {
+        try {
+            pending.put(END);
+            writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the population file");
+        }
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Read a columnar population file.
+     * @param file The file.
+     * @return The columns of the file, COLUMNS arrays of one number per step.
+     * @throws IOException If the file cannot be read or is not a population file.
+     */
+    public static int[][] readColumns(Path file) throws IOException
+    {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != COLUMNS) {
+                throw new IOException("Not a population file: " + file);
+            }
+            int[][] columns = new int[COLUMNS][BLOCK_ROWS];
+            int[] previous = new int[COLUMNS];
+            int rows = 0;
+            int blockRows;
+            while((blockRows = readVarint(in)) > 0) {
+                for(int column = 0; column < COLUMNS; column++) {
+                    if(columns[column].length < rows + blockRows) {
+                        columns[column] = Arrays.copyOf(columns[column], Math.max(rows + blockRows, rows * 2));
+                    }
+                    for(int i = rows; i < rows + blockRows; i++) {
+                        int change = readVarint(in);
+                        previous[column] += (change >>> 1) ^ -(change & 1);
+                        columns[column][i] = previous[column];
+                    }
+                }
+                rows += blockRows;
+            }
+            for(int column = 0; column < COLUMNS; column++) {
+                columns[column] = Arrays.copyOf(columns[column], rows);
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Take the next row to write.
+     * @return The row, or END when the exporter is closed.
+     */
+    private int[] nextRow()
+    {
+        while(true) {
+            try {
+                return pending.take();
+            }
+            catch(InterruptedException e) {
+                // Only close stops the writer.
+            }
+        }
+    }
+
+    /**
+     * Give a written row back to be filled again.
+     * @param row The row.
+     */
+    private void recycle(int[] row)
+    {
+        free.add(row);
+    }
+
+    /**
+     * Run by the writer thread: write the rows as CSV until closed.
+     * @param out The file.
+     */
+    private void writeCsv(Writer out)
+    {
+        StringBuilder line = new StringBuilder();
+        line.append("step");
+        for(int code = 1; code <= Species.COUNT; code++) {
+            String name = Species.fromCode(code).getAnimalClass().getName();
+            line.append(',').append(name).append("_total,").append(name).append("_male,")
+                .append(name).append("_female");
+        }
+        write(out, line);
+        for(int[] row = nextRow(); row != END; row = nextRow()) {
+            line.setLength(0);
+            for(int column = 0; column < COLUMNS; column++) {
+                if(column > 0) {
+                    line.append(',');
+                }
+                line.append(row[column]);
+            }
+            recycle(row);
+            write(out, line);
+        }
+        try {
+            out.close();
+        }
+        catch(IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Write a line of a CSV file, unless writing has already failed.
+     * @param out The file.
+     * @param line The line, without its line break.
+     */
+    private void write(Writer out, StringBuilder line)
+    {
+        if(error == null) {
+            try {
+                out.append(line).append('\n');
+            }
+            catch(IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Run by the writer thread: write the rows as a columnar file
+     * until closed.
+     * @param out The file.
+     */
+    private void writeColumnar(DataOutputStream out)
+    {
+        int[][] block = new int[COLUMNS][BLOCK_ROWS];
+        int[] previous = new int[COLUMNS];
+        int rows = 0;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(COLUMNS);
+        }
+        catch(IOException e) {
+            fail(e);
+        }
+        for(int[] row = nextRow(); row != END; row = nextRow()) {
+            for(int column = 0; column < COLUMNS; column++) {
+                block[column][rows] = row[column];
+            }
+            recycle(row);
+            rows++;
+            if(rows == BLOCK_ROWS) {
+                writeBlock(out, block, rows, previous);
+                rows = 0;
+            }
+        }
+        writeBlock(out, block, rows, previous);
+        try {
+            // A block of no rows ends the file.
+            writeVarint(out, 0);
+            out.close();
+        }
+        catch(IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Write a block of a columnar file, unless writing has already failed.
+     * @param out The file.
+     * @param block The rows of the block, column by column.
+     * @param rows The number of rows in the block.
+     * @param previous The last row of the block before, updated to the
+     *                 last row of this one.
+     */
+    private void writeBlock(DataOutputStream out, int[][] block, int rows, int[] previous)
+    {
+        if(rows == 0 || error != null) {
+            return;
+        }
+        try {
+            writeVarint(out, rows);
+            for(int column = 0; column < COLUMNS; column++) {
+                int last = previous[column];
+                for(int i = 0; i < rows; i++) {
+                    int change = block[column][i] - last;
+                    writeVarint(out, (change << 1) ^ (change >> 31));
+                    last = block[column][i];
+                }
+                previous[column] = last;
+            }
+        }
+        catch(IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Remember the first error writing the file.
+     * @param e The error.
+     */
+    private void fail(IOException e)
+    {
+        if(error == null) {
+            error = e;
+        }
+    }
+
+    /**
+     * Write a number as an unsigned varint, seven bits a byte.
+     * @param out The file.
+     * @param value The number.
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException
+    {
+        while((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Read an unsigned varint.
+     * @param in The file.
+     * @return The number.
+     */
+    private static int readVarint(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        int shift = 0;
+        while(true) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+/**
+ * Records the population of each species at every step of a
+ * simulation, so that the series can be looked at after the run.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class PopulationRecorder implements SimulatorObserver
+{
+    // The populations, one row of Species.COUNT counts per recorded step.
+    private int[] counts;
+    // The step of the first recorded row.
+    private int firstStep;
+    // The number of steps recorded.
+    private int steps;
+
+    /**
+     * Create a recorder with nothing recorded.
+     */
+    public PopulationRecorder()
+    {
+        counts = new int[64 * Species.COUNT];
+        firstStep = -1;
+        steps = 0;
+    }
+
+    /**
+     * Record the population of the field, as counted by its census.
+     * A step that has already been recorded, or an earlier one, starts
+     * the series again, e.g. after the simulation has been reset.
+     * @param step The step the simulation is at.
+     * @param field The field.
+     */
+    public void showStatus(int step, Field field)
+    {
+        if(firstStep < 0 || step < firstStep + steps) {
+            firstStep = step;
+            steps = 0;
+        }
+        int row = steps * Species.COUNT;
+        if(row + Species.COUNT > counts.length) {
+            counts = Arrays.copyOf(counts, counts.length * 2);
+        }
+        Census census = field.getCensus();
+        for(int code = 1; code <= Species.COUNT; code++) {
+            counts[row + code - 1] = census.getCount(code);
+        }
+        steps++;
+    }
+
+    /**
+     * @return The number of steps recorded.
+     */
+    public int getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return The step of the first recorded population.
+     */
+    public int getFirstStep()
+    {
+        return firstStep;
+    }
+
+    /**
+     * Return the population of a species at a recorded step.
+     * @param species The species.
+     * @param index The index of the recorded step, from 0.
+     * @return The population.
+     */
+    public int getCount(Species species, int index)
+    {
+        return counts[index * Species.COUNT + species.getCode() - 1];
+    }
+
+    /**
+     * Return the population of a species at every recorded step.
+     * @param species The species.
+     * @return The populations, one per recorded step.
+     */
+    public int[] getSeries(Species species)
+    {
+        int[] series = new int[steps];
+        for(int index = 0; index < steps; index++) {
+            series[index] = getCount(species, index);
+        }
+        return series;
+    }
+}
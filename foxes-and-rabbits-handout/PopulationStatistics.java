@@ -0,0 +1,168 @@
+/**
+ * The population of a field at one moment, by species and gender, as
+ * returned by FieldStats.getStatistics, and also by age, as returned by
+ * FieldStats.getAgeStatistics. The numbers are copied out of
+ * the census of the field into a matrix with a row per species code and
+ * a column per gender, so they stay the same as the field changes.
+ *
+ * The plants of a plant layer have no gender: they are counted in the
+ * population of their species, but as neither males nor females.
+ *
+ * The census does not keep ages, which change every step, so the
+ * population by age is only counted if asked for, in one pass over
+ * the field. Each species' life span is split into AGE_GROUPS equal
+ * parts, and the animals are counted by the part their age is in.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class PopulationStatistics
+{
+    // The number of age groups each life span is split into.
+    public static final int AGE_GROUPS = 4;
+    // The number of genders, the columns of the matrix.
+    private static final int GENDERS = Animal.Gender.values().length;
+
+    // The number of each species, indexed by code.
+    private int[] counts;
+    // The number of each species of each gender, GENDERS entries per
+    // code, in the order of Animal.Gender.
+    private int[] genders;
+    // The number of each species in each age group, AGE_GROUPS entries
+    // per code, youngest first; null if ages were not counted.
+    private int[] ages;
+
+    /**
+     * Copy the population of a field out of its census.
+     * @param census The census of the field.
+     */
+    public PopulationStatistics(Census census)
+    {
+        counts = new int[Species.COUNT + 1];
+        genders = new int[(Species.COUNT + 1) * GENDERS];
+        for(int code = 1; code <= Species.COUNT; code++) {
+            counts[code] = census.getCount(code);
+            genders[code * GENDERS + Animal.Gender.Male.ordinal()] = census.getMales(code);
+            genders[code * GENDERS + Animal.Gender.Female.ordinal()] = census.getFemales(code);
+        }
+    }
+
+    /**
+     * Copy the population of a field out of its census, and count it
+     * by age in one pass over the field.
+     * @param census The census of the field.
+     * @param field The field.
+     */
+    public PopulationStatistics(Census census, Field field)
+    {
+        this(census);
+        ages = new int[(Species.COUNT + 1) * AGE_GROUPS];
+        PlantLayer plants = field.getPlantLayer();
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        for(int row = field.nextOccupiedRow(0); row < depth; row = field.nextOccupiedRow(row + 1)) {
+            for(int col = field.nextOccupiedColumn(row, 0); col < width; col = field.nextOccupiedColumn(row, col + 1)) {
+                int code = field.getSpeciesCodeAt(row, col);
+                if(code == Species.UNKNOWN_CODE) {
+                    continue;
+                }
+                Object occupant = field.getObjectAt(row, col);
+                int age;
+                if(occupant instanceof Animal) {
+                    age = ((Animal) occupant).getAge();
+                }
+                else if(plants != null && plants.isPlant(row, col)) {
+                    age = plants.getAge(row, col);
+                }
+                else {
+                    continue;
+                }
+                ages[code * AGE_GROUPS + ageGroupOf(Species.fromCode(code), age)]++;
+            }
+        }
+    }
+
+    /**
+     * @return The number of a species in the field.
+     */
+    public int getCount(Species species)
+    {
+        return counts[species.getCode()];
+    }
+
+    /**
+     * Return the number of a species of one gender.
+     * @param species The species.
+     * @param gender The gender.
+     * @return The number in the field.
+     */
+    public int getCount(Species species, Animal.Gender gender)
+    {
+        return genders[species.getCode() * GENDERS + gender.ordinal()];
+    }
+
+    /**
+     * @return The number of males of a species in the field.
+     */
+    public int getMales(Species species)
+    {
+        return getCount(species, Animal.Gender.Male);
+    }
+
+    /**
+     * @return The number of females of a species in the field.
+     */
+    public int getFemales(Species species)
+    {
+        return getCount(species, Animal.Gender.Female);
+    }
+
+    /**
+     * @return The number of animals of every species in the field.
+     */
+    public int getTotal()
+    {
+        int total = 0;
+        for(int code = 1; code <= Species.COUNT; code++) {
+            total += counts[code];
+        }
+        return total;
+    }
+
+    /**
+     * @return true if the population was counted by age.
+     */
+    public boolean hasAges()
+    {
+        return ages != null;
+    }
+
+    /**
+     * Return the number of a species in one age group.
+     * @param species The species.
+     * @param group The age group, from 0 for the youngest to
+     *              AGE_GROUPS - 1 for the oldest.
+     * @return The number in the field.
+     * @throws IllegalStateException If ages were not counted.
+     */
+    public int getCountInAgeGroup(Species species, int group)
+    {
+        if(ages == null) {
+            throw new IllegalStateException("The population was not counted by age");
+        }
+        return ages[species.getCode() * AGE_GROUPS + group];
+    }
+
+    /**
+     * Return the age group of an animal.
+     * @param species The species of the animal.
+     * @param age The age of the animal.
+     * @return The part of the life span of its species it is in, from
+     *         0 to AGE_GROUPS - 1.
+     */
+    public static int ageGroupOf(Species species, int age)
+    {
+        int group = (int) ((long) Math.max(age, 0) * AGE_GROUPS / (species.getMaxAge() + 1));
+        return Math.min(group, AGE_GROUPS - 1);
+    }
+}
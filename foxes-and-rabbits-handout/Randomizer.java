@@ -1,9 +1,15 @@
 import java.util.Random;
 
 /**
- * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
- * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
- * 'useShared' to false to get different random behaviour every time.
+ * Provide control over the randomization of the simulation. Every thread
+ * has its own counter-based generator (see CounterRandom), so there is no
+ * shared generator for threads to wait on. A Randomizer holds the seed of
+ * one simulation and starts the generator of the current thread with a key
+ * made from the seed and what is about to happen: before an animal acts,
+ * the key is the seed, the step and the cell the animal is in. The numbers
+ * an animal draws therefore do not depend on which thread runs it or on
+ * what the other animals drew, and repeated runs with the same seed
+ * perform exactly the same (which helps with testing).
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
@@ -12,41 +18,151 @@ public class Randomizer
 {
     // The default seed for control of randomization.
     private static final int SEED = 1111;
-    // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
-    // Determine whether a shared random generator is to be provided.
-    private static final boolean useShared = true;
+    // The generator of each thread.
+    private static final ThreadLocal<CounterRandom> current =
+        ThreadLocal.withInitial(() -> new CounterRandom(SEED));
+
+    // Separate streams of numbers for each use, so that they never overlap.
+    private static final int POPULATE_STREAM = 1;
+    private static final int WEATHER_STREAM = 2;
+    private static final int ACT_STREAM = 3;
+    private static final int PRIORITY_STREAM = 4;
+    private static final int PLANT_STREAM = 5;
+
+    // The seed of the simulation.
+    private long seed;
 
     /**
-     * Constructor for objects of class Randomizer
+     * Create a randomizer with the default seed.
      */
     public Randomizer()
     {
+        this(SEED);
+    }
+
+    /**
+     * Create a randomizer with the given seed.
+     * @param seed The seed of the simulation.
+     */
+    public Randomizer(long seed)
+    {
+        this.seed = seed;
     }
 
     /**
-     * Provide a random generator.
+     * Provide the random generator of the current thread.
      * @return A random object.
      */
     public static Random getRandom()
     {
-        if(useShared) {
-            return rand;
-        }
-        else {
-            return new Random();
-        }
+        return current.get();
     }
     
     /**
-     * Reset the randomization.
-     * This will have no effect if randomization is not through
-     * a shared Random generator.
+     * Reset the randomization of the current thread.
      */
     public static void reset()
     {
-        if(useShared) {
-            rand.setSeed(SEED);
-        }
+        current.get().setSeed(SEED);
+    }
+
+    /**
+     * @return The seed of the simulation.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Change the seed of the simulation.
+     * @param seed The new seed.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Start the generator of the current thread for populating the field.
+     * @return The generator.
+     */
+    public Random startPopulate()
+    {
+        return start(CounterRandom.combine(seed, POPULATE_STREAM));
+    }
+
+    /**
+     * Start the generator of the current thread for choosing the weather.
+     * @param day The day the weather is for.
+     * @return The generator.
+     */
+    public Random startWeather(int day)
+    {
+        return start(CounterRandom.combine(CounterRandom.combine(seed, WEATHER_STREAM), day));
+    }
+
+    /**
+     * Start the generator of the current thread for an animal about to act.
+     * @param step The step being run.
+     * @param location Where the animal is at the start of its turn.
+     * @return The generator.
+     */
+    public Random startAct(int step, Location location)
+    {
+        return startAct(step, location.getRow(), location.getCol());
+    }
+
+    /**
+     * Start the generator of the current thread for an animal about to act.
+     * @param step The step being run.
+     * @param row The row the animal is in at the start of its turn.
+     * @param col The column it is in.
+     * @return The generator.
+     */
+    public Random startAct(int step, int row, int col)
+    {
+        long key = CounterRandom.combine(CounterRandom.combine(seed, ACT_STREAM), step);
+        long cell = ((long) row << 32) | col;
+        return start(CounterRandom.combine(key, cell));
+    }
+
+    /**
+     * Start the generator of the current thread for a row of the plant
+     * layer (see PlantLayer).
+     * @param step The step being run.
+     * @param row The row.
+     * @return The generator.
+     */
+    public Random startPlants(int step, int row)
+    {
+        long key = CounterRandom.combine(CounterRandom.combine(seed, PLANT_STREAM), step);
+        return start(CounterRandom.combine(key, row));
+    }
+
+    /**
+     * Return a random priority for a claim made in a step, used to
+     * decide between animals going for the same cell. The same claim
+     * in the same step always has the same priority.
+     * @param step The step being run.
+     * @param claim A number identifying the claim within the step.
+     * @return The priority.
+     */
+    public long priority(int step, long claim)
+    {
+        long key = CounterRandom.combine(CounterRandom.combine(seed, PRIORITY_STREAM), step);
+        return CounterRandom.combine(key, claim);
+    }
+
+    /**
+     * Start the generator of the current thread with a key.
+     * @param key The key.
+     * @return The generator.
+     */
+    private static Random start(long key)
+    {
+        CounterRandom rand = current.get();
+        rand.setSeed(key);
+        return rand;
     }
 }
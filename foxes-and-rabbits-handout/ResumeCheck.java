@@ -0,0 +1,158 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks that a simulation resumed from a field file goes on exactly as
+ * the run it was saved from. Two runs are started from the same seed,
+ * each with its field kept in a file. One is saved at a given step,
+ * closed and resumed from its file, and the other runs on uninterrupted;
+ * after that the fields of the two are compared at every step, cell by
+ * cell, down to the age and food level of each animal.
+ *
+ * Run from the command line with the number of steps, the step to save
+ * at and, optionally, the number of threads or "kernel" for the entity
+ * kernel:
+ *     java ResumeCheck 200 45 [threads | kernel]
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class ResumeCheck
+{
+    // The size of the field, and the seed and spawn parameters of the runs.
+    private static final int DEPTH = 80;
+    private static final int WIDTH = 120;
+    private static final long SEED = 1;
+    private static final Double[] SPAWN_PARAMS = {0.1, 0.1, 0.15, 0.15, 0.15, 0.18};
+
+    /**
+     * Run the check from the command line.
+     * @param args The number of steps, the step to save at, and
+     *             optionally the number of threads or "kernel".
+     * @throws IOException If the field files cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 2) {
+            System.out.println("Usage: java ResumeCheck <steps> <save step> [threads | kernel]");
+            return;
+        }
+        int steps = Integer.parseInt(args[0]);
+        int saveStep = Integer.parseInt(args[1]);
+        boolean kernel = args.length > 2 && args[2].equals("kernel");
+        int threads = args.length > 2 && !kernel ? Integer.parseInt(args[2]) : 0;
+        int step = check(steps, saveStep, threads, kernel);
+        if(step < 0) {
+            System.out.println("The resumed run matches the uninterrupted run up to step " + steps);
+        }
+        else {
+            System.out.println("The resumed run differs from the uninterrupted run at step " + step);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run a simulation uninterrupted and saved and resumed, and compare them.
+     * @param steps The number of steps to run.
+     * @param saveStep The step to save and resume at.
+     * @param threads The number of threads, or 0 to run in list order.
+     * @param kernel true to step the animals with the entity kernel.
+     * @return The first step at which the runs differ, or -1 if they
+     *         are the same at every step.
+     * @throws IOException If the field files cannot be written or read.
+     */
+    public static int check(int steps, int saveStep, int threads, boolean kernel)
+        throws IOException
+    {
+        Path whole = Files.createTempFile("whole", ".field");
+        Path saved = Files.createTempFile("saved", ".field");
+        Simulator uninterrupted = null;
+        Simulator resumed = null;
+        try {
+            uninterrupted = start(whole, threads, kernel);
+            Simulator interrupted = start(saved, threads, kernel);
+            for(int step = 1; step <= saveStep; step++) {
+                uninterrupted.simulateOneStep();
+                interrupted.simulateOneStep();
+            }
+            interrupted.saveField();
+            interrupted.close();
+            resumed = Simulator.resume(saved, SPAWN_PARAMS, false);
+            resumed.setThreads(threads);
+            resumed.setEntityKernel(kernel);
+            for(int step = saveStep + 1; step <= steps; step++) {
+                uninterrupted.simulateOneStep();
+                resumed.simulateOneStep();
+                if(!sameField(uninterrupted.getField(), resumed.getField())) {
+                    return step;
+                }
+            }
+            return -1;
+        }
+        finally {
+            if(uninterrupted != null) {
+                uninterrupted.close();
+            }
+            if(resumed != null) {
+                resumed.close();
+            }
+            Files.deleteIfExists(whole);
+            Files.deleteIfExists(saved);
+        }
+    }
+
+    /**
+     * Start a run with its field kept in a file.
+     * @param file The file to keep the field in.
+     * @param threads The number of threads, or 0 to run in list order.
+     * @param kernel true to step the animals with the entity kernel.
+     * @return The simulation, reset and ready to run.
+     * @throws IOException If the file cannot be created.
+     */
+    private static Simulator start(Path file, int threads, boolean kernel) throws IOException
+    {
+        Simulator simulator = new Simulator(file, DEPTH, WIDTH, SPAWN_PARAMS, false);
+        simulator.setSeed(SEED);
+        simulator.reset();
+        simulator.setThreads(threads);
+        simulator.setEntityKernel(kernel);
+        return simulator;
+    }
+
+    /**
+     * Compare two fields of the same size, cell by cell.
+     * @param a One field.
+     * @param b The other field.
+     * @return true if every cell holds an animal of the same species,
+     *         gender, age and food level in both, or is empty in both.
+     */
+    private static boolean sameField(Field a, Field b)
+    {
+        for(int row = 0; row < a.getDepth(); row++) {
+            for(int col = 0; col < a.getWidth(); col++) {
+                Object first = a.getObjectAt(row, col);
+                Object second = b.getObjectAt(row, col);
+                if(first == null || second == null) {
+                    if(first != second) {
+                        return false;
+                    }
+                }
+                else if(!sameAnimal((Animal) first, (Animal) second)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if two animals are of the same species and gender,
+     *         and have the same age and food level.
+     */
+    private static boolean sameAnimal(Animal a, Animal b)
+    {
+        return a.getSpecies() == b.getSpecies() && a.getGender() == b.getGender()
+               && a.getAge() == b.getAge() && a.getFoodLevel() == b.getFoodLevel();
+    }
+}
@@ -1,6 +1,5 @@
 import java.util.List;
 import java.util.Random;
-import java.util.Iterator;
 
 /**
  * A simple model of a rhino.
@@ -13,21 +12,21 @@ public class Rhino extends Animal
 {
     //class variables
 
-    private static final int BREEDING_AGE = 10;
-    private static final int MAX_AGE = 60;
-    private static final double BREEDING_PROBABILITY = 0.4;
-    private static final int MAX_LITTER_SIZE = 2;
-    private static final int PLANT_FOOD_VALUE = 1;
+    static final int BREEDING_AGE = 10;
+    static final int MAX_AGE = 60;
+    static final double BREEDING_PROBABILITY = 0.4;
+    static final int MAX_LITTER_SIZE = 2;
+    static final int PLANT_FOOD_VALUE = 1;
+    // The species a rhino eats.
+    static final int DIET = Species.PLANT.bit();
+    // The hours of the day between which a rhino sleeps.
+    static final int SLEEP_START = 17;
+    static final int SLEEP_END = 22;
 
-    private static final Random rand = Randomizer.getRandom();
     
     // A shared male birth rate for animals of this species
     //private static final float maleBirthRate;
     
-    //instance fields
-    private int age;
-    private int foodLevel;
-
     /**
      * Create a new rhino. A rhino may be created with age
      * zero (a new born) or with a random age.
@@ -45,6 +44,7 @@ public class Rhino extends Animal
         super(field, location, clock);
         age = 0;
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(PLANT_FOOD_VALUE);
         }
@@ -55,6 +55,15 @@ public class Rhino extends Animal
     }
     
         
+    /**
+     * Return the species of a rhino.
+     * @return Species.RHINO
+     */
+    public Species getSpecies()
+    {
+        return Species.RHINO;
+    }
+
     /**
      * This is what the rhino does most of the time - it runs 
      * around. Sometimes it will breed or die of old age.
@@ -69,6 +78,8 @@ public class Rhino extends Animal
             if (shouldSleep()) {
                 // maintain hunger level
                 decrementHunger();
+                // stay where it is while asleep
+                newLocation = getLocation();
             }
             else if (isAffectedByWeather()) {
                 // vulture can't hunt prey in fog
@@ -91,7 +102,7 @@ public class Rhino extends Animal
             }
             else {
                 // Overcrowding.
-                setDead();
+                setDead(Cause.OVERCROWDING);
             }
         }
     }
@@ -104,19 +115,14 @@ public class Rhino extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Plant) {
-                Plant plant = (Plant) animal;
-                if(plant.isAlive()) { 
-                    plant.setDead();
-                    foodLevel = PLANT_FOOD_VALUE;
-                    return where;
-                }
-            }
+        Location here = getLocation();
+        // Only live plants are in the field, so any plant found can be eaten.
+        int plants = field.adjacentSpeciesMask(here, DIET);
+        if(plants != 0) {
+            int direction = field.randomDirection(plants);
+            Location there = field.adjacentLocation(here, direction);
+            eatPlant(there, PLANT_FOOD_VALUE);
+            return there;
         }
         return null;
     }
@@ -129,7 +135,7 @@ public class Rhino extends Animal
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(Cause.AGE);
         }
     }
     
@@ -140,14 +146,20 @@ public class Rhino extends Animal
      */
     private void giveBirth(List<Animal> newRhinos)
     {
-        // Get a list of adjacent free locations.
+        // Use the free adjacent locations, chosen in a random order.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Rhino young = new Rhino(false, field, loc, getClock());
-            newRhinos.add(young);
+        if(births > 0) {
+            int free = field.freeAdjacentMask(here);
+            while(births > 0 && free != 0) {
+                int direction = field.randomDirection(free);
+                free &= ~(1 << direction);
+                Location loc = field.adjacentLocation(here, direction);
+                Rhino young = new Rhino(false, field, loc, getClock());
+                newRhinos.add(young);
+                births--;
+            }
         }
     }
         
@@ -158,6 +170,7 @@ public class Rhino extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
             births = rand.nextInt(MAX_LITTER_SIZE) + 1;
@@ -189,20 +202,7 @@ public class Rhino extends Animal
 
     private boolean isCompatibleAnimal()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Rhino){
-                Rhino rhino = (Rhino) animal;
-                if(rhino.getGender() == Gender.Male){
-                    return true;
-                }
-                }
-            }
-        return false;
+        return getField().adjacentMaleMask(getLocation(), Species.RHINO.bit()) != 0;
     }
     
     /**
@@ -212,7 +212,7 @@ public class Rhino extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(Cause.STARVATION);
         }
     }
 
@@ -227,10 +227,17 @@ public class Rhino extends Animal
      */
     public boolean isAffectedByWeather() 
     {
-        Environment.Weather weather = getClock().getCurrentWeather();
+        return isAffectedBy(getClock().getCurrentWeather());
+    }
 
-        boolean isAffectedByWeather = false;
-        return isAffectedByWeather;
+    /**
+     * Check whether rhinos are affected by the given weather.
+     * @param weather The weather.
+     * @return true if a rhino cannot hunt or graze in that weather.
+     */
+    static boolean isAffectedBy(Environment.Weather weather)
+    {
+        return false;
     }
     
     /**
@@ -243,6 +250,6 @@ public class Rhino extends Animal
         int hourOfDay = getClock().getHourOfDay();
         
         // Lions should sleep between 18:00 and 23:00
-        return hourOfDay >= 17 && hourOfDay <= 22;
+        return hourOfDay >= SLEEP_START && hourOfDay <= SLEEP_END;
     }
 }
\ No newline at end of file
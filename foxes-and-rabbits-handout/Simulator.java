@@ -1,9 +1,10 @@
 import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.awt.Color;
 import java.lang.System;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.management.JMException;
 
 /**
  * A simple predator-prey simulator, based on a rectangular field
@@ -19,6 +20,9 @@ public class Simulator
     private static final int DEFAULT_WIDTH = 120;
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 80;
+    // Fields with more cells than this are stored in chunks, so that
+    // empty regions of the field take no memory.
+    private static final long CHUNKED_FIELD_CELLS = 1L << 24;
     
     // The probability that each species will be created in any given grid position.
     private double VULTURE_CREATION_PROBABILITY;
@@ -32,21 +36,52 @@ public class Simulator
 
     private static final Double[] defaultSpawnParams = {0.1,0.1,0.15,0.15,0.15,0.18};
 
-    // List of animals in the field.
-    private List<Animal> animals;
+    // List of animals in the field. An ArrayList, so that the animals
+    // can be compacted in place by index.
+    private ArrayList<Animal> animals;
+    // The animals born during a step, reused from step to step.
+    private ArrayList<Animal> newAnimals;
     // The current state of the field.
     private Field field;
     // The current step of the simulation.
     private int step;
     private int stepCount;
     private int inputSteps;
-    // A graphical view of the simulation.
-    private SimulatorView view;
+    // The observers following the simulation, such as a graphical view.
+    private List<SimulatorObserver> observers;
+    // Statistics of the field, only counted when asked for.
+    private FieldStats stats;
     // represents the clock (which is tied to weather)...
     // ... All animals hold a reference to this.
     private Environment clock;
-
-    private boolean showView;
+    // The storage of the field if it is kept in a file, otherwise null.
+    private MappedFieldStorage mappedStorage;
+    // Runs the steps on several threads, or null to run them on this one.
+    private TiledStepper stepper;
+    // Runs the steps synchronously, or null to let the animals change
+    // the field as they act.
+    private SynchronousStepper synchronousStepper;
+    // The number of threads steps are run on, 0 for list order.
+    private int threads;
+    // Runs the steps on the animals kept as arrays of numbers, or null
+    // to run them on the animal objects.
+    private EntityKernel kernel;
+    // Whether the field and the animal objects are behind the kernel.
+    private boolean fieldStale;
+    // The plants, if they are kept as a layer of the field rather than
+    // as Plant objects; otherwise null.
+    private PlantLayer plantLayer;
+    // Decides which animals act in each step, leaving sleeping species out.
+    private SleepScheduler scheduler;
+    // Writes the events of each step to a file, or null.
+    private EventLog eventLog;
+    // Records what the engine does in each step, or null.
+    private EngineMetrics metrics;
+    // Whether the metrics were started to look for bursts of predation
+    // to record (see FlightEvents), rather than by startMetrics.
+    private boolean metricsForEvents;
+    // Looks for crashes and bursts to record as flight recorder events.
+    private FlightEvents flightEvents;
     
     /**
      * Construct a simulation field with default size.
@@ -63,9 +98,47 @@ public class Simulator
      */
     public Simulator(int depth, int width, Double[] spawnParams, boolean showGUI)
     {
+        this(createStorage(depth, width), spawnParams, showGUI);
+        reset();
+    }
+
+    /**
+     * Create a simulation field with the given size, whose random
+     * numbers come from the given seed.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed of the random numbers.
+     */
+    public Simulator(int depth, int width, Double[] spawnParams, long seed, boolean showGUI)
+    {
+        this(createStorage(depth, width), spawnParams, showGUI);
+        setSeed(seed);
+        reset();
+    }
 
-        showView = showGUI;
+    /**
+     * Create a simulation field with the given size, kept in a
+     * memory-mapped file so that it can be larger than the heap.
+     * The file is kept, and the simulation can be resumed from it
+     * after saveField has been called.
+     * @param file The file to keep the field in. Any existing file is replaced.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @throws IOException If the file cannot be created.
+     */
+    public Simulator(Path file, int depth, int width, Double[] spawnParams, boolean showGUI)
+        throws IOException
+    {
+        this(MappedFieldStorage.create(file, depth, width), spawnParams, showGUI);
+        reset();
+    }
 
+    /**
+     * Create a simulation around the given storage, without populating it.
+     * @param storage The storage for the field.
+     */
+    private Simulator(FieldStorage storage, Double[] spawnParams, boolean showGUI)
+    {
         VULTURE_CREATION_PROBABILITY = spawnParams[0];
         LION_CREATION_PROBABILITY = spawnParams[1];
 
@@ -74,33 +147,419 @@ public class Simulator
         RHINO_CREATION_PROBABILITY = spawnParams[4];
 
         PLANT_CREATION_PROBABILITY = spawnParams[5];
-
-        if(width <= 0 || depth <= 0) {
-            System.out.println("The dimensions must be greater than zero.");
-            System.out.println("Using default values.");
-            depth = DEFAULT_DEPTH;
-            width = DEFAULT_WIDTH;
-        }
         
         // initialise the shared clock
         clock = new Environment();
+        scheduler = new SleepScheduler();
         
         animals = new ArrayList<>();
-        field = new Field(depth, width);
+        newAnimals = new ArrayList<>();
+        field = new Field(storage);
+        if(storage instanceof MappedFieldStorage) {
+            mappedStorage = (MappedFieldStorage) storage;
+        }
 
-        // Create a view of the state of each location in the field.
-        view = new SimulatorView(depth, width, showGUI);
+        stats = new FieldStats();
+        flightEvents = new FlightEvents();
+        observers = new ArrayList<>();
+        if(showGUI) {
+            // Create a view of the state of each location in the field.
+            // The view is only loaded here, so that runs without it
+            // never load the window system.
+            addObserver(SimulatorView.create(field.getDepth(), field.getWidth()));
+        }
+    }
 
-        view.setColor(Lion.class, Color.RED, "RED");
-        view.setColor(Vulture.class, Color.BLUE, "BLUE"); 
-        
-        view.setColor(Rhino.class, Color.MAGENTA, "MAGENTA");
-        view.setColor(Giraffe.class, Color.CYAN, "CYAN");
-        view.setColor(Baboon.class, Color.GREEN, "GREEN");
+    /**
+     * Add an observer, which is told about every change of state.
+     * @param observer The observer.
+     */
+    public void addObserver(SimulatorObserver observer)
+    {
+        observers.add(observer);
+    }
 
-        view.setColor(Plant.class, Color.BLACK, "BLACK");
-        
-        reset();
+    /**
+     * Remove an observer.
+     * @param observer The observer.
+     */
+    public void removeObserver(SimulatorObserver observer)
+    {
+        observers.remove(observer);
+    }
+
+    /**
+     * Resume a simulation from a field file saved by an earlier run.
+     * The animals and the order they act in, the step, the day, the
+     * hour of the day, the weather, the seed and the sleep of each
+     * species are as they were when the field was last saved. Given
+     * the same choice of threads and entity kernel as the saved run,
+     * the resumed run goes on exactly as the saved run would have
+     * (see ResumeCheck).
+     * @param file The file the field was kept in.
+     * @return The resumed simulation, which keeps using the file.
+     * @throws IOException If the file cannot be opened or is not a field file.
+     */
+    public static Simulator resume(Path file, Double[] spawnParams, boolean showGUI)
+        throws IOException
+    {
+        Simulator simulator = new Simulator(MappedFieldStorage.open(file), spawnParams, showGUI);
+        simulator.restore();
+        return simulator;
+    }
+
+    /**
+     * Save the field to its file, so that the simulation can be
+     * resumed from this step later. Does nothing if the field is
+     * not kept in a file.
+     */
+    public void saveField()
+    {
+        if(mappedStorage != null) {
+            syncField();
+            mappedStorage.flush(step, clock, scheduler, animals);
+        }
+    }
+
+    /**
+     * Finish with the simulation: save the field to its file and close
+     * it, if the field is kept in one, stop any event log and metrics,
+     * and stop the threads of the steppers and the plant layer. The
+     * simulation must not be used afterwards.
+     * @throws IOException If the field file or the event log cannot be
+     *         written or closed.
+     */
+    public void close() throws IOException
+    {
+        stopMetrics();
+        if(stepper != null) {
+            stepper.shutdown();
+            stepper = null;
+        }
+        if(synchronousStepper != null) {
+            synchronousStepper.shutdown();
+            synchronousStepper = null;
+        }
+        if(plantLayer != null) {
+            plantLayer.shutdown();
+        }
+        try {
+            stopEventLog();
+        }
+        finally {
+            if(mappedStorage != null) {
+                syncField();
+                mappedStorage.close(step, clock, scheduler, animals);
+                mappedStorage = null;
+            }
+        }
+    }
+
+    /**
+     * Save the whole state of the simulation to a checkpoint file (see
+     * Checkpoint), from which it can be resumed by loadCheckpoint.
+     * @param file The file to save to. Any existing file is replaced.
+     * @throws IOException If the file cannot be written.
+     */
+    public void saveCheckpoint(Path file) throws IOException
+    {
+        syncField();
+        Checkpoint.write(file, step, clock, scheduler, field, animals);
+    }
+
+    /**
+     * Resume a simulation from a checkpoint saved by saveCheckpoint.
+     * Given the same choice of threads, synchronous steps and entity
+     * kernel as the saved run, the resumed run goes on exactly as the
+     * saved run would have. Plants are kept in a plant layer if they
+     * were when the checkpoint was saved.
+     * @param file The checkpoint file.
+     * @return The resumed simulation.
+     * @throws IOException If the file cannot be read or is not a checkpoint.
+     */
+    public static Simulator loadCheckpoint(Path file, Double[] spawnParams, boolean showGUI)
+        throws IOException
+    {
+        Checkpoint checkpoint = Checkpoint.open(file);
+        try {
+            Simulator simulator = new Simulator(createStorage(checkpoint.getDepth(), checkpoint.getWidth()),
+                                                spawnParams, showGUI);
+            simulator.setSeed(checkpoint.getSeed());
+            simulator.setPlantLayer(checkpoint.hasPlantLayer());
+            checkpoint.readAnimals(simulator.field, simulator.clock, simulator.scheduler,
+                                   simulator.animals);
+            simulator.step = checkpoint.getStep();
+            simulator.stats.reset();
+            simulator.showStatus();
+            return simulator;
+        }
+        finally {
+            checkpoint.close();
+        }
+    }
+
+    /**
+     * Start writing the events of each step to a file (see EventLog),
+     * from which the field at any step can be rebuilt (see EventReplay).
+     * Any log already being written is stopped first.
+     * @param file The file to write. Any existing file is replaced.
+     * @throws IOException If the file cannot be created.
+     * @throws UnsupportedOperationException If the animals are stepped
+     *         by the entity kernel, or the field has a plant layer.
+     */
+    public void startEventLog(Path file) throws IOException
+    {
+        if(kernel != null || plantLayer != null) {
+            throw new UnsupportedOperationException("Events can only be logged for animal objects");
+        }
+        stopEventLog();
+        eventLog = new EventLog(file, field.getDepth(), field.getWidth());
+        eventLog.keyframe(step, clock, animals);
+    }
+
+    /**
+     * Stop writing events, and close the file. Does nothing if no
+     * events are being logged.
+     * @throws IOException If the log could not be written.
+     */
+    public void stopEventLog() throws IOException
+    {
+        if(eventLog != null) {
+            EventLog log = eventLog;
+            eventLog = null;
+            log.close();
+        }
+    }
+
+    /**
+     * Start recording what the engine does in each step: the time it
+     * takes, the time each species spends acting, and the animals that
+     * act, are born, move, die and are eaten (see EngineMetrics). The
+     * metrics are read from the object returned, or over JMX once it
+     * is registered. Any metrics already being recorded are stopped.
+     * @return The metrics.
+     */
+    public EngineMetrics startMetrics()
+    {
+        stopMetrics();
+        metrics = new EngineMetrics();
+        metricsForEvents = false;
+        shareMetrics();
+        return metrics;
+    }
+
+    /**
+     * Stop recording metrics, and remove them from JMX if they were
+     * registered. Does nothing if no metrics are being recorded.
+     */
+    public void stopMetrics()
+    {
+        if(metrics != null) {
+            EngineMetrics stopped = metrics;
+            metrics = null;
+            metricsForEvents = false;
+            shareMetrics();
+            try {
+                stopped.unregister();
+            }
+            catch(JMException e) {
+                System.out.println("Could not unregister the engine metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Give the steppers and the kernel the metrics being recorded, or
+     * null if none are.
+     */
+    private void shareMetrics()
+    {
+        if(stepper != null) {
+            stepper.setMetrics(metrics);
+        }
+        if(synchronousStepper != null) {
+            synchronousStepper.setMetrics(metrics);
+        }
+        if(kernel != null) {
+            kernel.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Set the number of threads each step is run on. The field is
+     * divided into tiles which are run in parallel (see TiledStepper).
+     * The results are the same for any number of threads, but differ
+     * from running the animals in list order.
+     * @param threads The number of threads, or 0 to run the animals
+     *                in list order on this thread.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+        if(stepper != null) {
+            stepper.shutdown();
+            stepper = null;
+        }
+        if(threads > 0) {
+            stepper = new TiledStepper(field, clock.getRandomizer(), scheduler, threads);
+            stepper.setMetrics(metrics);
+        }
+        if(plantLayer != null) {
+            plantLayer.setThreads(threads);
+        }
+        if(synchronousStepper != null) {
+            setSynchronous(true);
+        }
+    }
+
+    /**
+     * Choose whether steps are run synchronously: every animal acts on
+     * the field as it was at the start of the step, and cells that more
+     * than one animal went for are then shared out (see SynchronousStepper).
+     * The results do not depend on the order of the animals, or on the
+     * number of threads.
+     * @param synchronous true to run steps synchronously.
+     * @throws UnsupportedOperationException If the field is kept in a
+     *         file, or has a plant layer.
+     */
+    public void setSynchronous(boolean synchronous)
+    {
+        if(synchronous && mappedStorage != null) {
+            throw new UnsupportedOperationException("Synchronous steps cannot be used with a field kept in a file");
+        }
+        if(synchronous && plantLayer != null) {
+            throw new UnsupportedOperationException("Synchronous steps cannot be used with a plant layer");
+        }
+        if(synchronousStepper != null) {
+            synchronousStepper.shutdown();
+            synchronousStepper = null;
+        }
+        if(synchronous) {
+            synchronousStepper = new SynchronousStepper(field, clock.getRandomizer(), scheduler,
+                                                        Math.max(threads, 1));
+            synchronousStepper.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Choose whether the animals are kept as arrays of numbers and
+     * stepped by an EntityKernel rather than as Animal objects. Steps
+     * are then synchronous, with the same results as setSynchronous,
+     * but allocate nothing and take far less memory per animal. The
+     * observers are shown the cells that changed in each step, and the
+     * animal objects are only brought up to date when they are looked
+     * at: by getField or getPopulationDetails.
+     * @param entityKernel true to step the animals with the kernel.
+     * @throws UnsupportedOperationException If the field has a plant
+     *         layer, or events are being logged.
+     */
+    public void setEntityKernel(boolean entityKernel)
+    {
+        if(entityKernel && plantLayer != null) {
+            throw new UnsupportedOperationException("The entity kernel cannot be used with a plant layer");
+        }
+        if(entityKernel && eventLog != null) {
+            throw new UnsupportedOperationException("The entity kernel cannot be used with an event log");
+        }
+        // The kernel and the animal objects share the sleep scheduler,
+        // so animals asleep on either side catch up when they wake.
+        if(kernel != null) {
+            // Give the animals back to the object model.
+            fieldStale = true;
+            syncField();
+            kernel = null;
+        }
+        if(entityKernel) {
+            kernel = new EntityKernel(new EntityStore(field.getDepth(), field.getWidth()),
+                                      clock.getRandomizer(), scheduler);
+            kernel.getStore().load(field);
+            kernel.setMetrics(metrics);
+            animals.clear();
+        }
+    }
+
+    /**
+     * Choose whether the plants are kept as a layer of the field, a
+     * grid of ages stepped as a cellular automaton (see PlantLayer),
+     * rather than as Plant objects in the list of animals. Plants are
+     * the largest population, so this leaves far fewer objects to step.
+     * The plants already in the field are moved across.
+     * @param layer true to keep the plants in a layer.
+     * @throws UnsupportedOperationException If the field is kept in a
+     *         file, steps are synchronous, or events are being logged.
+     */
+    public void setPlantLayer(boolean layer)
+    {
+        if(layer == (plantLayer != null)) {
+            return;
+        }
+        if(layer) {
+            if(mappedStorage != null || synchronousStepper != null || kernel != null
+               || eventLog != null) {
+                throw new UnsupportedOperationException("The plant layer cannot be used with this simulation");
+            }
+            plantLayer = new PlantLayer(field.getDepth(), field.getWidth());
+            plantLayer.setThreads(threads);
+            int survivors = 0;
+            for(Animal animal : animals) {
+                if(animal instanceof Plant) {
+                    Location location = animal.getLocation();
+                    plantLayer.plant(location.getRow(), location.getCol(), animal.getAge());
+                    animal.setDead();
+                }
+                else {
+                    animals.set(survivors++, animal);
+                }
+            }
+            animals.subList(survivors, animals.size()).clear();
+            field.setPlantLayer(plantLayer);
+        }
+        else {
+            PlantLayer plants = plantLayer;
+            plantLayer = null;
+            field.setPlantLayer(null);
+            plants.shutdown();
+            for(int row = 0; row < field.getDepth(); row++) {
+                for(int col = plants.nextPlantColumn(row, 0); col < field.getWidth(); col = plants.nextPlantColumn(row, col + 1)) {
+                    Plant plant = new Plant(false, field, new Location(row, col), clock);
+                    plant.restoreState(plants.getAge(row, col), 0, plant.getGender());
+                    animals.add(plant);
+                }
+            }
+        }
+        stats.reset();
+    }
+
+    /**
+     * Set the seed of the random numbers of the simulation. Runs
+     * with the same seed, reset before they start, are the same.
+     * @param seed The seed.
+     */
+    public void setSeed(long seed)
+    {
+        clock.getRandomizer().setSeed(seed);
+    }
+
+    /**
+     * Choose the storage for a field of the given size.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @return Storage for the field.
+     */
+    private static FieldStorage createStorage(int depth, int width)
+    {
+        if(width <= 0 || depth <= 0) {
+            System.out.println("The dimensions must be greater than zero.");
+            System.out.println("Using default values.");
+            depth = DEFAULT_DEPTH;
+            width = DEFAULT_WIDTH;
+        }
+        if((long) depth * width > CHUNKED_FIELD_CELLS) {
+            return new ChunkedFieldStorage(depth, width);
+        }
+        else {
+            return new PackedFieldStorage(depth, width);
+        }
     }
 
     /**
@@ -121,17 +580,13 @@ public class Simulator
     public void simulate(int numSteps)
     {
         int step = 1;
-        while(step <= numSteps && view.isViable(field)) {
-            view.updateInternalField(field);
-            while(view.getIfPaused() && view.isViable(field)){
-                view.updateInternalField(field);
-                if(view.getSingleStep()){
-                    simulateOneStep();
-                    view.negateSingleStep();
-                }
-            stepCount++;
+        stepCount = 0;
+        while(step <= numSteps && isViable()) {
+            for(SimulatorObserver observer : observers) {
+                observer.beforeStep(this);
             }
             simulateOneStep();
+            stepCount++;
             //delay(120);   // uncomment this to run more slowly
             step++;
         }
@@ -145,23 +600,160 @@ public class Simulator
      */
     public void simulateOneStep()
     {
+        // Flight recorder events are only created while being recorded.
+        FlightEvents.Step stepEvent = null;
+        if(FlightEvents.recordsSteps()) {
+            stepEvent = new FlightEvents.Step();
+            stepEvent.begin();
+        }
+        boolean recordPhases = FlightEvents.recordsPhases();
+        watchPredation();
+        long start = metrics != null ? System.nanoTime() : 0;
         step++;
         clock.incrementHourOfDay();
+        scheduler.startStep(clock.getHourOfDay());
         
-        List<Animal> newAnimals = new ArrayList<>();        
-        // Let all animals "act"
-        for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
-            Animal animal = it.next();
-            animal.act(newAnimals);
-            if(! animal.isAlive()) {
-                it.remove();
+        // The animals acting, and in list order the newborn being added.
+        FlightEvents.Phase phase = beginPhase(recordPhases);
+        String phaseName = "act";
+        if(kernel != null) {
+            kernel.step(step, clock);
+            fieldStale = true;
+        }
+        else if(synchronousStepper != null) {
+            synchronousStepper.step(animals, step);
+        }
+        else if(stepper != null) {
+            stepper.step(animals, step);
+        }
+        else {
+            Randomizer randomizer = clock.getRandomizer();
+            EngineMetrics.Recorder recorder = metrics != null ? metrics.bind() : null;
+            newAnimals.clear();
+            // Let all animals "act". The survivors are moved down over
+            // the dead as they go, rather than removing each dead animal
+            // from the middle of the list.
+            int size = animals.size();
+            int survivors = 0;
+            for(int i = 0; i < size; i++) {
+                Animal animal = animals.get(i);
+                if(animal.isAlive() && scheduler.readyToAct(animal)) {
+                    randomizer.startAct(step, animal.getLocation());
+                    if(recorder != null) {
+                        recorder.act(animal, newAnimals);
+                    }
+                    else {
+                        animal.act(newAnimals);
+                    }
+                }
+                if(animal.isAlive()) {
+                    animals.set(survivors++, animal);
+                }
             }
+            animals.subList(survivors, size).clear();
+            if(recorder != null) {
+                EngineMetrics.unbind();
+            }
+            phase = endPhase(phase, "act");
+            phaseName = "addAll";
+                   
+            // Add all newly born species to the main lists.
+            animals.addAll(newAnimals);
+            newAnimals.clear();
+        }
+        phase = endPhase(phase, phaseName);
+        if(eventLog != null) {
+            eventLog.afterStep(step, clock, animals);
+            phase = endPhase(phase, "eventLog");
+        }
+        if(plantLayer != null) {
+            plantLayer.step(field, clock.getRandomizer(), step);
+            phase = endPhase(phase, "plantLayer");
+        }
+        if(metrics != null) {
+            metrics.endStep(step, System.nanoTime() - start);
+            if(FlightEvents.watchesPredation()) {
+                flightEvents.checkPredation(step, metrics.getLastStep());
+            }
+        }
+        flightEvents.checkPopulation(step, this::populationOf);
+
+        stats.reset();
+        showStatus();
+        endPhase(phase, "observers");
+        if(stepEvent != null && stepEvent.shouldCommit()) {
+            stepEvent.step = step;
+            stepEvent.animals = animals.size();
+            stepEvent.commit();
+        }
+    }
+
+    /**
+     * Begin a phase of a step, if phases are being recorded as flight
+     * recorder events (see FlightEvents).
+     * @param record true if phases are being recorded.
+     * @return The phase, begun, or null if phases are not recorded.
+     */
+    private static FlightEvents.Phase beginPhase(boolean record)
+    {
+        if(!record) {
+            return null;
+        }
+        FlightEvents.Phase phase = new FlightEvents.Phase();
+        phase.begin();
+        return phase;
+    }
+
+    /**
+     * End a phase of a step, recording it, and begin the next.
+     * @param phase The phase that has ended, or null if phases are
+     *              not being recorded.
+     * @param name The name of the phase.
+     * @return The next phase, begun, or null if phases are not recorded.
+     */
+    private FlightEvents.Phase endPhase(FlightEvents.Phase phase, String name)
+    {
+        if(phase == null) {
+            return null;
+        }
+        phase.end();
+        if(phase.shouldCommit()) {
+            phase.step = step;
+            phase.phase = name;
+            phase.commit();
+        }
+        return beginPhase(true);
+    }
+
+    /**
+     * Run metrics while bursts of predation are being recorded as
+     * flight recorder events, if none have been started, as the
+     * predations are counted by the metrics.
+     */
+    private void watchPredation()
+    {
+        boolean bursts = FlightEvents.watchesPredation();
+        if(bursts && metrics == null) {
+            startMetrics();
+            metricsForEvents = true;
+        }
+        else if(!bursts && metricsForEvents) {
+            stopMetrics();
         }
-               
-        // Add all newly born species to the main lists.
-        animals.addAll(newAnimals);
+    }
 
-        view.showStatus(step, field);
+    /**
+     * Return the number of a species in the field, or in the kernel if
+     * the field is behind it. Must not be called during a step.
+     * @param code The species code.
+     * @return The population of the species.
+     */
+    private int populationOf(int code)
+    {
+        if(kernel != null) {
+            return kernel.getStore().size(code);
+        }
+        return field.getCensus().getCount(code);
     }
         
     /**
@@ -171,58 +763,241 @@ public class Simulator
     {
         step = 0;
         animals.clear();
+        clock.reset();
+        scheduler.reset();
         populate();
+        if(kernel != null) {
+            kernel.getStore().load(field);
+            animals.clear();
+            fieldStale = false;
+        }
+        if(eventLog != null) {
+            eventLog.keyframe(step, clock, animals);
+        }
+        flightEvents.reset();
         
+        stats.reset();
         // Show the starting state in the view.
-        view.showStatus(step, field);
+        showStatus();
     }
     
     /**
-     * Randomly populate the field with all species
+     * Randomly populate the field with all species.
+     * Each location is given at most one species: the species are tried
+     * in turn, each with its creation probability, until one is chosen.
+     * Rather than trying every location, the length of each run of
+     * empty locations is drawn directly, so sparsely populated fields
+     * are filled in time proportional to the number of animals.
      */
     private void populate()
     {
-        Random rand = Randomizer.getRandom();
+        Random rand = clock.getRandomizer().startPopulate();
         field.clear();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                if(rand.nextDouble() <= VULTURE_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Vulture vulture = new Vulture(true, field, location, clock);
-                    animals.add(vulture);
-                }
-                else if(rand.nextDouble() <= LION_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Lion lion = new Lion(true, field, location, clock);
-                    animals.add(lion);
-                }
-                else if (rand.nextDouble() <= GIRAFFE_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Giraffe giraffe = new Giraffe(true, field, location, clock);
-                    animals.add(giraffe);
-                }
-                else if(rand.nextDouble() <= BABOON_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Baboon baboon = new Baboon(true, field, location, clock);
-                    animals.add(baboon);
-                }
-                else if(rand.nextDouble() <= RHINO_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Rhino rhino = new Rhino(true, field, location, clock);
-                    animals.add(rhino);
-                }
-                else if(rand.nextDouble() <= PLANT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Plant plant = new Plant(true, field, location, clock);
-                    animals.add(plant);
+        double[] tried = { VULTURE_CREATION_PROBABILITY, LION_CREATION_PROBABILITY,
+                           GIRAFFE_CREATION_PROBABILITY, BABOON_CREATION_PROBABILITY,
+                           RHINO_CREATION_PROBABILITY, PLANT_CREATION_PROBABILITY };
+        // The chance of a location getting each species, and of it getting none.
+        double[] chance = new double[tried.length];
+        double none = 1.0;
+        for(int i = 0; i < tried.length; i++) {
+            chance[i] = none * Math.min(tried[i], 1.0);
+            none -= chance[i];
+        }
+        double any = 1.0 - none;
+        if(any <= 0) {
+            return;
+        }
+
+        int width = field.getWidth();
+        long cells = (long) field.getDepth() * width;
+        long cell = emptyRun(rand, any, cells);
+        while(cell < cells) {
+            // Choose the species, given that the location is not empty.
+            double pick = rand.nextDouble() * any;
+            int species = 0;
+            while(species < chance.length - 1 && pick >= chance[species]) {
+                pick -= chance[species];
+                species++;
+            }
+            int row = (int) (cell / width);
+            int col = (int) (cell % width);
+            if(plantLayer != null && species == tried.length - 1) {
+                plantLayer.plant(row, col, rand.nextInt(Plant.MAX_AGE));
+            }
+            else {
+                animals.add(createAnimal(species, new Location(row, col)));
+            }
+            cell += 1 + emptyRun(rand, any, cells - cell - 1);
+        }
+    }
+
+    /**
+     * Draw the number of empty locations before the next occupied one,
+     * when each location is occupied with the given probability.
+     * @param rand The random generator to use.
+     * @param any The probability of a location being occupied.
+     * @param limit The number of locations left.
+     * @return The length of the run of empty locations, at most limit.
+     */
+    private static long emptyRun(Random rand, double any, long limit)
+    {
+        if(any >= 1.0) {
+            return 0;
+        }
+        double run = Math.floor(Math.log(1.0 - rand.nextDouble()) / Math.log(1.0 - any));
+        return run < limit ? (long) run : limit;
+    }
+
+    /**
+     * Recreate the animals recorded in the field file, in the order
+     * they acted in, and the step, environment and sleep saved with them.
+     */
+    private void restore()
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        // The animals whose places were saved, by place, and after them
+        // any others in the order of the cells.
+        Animal[] ordered = new Animal[mappedStorage.getSavedAnimals()];
+        List<Animal> unordered = new ArrayList<>();
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                int code = mappedStorage.getSavedSpeciesCode(row, col);
+                if(code != Species.EMPTY_CODE) {
+                    // Read the record before the new animal overwrites it.
+                    int age = mappedStorage.getSavedAge(row, col);
+                    int foodLevel = mappedStorage.getSavedFoodLevel(row, col);
+                    Animal.Gender gender = mappedStorage.getSavedGender(row, col);
+                    int place = mappedStorage.getSavedOrder(row, col);
+                    Animal animal = Species.fromCode(code).create(false, field, new Location(row, col), clock);
+                    animal.restoreState(age, foodLevel, gender);
+                    if(place >= 1 && place <= ordered.length && ordered[place - 1] == null) {
+                        ordered[place - 1] = animal;
+                    }
+                    else {
+                        unordered.add(animal);
+                    }
                 }
-                // else leave the location empty.
             }
         }
+        for(Animal animal : ordered) {
+            if(animal != null) {
+                animals.add(animal);
+            }
+        }
+        animals.addAll(unordered);
+        step = mappedStorage.getSavedStep();
+        setSeed(mappedStorage.getSavedSeed());
+        clock.restore(mappedStorage.getSavedHourOfDay(), mappedStorage.getSavedDay(),
+                      mappedStorage.getSavedWeather());
+        scheduler.restore(mappedStorage.getSavedSlept());
+        stats.reset();
+        showStatus();
+    }
+
+    /**
+     * Create an animal of one of the species, in the order used by populate.
+     * @param species The index of the species in that order.
+     * @param location Where to place the animal.
+     * @return The new animal.
+     */
+    private Animal createAnimal(int species, Location location)
+    {
+        if(species == 0) {
+            return new Vulture(true, field, location, clock);
+        }
+        else if(species == 1) {
+            return new Lion(true, field, location, clock);
+        }
+        else if(species == 2) {
+            return new Giraffe(true, field, location, clock);
+        }
+        else if(species == 3) {
+            return new Baboon(true, field, location, clock);
+        }
+        else if(species == 4) {
+            return new Rhino(true, field, location, clock);
+        }
+        else {
+            return new Plant(true, field, location, clock);
+        }
     }
     
+    /**
+     * Return whether the last long run ran for all of its steps and
+     * the simulation is still viable.
+     * @return true if the run completed and is still viable.
+     */
     public boolean isSimValuesViable(){
-        return (view.isViable(field) && (stepCount == inputSteps));
+        return (isViable() && (stepCount == inputSteps));
+    }
+
+    /**
+     * Determine whether the simulation should continue to run.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable()
+    {
+        if(fieldStale) {
+            return kernel.getStore().getSpeciesPresent() > 1;
+        }
+        return stats.isViable(field);
+    }
+
+    /**
+     * Get details of what is in the field. The field is only counted
+     * when this is asked for.
+     * @return A string describing what is in the field.
+     */
+    public String getPopulationDetails()
+    {
+        syncField();
+        return stats.getPopulationDetails(field);
+    }
+
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The field of the simulation.
+     */
+    public Field getField()
+    {
+        syncField();
+        return field;
+    }
+
+    /**
+     * Tell the observers about the current state of the field.
+     */
+    private void showStatus()
+    {
+        // The observers look at where the animals are, so only the
+        // cells that changed are brought up to date for them.
+        if(fieldStale && !observers.isEmpty()) {
+            kernel.getStore().showIn(field, clock);
+        }
+        for(SimulatorObserver observer : observers) {
+            observer.showStatus(step, field);
+        }
+    }
+
+    /**
+     * Bring the field and the animal objects up to date with the
+     * animals stepped by the kernel.
+     */
+    private void syncField()
+    {
+        if(fieldStale) {
+            animals.clear();
+            kernel.getStore().copyTo(field, clock, animals);
+            fieldStale = false;
+        }
     }
 
     /**
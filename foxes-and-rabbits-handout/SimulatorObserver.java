@@ -0,0 +1,28 @@
+/**
+ * Something that follows a running simulation, such as a view of it.
+ * The simulation tells its observers about every change of state;
+ * without observers it does no drawing or counting of its own.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public interface SimulatorObserver
+{
+    /**
+     * Called after the field has changed: after every step, and after
+     * the simulation has been reset or resumed.
+     * @param step The step the simulation is at.
+     * @param field The field, which must not be changed.
+     */
+    void showStatus(int step, Field field);
+
+    /**
+     * Called before each step of a run of several steps. An observer
+     * may hold the run here, e.g. while the user has paused it, and
+     * may run single steps of the simulation while it does.
+     * @param simulator The simulation being run.
+     */
+    default void beforeStep(Simulator simulator)
+    {
+    }
+}
@@ -14,7 +14,7 @@ import java.util.Map;
  * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
  * @version 2016.02.29
  */
-public class SimulatorView extends JFrame
+public class SimulatorView extends JFrame implements SimulatorObserver
 {
     // Colors used for empty locations.
     private static final Color EMPTY_COLOR = Color.white;
@@ -27,8 +27,9 @@ public class SimulatorView extends JFrame
     private JLabel stepLabel, population, infoLabel;
     private FieldView fieldView;
 
-    private boolean paused;
-    private boolean singleSimStep;
+    // Set by the buttons and read by the thread running the simulation.
+    private volatile boolean paused;
+    private volatile boolean singleSimStep;
 
     private JButton stepButton, pauseButton, continueButton, exitButton, statsButton;
     private JPanel optionsPanel;
@@ -41,6 +42,10 @@ public class SimulatorView extends JFrame
     private FieldStats stats;
 
     private Field internalField;
+    // The changes of the field last drawn, and the stamp for the
+    // changes made since it was drawn.
+    private DirtyTiles drawn;
+    private int drawnSince;
 
     /**
      * Create a view of the given width and height.
@@ -120,6 +125,43 @@ public class SimulatorView extends JFrame
         setVisible(showGUI);
     }
     
+    /**
+     * Create a view of a simulation, showing each species in its
+     * usual colour.
+     * @param height The simulation's height.
+     * @param width  The simulation's width.
+     * @return The view.
+     */
+    public static SimulatorObserver create(int height, int width)
+    {
+        SimulatorView view = new SimulatorView(height, width, true);
+
+        view.setColor(Lion.class, Color.RED, "RED");
+        view.setColor(Vulture.class, Color.BLUE, "BLUE"); 
+        
+        view.setColor(Rhino.class, Color.MAGENTA, "MAGENTA");
+        view.setColor(Giraffe.class, Color.CYAN, "CYAN");
+        view.setColor(Baboon.class, Color.GREEN, "GREEN");
+
+        view.setColor(Plant.class, Color.BLACK, "BLACK");
+        return view;
+    }
+
+    /**
+     * Hold the simulation while it is paused, running a single step
+     * whenever "step" is pressed.
+     * @param simulator The simulation being run.
+     */
+    public void beforeStep(Simulator simulator)
+    {
+        while(paused && simulator.isViable()) {
+            if(singleSimStep) {
+                simulator.simulateOneStep();
+                singleSimStep = false;
+            }
+        }
+    }
+    
     private void stepSim(){
         singleSimStep = true;
     }
@@ -235,46 +277,53 @@ public class SimulatorView extends JFrame
             setVisible(true);
         }
             
+        internalField = field;
         stepLabel.setText(STEP_PREFIX + step);
         stats.reset();
         
-        fieldView.preparePaint();
-
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, getColor(animal.getClass()));
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
+        DirtyTiles changes = field.getChanges();
+        if(fieldView.preparePaint() || changes != drawn) {
+            // A new image, or a new field: draw all of it.
+            drawn = changes;
+            drawnSince = 0;
+        }
+        // Only the tiles that have changed since the last time are drawn again.
+        for(int tileRow = 0; tileRow < changes.getTileRows(); tileRow++) {
+            for(int tileCol = 0; tileCol < changes.getTileCols(); tileCol++) {
+                if(changes.hasChanged(tileRow, tileCol, drawnSince)) {
+                    drawTile(field, tileRow, tileCol);
                 }
             }
         }
-        stats.countFinished();
+        drawnSince = changes.advance();
 
         population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
         fieldView.repaint();
     }
 
     /**
-     * Determine whether the simulation should continue to run.
-     * @return true If there is more than one species alive.
+     * Draw the cells of one tile of the field.
+     * @param field The field being shown.
+     * @param tileRow The row of the tile.
+     * @param tileCol The column of the tile.
      */
-    public boolean isViable(Field field)
+    private void drawTile(Field field, int tileRow, int tileCol)
     {
-        return stats.isViable(field);
+        int endRow = Math.min(field.getDepth(), (tileRow + 1) * DirtyTiles.TILE_ROWS);
+        int endCol = Math.min(field.getWidth(), (tileCol + 1) * DirtyTiles.TILE_COLS);
+        for(int row = tileRow * DirtyTiles.TILE_ROWS; row < endRow; row++) {
+            for(int col = tileCol * DirtyTiles.TILE_COLS; col < endCol; col++) {
+                int code = field.getSpeciesCodeAt(row, col);
+                if(code != Species.EMPTY_CODE) {
+                    fieldView.drawMark(col, row, getColor(FieldStats.classOf(field, row, col, code)));
+                }
+                else {
+                    fieldView.drawMark(col, row, EMPTY_COLOR);
+                }
+            }
+        }
     }
 
-    /**
-     * Update an internal field to a new field
-     * @param field to replace internal field
-     */
-    public void updateInternalField(Field field){
-        internalField = field;
-    }
-    
     /**
      * Provide a graphical view of a rectangular field. This is 
      * a nested class (a class defined inside a class) which
@@ -315,8 +364,9 @@ public class SimulatorView extends JFrame
         /**
          * Prepare for a new round of painting. Since the component
          * may be resized, compute the scaling factor again.
+         * @return true if a new, blank image is to be painted.
          */
-        public void preparePaint()
+        public boolean preparePaint()
         {
             if(! size.equals(getSize())) {  // if the size has changed...
                 size = getSize();
@@ -331,7 +381,9 @@ public class SimulatorView extends JFrame
                 if(yScale < 1) {
                     yScale = GRID_VIEW_SCALING_FACTOR;
                 }
+                return true;
             }
+            return false;
         }
         
         /**
@@ -0,0 +1,123 @@
+/**
+ * Decides which animals are dispatched to act in a step. Animals sleep
+ * through the hours of their species (see Species.sleepsAt) and do
+ * nothing while asleep but get older, so rather than calling act on
+ * every sleeping animal each step the species as a whole is left
+ * dormant. The steps each species has slept through are counted, and
+ * its animals catch up on them in one go (see Animal.sleepFor) when
+ * they are next dispatched.
+ *
+ * An animal that dies of age or hunger while asleep therefore only
+ * leaves the field when its species wakes.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class SleepScheduler
+{
+    // Whether each species is asleep in the current step, indexed by code - 1.
+    private boolean[] dormant;
+    // The steps each species has slept through so far in its current sleep.
+    private int[] slept;
+    // The steps each species catches up on in the current step.
+    private int[] catchUp;
+
+    /**
+     * Create a scheduler with every species awake.
+     */
+    public SleepScheduler()
+    {
+        dormant = new boolean[Species.COUNT];
+        slept = new int[Species.COUNT];
+        catchUp = new int[Species.COUNT];
+    }
+
+    /**
+     * Forget any sleep in progress, e.g. when the simulation is reset.
+     */
+    public void reset()
+    {
+        for(int index = 0; index < Species.COUNT; index++) {
+            dormant[index] = false;
+            slept[index] = 0;
+            catchUp[index] = 0;
+        }
+    }
+
+    /**
+     * Set the steps each species has slept through to previously saved
+     * values, e.g. when a simulation is resumed from a checkpoint or a
+     * field file.
+     * @param slept The steps slept through, indexed by code - 1.
+     */
+    public void restore(int[] slept)
+    {
+        reset();
+        System.arraycopy(slept, 0, this.slept, 0, Species.COUNT);
+    }
+
+    /**
+     * Work out which species sleep in a step. Must be called once at
+     * the start of every step, before any animal is dispatched.
+     * @param hour The hour of the day of the step.
+     */
+    public void startStep(int hour)
+    {
+        for(int code = 1; code <= Species.COUNT; code++) {
+            int index = code - 1;
+            dormant[index] = Species.fromCode(code).sleepsAt(hour);
+            if(dormant[index]) {
+                slept[index]++;
+                catchUp[index] = 0;
+            }
+            else {
+                catchUp[index] = slept[index];
+                slept[index] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return true if a species sleeps through the current step.
+     */
+    public boolean isDormant(int code)
+    {
+        return dormant[code - 1];
+    }
+
+    /**
+     * @return The number of steps a species catches up on in the current
+     *         step: those it slept through just before it.
+     */
+    public int getCatchUp(int code)
+    {
+        return catchUp[code - 1];
+    }
+
+    /**
+     * @return The steps a species has slept through so far in its
+     *         current sleep, not yet caught up on.
+     */
+    public int getSlept(int code)
+    {
+        return slept[code - 1];
+    }
+
+    /**
+     * Get an animal ready to act in the current step.
+     * @param animal A living animal.
+     * @return true if the animal should act: it is awake and did not
+     *         die in its sleep.
+     */
+    public boolean readyToAct(Animal animal)
+    {
+        int index = animal.getSpecies().ordinal();
+        if(dormant[index]) {
+            return false;
+        }
+        if(catchUp[index] > 0) {
+            animal.sleepFor(catchUp[index]);
+        }
+        return animal.isAlive();
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * The species that can take part in the simulation.
+ * Each species has a small dense code which is what the field
+ * stores for every occupied cell, so that scans over the field
+ * can work on primitive values rather than on object references.
+ * Code 0 is reserved for an empty cell.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public enum Species
+{
+    LION(Lion.class),
+    VULTURE(Vulture.class),
+    RHINO(Rhino.class),
+    GIRAFFE(Giraffe.class),
+    BABOON(Baboon.class),
+    PLANT(Plant.class);
+
+    // The code stored for an empty cell.
+    public static final int EMPTY_CODE = 0;
+    // The code stored for an occupant that is not one of the species.
+    public static final int UNKNOWN_CODE = 7;
+    // The number of species.
+    public static final int COUNT = 6;
+
+    // All species, indexed by code - 1.
+    private static final Species[] BY_CODE = values();
+
+    // The class modelling this species.
+    private final Class<? extends Animal> animalClass;
+
+    /**
+     * Create a species modelled by the given class.
+     * @param animalClass The class modelling the species.
+     */
+    private Species(Class<? extends Animal> animalClass)
+    {
+        this.animalClass = animalClass;
+    }
+
+    /**
+     * @return The dense code of this species (1 to COUNT).
+     */
+    public int getCode()
+    {
+        return ordinal() + 1;
+    }
+
+    /**
+     * Return the bit of this species in a set of species. Sets of
+     * species are or'ed together bits, e.g. the diet of a predator.
+     * @return 1 shifted left by the code of this species.
+     */
+    public int bit()
+    {
+        return 1 << getCode();
+    }
+
+    /**
+     * @return The class modelling this species.
+     */
+    public Class<? extends Animal> getAnimalClass()
+    {
+        return animalClass;
+    }
+
+    /**
+     * Create a new animal of this species.
+     * @param randomAge If true, the animal will have a random age.
+     * @param field The field the animal occupies.
+     * @param location The location within the field.
+     * @param clock The shared clock environment for all animals.
+     * @return The new animal.
+     */
+    public Animal create(boolean randomAge, Field field, Location location, Environment clock)
+    {
+        switch(this) {
+            case LION:
+                return new Lion(randomAge, field, location, clock);
+            case VULTURE:
+                return new Vulture(randomAge, field, location, clock);
+            case RHINO:
+                return new Rhino(randomAge, field, location, clock);
+            case GIRAFFE:
+                return new Giraffe(randomAge, field, location, clock);
+            case BABOON:
+                return new Baboon(randomAge, field, location, clock);
+            default:
+                return new Plant(randomAge, field, location, clock);
+        }
+    }
+
+    /**
+     * Return whether animals of this species sleep at an hour of the day.
+     * @param hour The hour of the day.
+     * @return true if they sleep; plants never do.
+     */
+    public boolean sleepsAt(int hour)
+    {
+        switch(this) {
+            case LION:
+                return hour >= Lion.SLEEP_START && hour <= Lion.SLEEP_END;
+            case VULTURE:
+                return hour >= Vulture.SLEEP_START && hour <= Vulture.SLEEP_END;
+            case RHINO:
+                return hour >= Rhino.SLEEP_START && hour <= Rhino.SLEEP_END;
+            case GIRAFFE:
+                return hour >= Giraffe.SLEEP_START && hour <= Giraffe.SLEEP_END;
+            case BABOON:
+                return hour >= Baboon.SLEEP_START && hour <= Baboon.SLEEP_END;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return The age to which animals of this species can live.
+     */
+    public int getMaxAge()
+    {
+        switch(this) {
+            case LION:
+                return Lion.MAX_AGE;
+            case VULTURE:
+                return Vulture.MAX_AGE;
+            case RHINO:
+                return Rhino.MAX_AGE;
+            case GIRAFFE:
+                return Giraffe.MAX_AGE;
+            case BABOON:
+                return Baboon.MAX_AGE;
+            default:
+                return Plant.MAX_AGE;
+        }
+    }
+
+    /**
+     * Return the species with the given code.
+     * @param code A species code.
+     * @return The species, or null for the empty and unknown codes.
+     */
+    public static Species fromCode(int code)
+    {
+        if(code >= 1 && code <= COUNT) {
+            return BY_CODE[code - 1];
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Return the species modelled by the given class.
+     * @param animalClass A class of simulation participant.
+     * @return The species, or null if the class does not model one.
+     */
+    public static Species forClass(Class<?> animalClass)
+    {
+        for(Species species : BY_CODE) {
+            if(species.animalClass == animalClass) {
+                return species;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the code to be stored in the field for an occupant.
+     * @param occupant The occupant of a cell, may be null.
+     * @return The species code of the occupant.
+     */
+    public static int codeOf(Object occupant)
+    {
+        if(occupant == null) {
+            return EMPTY_CODE;
+        }
+        else if(occupant instanceof Animal) {
+            return ((Animal) occupant).getSpecies().getCode();
+        }
+        else {
+            return UNKNOWN_CODE;
+        }
+    }
+}
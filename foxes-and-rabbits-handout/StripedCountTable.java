@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count table that many threads can count into at once, in the
+ * manner of java.util.concurrent.atomic.LongAdder. The table has
+ * several stripes, each a full set of counts on cache lines of its
+ * own. Threads are numbered as they first count, and each counts into
+ * the stripe of its number, so threads only share a stripe when there
+ * are more of them than stripes. Reading a count adds up its
+ * stripes, so reads are slower than counts and are best left until
+ * the counting threads have finished, e.g. at the end of a step.
+ *
+ * Unlike a PlainCountTable, the table does not grow.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class StripedCountTable implements CountTable
+{
+    // The number of longs in a cache line.
+    private static final int LINE = 8;
+    // The number given to the next thread to count.
+    private static final AtomicInteger nextThread = new AtomicInteger();
+    // The number of each thread that has counted.
+    private static final ThreadLocal<Integer> threadNumber =
+        ThreadLocal.withInitial(nextThread::getAndIncrement);
+
+    // The number of ids.
+    private int size;
+    // The distance between the stripes, a whole number of cache lines
+    // with one line to spare between the counts of two stripes.
+    private int stride;
+    // The stripes - 1; the number of stripes is a power of two.
+    private int mask;
+    // The counts of every stripe, stripe after stripe.
+    private AtomicLongArray cells;
+
+    /**
+     * Create a table with every count zero, with a stripe for each
+     * processor.
+     * @param size The number of ids, from 0 to size - 1.
+     */
+    public StripedCountTable(int size)
+    {
+        this(size, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a table with every count zero.
+     * @param size The number of ids, from 0 to size - 1.
+     * @param threads The number of threads expected to count at once.
+     */
+    public StripedCountTable(int size, int threads)
+    {
+        this.size = size;
+        stride = ((size + LINE - 1) / LINE + 1) * LINE;
+        int stripes = Integer.highestOneBit(Math.max(threads, 1) * 2 - 1);
+        mask = stripes - 1;
+        cells = new AtomicLongArray(stripes * stride);
+    }
+
+    /**
+     * @return The number of ids of the table.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public void add(int id, long amount)
+    {
+        if(id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No count for id " + id);
+        }
+        cells.getAndAdd(stripe() * stride + id, amount);
+    }
+
+    public long get(int id)
+    {
+        long count = 0;
+        for(int base = 0; base < cells.length(); base += stride) {
+            count += cells.get(base + id);
+        }
+        return count;
+    }
+
+    /**
+     * Set the count of an id to zero. Counts made by other threads at
+     * the same time may be lost.
+     * @param id The id.
+     */
+    public void reset(int id)
+    {
+        for(int base = 0; base < cells.length(); base += stride) {
+            cells.set(base + id, 0);
+        }
+    }
+
+    /**
+     * Set every count to zero. Counts made by other threads at the
+     * same time may be lost.
+     */
+    public void reset()
+    {
+        for(int index = 0; index < cells.length(); index++) {
+            cells.set(index, 0);
+        }
+    }
+
+    /**
+     * @return The stripe the current thread counts into.
+     */
+    private int stripe()
+    {
+        return threadNumber.get() & mask;
+    }
+}
@@ -0,0 +1,392 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs steps of the simulation synchronously: every animal acts on the
+ * field as it was at the start of the step, whatever order the animals
+ * are run in. The field is frozen while the animals act, so their moves,
+ * meals and births are only remembered. Cells that more than one animal
+ * went for are then given to one of them, chosen by a random priority
+ * that depends only on the seed, the step and where the animals came
+ * from. The results are written to a second, back storage which is then
+ * swapped with the front storage of the field.
+ *
+ * An animal that loses a cell stays where it was, and a predator that
+ * loses its prey goes without food. A newly born animal that loses its
+ * cell is not born.
+ *
+ * As the field does not change while the animals act, they can act on
+ * any number of threads. They are divided into fixed blocks, so the
+ * results are the same whatever the number of threads.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class SynchronousStepper
+{
+    // The number of animals in a block.
+    private static final int BLOCK_SIZE = 4096;
+
+    // The field the animals live in.
+    private Field field;
+    // The random numbers of the simulation.
+    private Randomizer randomizer;
+    // Decides which animals act in a step.
+    private SleepScheduler scheduler;
+    // The storage the results of a step are written to.
+    private FieldStorage back;
+    // The threads the animals act on.
+    private ForkJoinPool pool;
+    // The cells claimed in the step, and who gets them.
+    private ClaimTable claims;
+
+    // The step being run.
+    private int step;
+    // The animals at the start of the step, and where they were.
+    private Animal[] acting;
+    private Location[] origins;
+    // The number of animals at the start of the step.
+    private int count;
+    // Whether each animal has been given the cell of its prey.
+    private boolean[] fed;
+    // The animals born in each block, and where their parents were.
+    private List<List<Animal>> births;
+    private List<List<Location>> birthOrigins;
+    // Records what the animals do, or null.
+    private EngineMetrics metrics;
+
+    /**
+     * Create a stepper for a field.
+     * @param field The field the animals live in. Its storage must
+     *              support createEmpty.
+     * @param randomizer The random numbers of the simulation.
+     * @param scheduler Decides which animals act in a step.
+     * @param threads The number of threads the animals act on.
+     */
+    public SynchronousStepper(Field field, Randomizer randomizer, SleepScheduler scheduler, int threads)
+    {
+        this.field = field;
+        this.randomizer = randomizer;
+        this.scheduler = scheduler;
+        back = field.getStorage().createEmpty();
+        pool = new ForkJoinPool(threads);
+        claims = new ClaimTable();
+        acting = new Animal[0];
+        origins = new Location[0];
+        fed = new boolean[0];
+        births = new ArrayList<>();
+        birthOrigins = new ArrayList<>();
+    }
+
+    /**
+     * Let every animal act once, on the field as it was at the start
+     * of the step. Dead animals are removed from the list and newly born
+     * animals are added to the end of it.
+     * @param animals The animals in the field.
+     * @param step The step being run.
+     */
+    public void step(List<Animal> animals, int step)
+    {
+        this.step = step;
+        start(animals);
+
+        field.setFrozen(true);
+        int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if(blocks > 0) {
+            pool.invoke(new BlockTask(0, blocks));
+        }
+        // Meals are eaten and losers put back on this thread.
+        EngineMetrics.Recorder recorder = metrics != null ? metrics.bind() : null;
+        resolveMeals();
+        resolveMoves();
+        field.setFrozen(false);
+
+        // Write the survivors to the back storage and make it the front.
+        // The storage is swapped behind the back of the field, so the
+        // cells that change are recorded here: where an animal died or
+        // left, and where one arrived or was born. The census is kept
+        // by tile, so an animal that moves is counted out of its old
+        // cell and into its new one.
+        DirtyTiles changes = field.getChanges();
+        Census census = field.getCensus();
+        animals.clear();
+        for(int i = 0; i < count; i++) {
+            Animal animal = acting[i];
+            Location origin = origins[i];
+            if(animal.isAlive()) {
+                animals.add(animal);
+                write(animal);
+                Location location = animal.getLocation();
+                if(!location.equals(origin)) {
+                    if(recorder != null) {
+                        recorder.moved(1);
+                    }
+                    changes.mark(origin.getRow(), origin.getCol());
+                    changes.mark(location.getRow(), location.getCol());
+                    census.remove(origin.getRow(), origin.getCol(), animal.getSpecies().getCode(), animal.getGender());
+                    census.add(location.getRow(), location.getCol(), animal.getSpecies().getCode(), animal.getGender());
+                }
+            }
+            else {
+                changes.mark(origin.getRow(), origin.getCol());
+                census.remove(origin.getRow(), origin.getCol(), animal.getSpecies().getCode(), animal.getGender());
+            }
+        }
+        for(int block = 0; block < blocks; block++) {
+            for(Animal young : births.get(block)) {
+                if(young.isAlive()) {
+                    if(recorder != null) {
+                        recorder.born(young.getSpecies().getCode(), 1);
+                    }
+                    animals.add(young);
+                    write(young);
+                    Location location = young.getLocation();
+                    changes.mark(location.getRow(), location.getCol());
+                    census.add(location.getRow(), location.getCol(), young.getSpecies().getCode(), young.getGender());
+                }
+            }
+        }
+        FieldStorage front = field.swapStorage(back);
+        // The old front only holds animals where they started the step.
+        for(int i = 0; i < count; i++) {
+            front.clear(origins[i].getRow(), origins[i].getCol());
+            acting[i] = null;
+        }
+        back = front;
+        if(recorder != null) {
+            EngineMetrics.unbind();
+        }
+    }
+
+    /**
+     * Record what the animals do in each step in metrics. Moves and
+     * births are counted once the cells claimed have been shared out.
+     * @param metrics The metrics, or null to stop recording.
+     */
+    public void setMetrics(EngineMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Stop the threads. The stepper must not be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Record the animals at the start of the step and where they are.
+     * @param animals The animals in the field.
+     */
+    private void start(List<Animal> animals)
+    {
+        count = 0;
+        if(acting.length < animals.size()) {
+            int size = Math.max(animals.size(), acting.length * 2);
+            acting = new Animal[size];
+            origins = new Location[size];
+            fed = new boolean[size];
+        }
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                acting[count] = animal;
+                origins[count] = animal.getLocation();
+                fed[count] = false;
+                count++;
+            }
+        }
+        int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        while(births.size() < blocks) {
+            births.add(new ArrayList<>());
+            birthOrigins.add(new ArrayList<>());
+        }
+        for(int block = 0; block < births.size(); block++) {
+            births.get(block).clear();
+            birthOrigins.get(block).clear();
+        }
+    }
+
+    /**
+     * Let the animals of a block act.
+     * @param block The block.
+     */
+    private void runBlock(int block)
+    {
+        List<Animal> newborn = births.get(block);
+        List<Location> parents = birthOrigins.get(block);
+        int end = Math.min(count, (block + 1) * BLOCK_SIZE);
+        EngineMetrics.Recorder recorder = metrics != null ? metrics.bind() : null;
+        for(int i = block * BLOCK_SIZE; i < end; i++) {
+            if(!scheduler.readyToAct(acting[i])) {
+                continue;
+            }
+            int before = newborn.size();
+            randomizer.startAct(step, origins[i]);
+            if(recorder != null) {
+                recorder.time(acting[i], newborn);
+            }
+            else {
+                acting[i].act(newborn);
+            }
+            for(int k = before; k < newborn.size(); k++) {
+                parents.add(origins[i]);
+            }
+        }
+        if(recorder != null) {
+            EngineMetrics.unbind();
+        }
+    }
+
+    /**
+     * Give each animal that was eaten to one of the predators that
+     * went for it. The others stay where they were and go hungry.
+     */
+    private void resolveMeals()
+    {
+        claims.reset(count);
+        for(int i = 0; i < count; i++) {
+            Animal animal = acting[i];
+            if(animal.isAlive() && animal.getPrey() != null) {
+                claims.offer(cellOf(animal.getLocation()), priorityOf(i), i);
+            }
+        }
+        // Every meal is decided before any is eaten, so that an animal
+        // which is eaten still gets the meal it won, whatever the order.
+        for(int i = 0; i < count; i++) {
+            Animal animal = acting[i];
+            fed[i] = animal.isAlive() && animal.getPrey() != null
+                && claims.winner(cellOf(animal.getLocation())) == i;
+        }
+        for(int i = 0; i < count; i++) {
+            Animal animal = acting[i];
+            if(animal.getPrey() != null) {
+                if(!fed[i] && animal.isAlive()) {
+                    animal.setLocation(origins[i]);
+                }
+                // Animals that starved or got old before the meal was
+                // resolved go without.
+                animal.finishMeal(fed[i]);
+            }
+        }
+    }
+
+    /**
+     * Give each cell that was empty at the start of the step to one of
+     * the animals that moved or were born into it. Animals that lose
+     * stay where they were; young that lose are not born.
+     */
+    private void resolveMoves()
+    {
+        int born = 0;
+        for(List<Animal> block : births) {
+            born += block.size();
+        }
+        claims.reset(count + born);
+        for(int i = 0; i < count; i++) {
+            Animal animal = acting[i];
+            if(isMover(i)) {
+                claims.offer(cellOf(animal.getLocation()), priorityOf(i), i);
+            }
+        }
+        int claimant = count;
+        for(int block = 0; block < births.size(); block++) {
+            List<Location> parents = birthOrigins.get(block);
+            List<Animal> newborn = births.get(block);
+            for(int k = 0; k < newborn.size(); k++) {
+                long cell = cellOf(newborn.get(k).getLocation());
+                long claim = CounterRandom.combine(cellOf(parents.get(k)), cell);
+                claims.offer(cell, randomizer.priority(step, claim), claimant);
+                claimant++;
+            }
+        }
+
+        for(int i = 0; i < count; i++) {
+            Animal animal = acting[i];
+            if(isMover(i) && claims.winner(cellOf(animal.getLocation())) != i) {
+                animal.setLocation(origins[i]);
+            }
+        }
+        claimant = count;
+        for(List<Animal> newborn : births) {
+            for(Animal young : newborn) {
+                if(claims.winner(cellOf(young.getLocation())) != claimant) {
+                    young.setDead();
+                }
+                claimant++;
+            }
+        }
+    }
+
+    /**
+     * @return true if an animal is alive and moved into an empty cell.
+     */
+    private boolean isMover(int i)
+    {
+        Animal animal = acting[i];
+        return animal.isAlive() && !fed[i] && !animal.getLocation().equals(origins[i]);
+    }
+
+    /**
+     * @return The priority of the claims of the animal that started
+     *         the step in a cell.
+     */
+    private long priorityOf(int i)
+    {
+        return randomizer.priority(step, cellOf(origins[i]));
+    }
+
+    /**
+     * Write an animal to the back storage at its location.
+     * @param animal The animal.
+     */
+    private void write(Animal animal)
+    {
+        Location location = animal.getLocation();
+        back.set(location.getRow(), location.getCol(), animal);
+    }
+
+    /**
+     * @return A number identifying a cell of the field.
+     */
+    private long cellOf(Location location)
+    {
+        return (long) location.getRow() * field.getWidth() + location.getCol();
+    }
+
+    /**
+     * Lets the animals of a range of blocks act, splitting the range
+     * between threads.
+     */
+    @SuppressWarnings("serial")
+    private class BlockTask extends RecursiveAction
+    {
+        // The range of blocks.
+        private int from, to;
+
+        /**
+         * Create a task for a range of blocks.
+         * @param from The first block of the range.
+         * @param to The end of the range, exclusive.
+         */
+        BlockTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute()
+        {
+            if(to - from == 1) {
+                runBlock(from);
+            }
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BlockTask(from, middle), new BlockTask(middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs one step of the simulation on several threads. The field is
+ * divided into tiles, and the tiles are coloured like a checkerboard
+ * with four colours, so that no two tiles of the same colour touch.
+ * The colours are run one after another, and the tiles of a colour
+ * are run at the same time on a ForkJoinPool.
+ *
+ * An animal only looks at and changes the cells next to its own, so
+ * animals in tiles of the same colour never see each other's changes.
+ * Each animal acts once, in the tile it was in at the start of the
+ * step, even if it moves into another tile during the step. Animals
+ * draw their random numbers from a generator started for their cell
+ * and step, so the results are the same whatever the number of threads.
+ *
+ * Tiles with no animals in them are not handed to the threads or even
+ * looked at, and the lists of a tile are only made once an animal is
+ * in it, so empty regions of the field cost next to nothing.
+ *
+ * Tiles are a whole number of the words used by the field storage
+ * bitmaps, and of its chunks, so that tiles running at the same time
+ * never write to the same word of memory.
+ *
+ * @author Haroon Yasin (K20008368), Rahi Al-Asif (K21063694) and Mohammed Kazi (K21050213)
+ * @version 1.0
+ */
+public class TiledStepper
+{
+    // The number of rows in a tile. A multiple of the chunk height of
+    // ChunkedFieldStorage, and at least two chunks.
+    public static final int TILE_ROWS = 2 * ChunkedFieldStorage.CHUNK_ROWS;
+    // The number of columns in a tile. A multiple of the bits in a
+    // bitmap word, and at least two words, so that the edge words of
+    // the tile between two running tiles are not shared.
+    public static final int TILE_COLS = 2 * Long.SIZE;
+    // The number of colours of the checkerboard.
+    private static final int COLOURS = 4;
+    // The number of tiles run by one task before it stops splitting.
+    private static final int TILES_PER_TASK = 2;
+
+    // The random numbers of the simulation.
+    private Randomizer randomizer;
+    // Decides which animals act in a step.
+    private SleepScheduler scheduler;
+    // The step being run.
+    private int step;
+    // The number of tiles down and across the field.
+    private int tileRows, tileCols;
+    // The animals that start the step in each tile, in list order, and
+    // the animals born in each tile during the step. The lists of a
+    // tile are only made once an animal is in it.
+    private List<Animal>[] residents;
+    private List<Animal>[] births;
+    // The tiles with animals in them in the current step, in the
+    // first occupiedCount entries.
+    private int[] occupied;
+    private int occupiedCount;
+    // The tiles of each colour with animals in them in the current step.
+    private int[][] occupiedOfColour;
+    // The threads the tiles are run on.
+    private ForkJoinPool pool;
+    // Records what the animals do, or null.
+    private EngineMetrics metrics;
+
+    /**
+     * Create a stepper for a field.
+     * @param field The field the animals live in.
+     * @param randomizer The random numbers of the simulation.
+     * @param scheduler Decides which animals act in a step.
+     * @param threads The number of threads to run tiles on.
+     */
+    @SuppressWarnings("unchecked")
+    public TiledStepper(Field field, Randomizer randomizer, SleepScheduler scheduler, int threads)
+    {
+        this.randomizer = randomizer;
+        this.scheduler = scheduler;
+        tileRows = (field.getDepth() + TILE_ROWS - 1) / TILE_ROWS;
+        tileCols = (field.getWidth() + TILE_COLS - 1) / TILE_COLS;
+        int tiles = tileRows * tileCols;
+        residents = (List<Animal>[]) new List<?>[tiles];
+        births = (List<Animal>[]) new List<?>[tiles];
+        occupied = new int[16];
+        occupiedOfColour = new int[COLOURS][16];
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * @return The number of threads the tiles are run on.
+     */
+    public int getThreads()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Let every animal act once. Dead animals are removed from the
+     * list and newly born animals are added to it. The list ends up
+     * ordered by tile: the survivors of each tile in turn, then the
+     * animals born in each tile in turn.
+     * @param animals The animals in the field.
+     * @param step The step being run.
+     */
+    public void step(List<Animal> animals, int step)
+    {
+        this.step = step;
+        occupiedCount = 0;
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                Location location = animal.getLocation();
+                addResident(tileOf(location.getRow(), location.getCol()), animal);
+            }
+        }
+        // Only the occupied tiles are visited, in tile order.
+        Arrays.sort(occupied, 0, occupiedCount);
+        for(int colour = 0; colour < COLOURS; colour++) {
+            int count = 0;
+            for(int i = 0; i < occupiedCount; i++) {
+                int tile = occupied[i];
+                if(colourOf(tile) == colour) {
+                    if(count == occupiedOfColour[colour].length) {
+                        occupiedOfColour[colour] = Arrays.copyOf(occupiedOfColour[colour], count * 2);
+                    }
+                    occupiedOfColour[colour][count++] = tile;
+                }
+            }
+            if(count > 0) {
+                pool.invoke(new TileTask(occupiedOfColour[colour], 0, count));
+            }
+        }
+
+        animals.clear();
+        for(int i = 0; i < occupiedCount; i++) {
+            List<Animal> tile = residents[occupied[i]];
+            for(Animal animal : tile) {
+                if(animal.isAlive()) {
+                    animals.add(animal);
+                }
+            }
+            tile.clear();
+        }
+        for(int i = 0; i < occupiedCount; i++) {
+            List<Animal> tile = births[occupied[i]];
+            // Some of the newly born may already have been eaten.
+            for(Animal animal : tile) {
+                if(animal.isAlive()) {
+                    animals.add(animal);
+                }
+            }
+            tile.clear();
+        }
+    }
+
+    /**
+     * Add an animal to the residents of a tile, making the lists of
+     * the tile if it has never been occupied.
+     * @param tile The tile.
+     * @param animal The animal.
+     */
+    private void addResident(int tile, Animal animal)
+    {
+        if(residents[tile] == null) {
+            residents[tile] = new ArrayList<>();
+            births[tile] = new ArrayList<>();
+        }
+        if(residents[tile].isEmpty()) {
+            if(occupiedCount == occupied.length) {
+                occupied = Arrays.copyOf(occupied, occupiedCount * 2);
+            }
+            occupied[occupiedCount++] = tile;
+        }
+        residents[tile].add(animal);
+    }
+
+    /**
+     * Record what the animals do in each step in metrics.
+     * @param metrics The metrics, or null to stop recording.
+     */
+    public void setMetrics(EngineMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Stop the threads. The stepper must not be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Let the animals that started the step in a tile act.
+     * @param tile The tile.
+     */
+    private void runTile(int tile)
+    {
+        List<Animal> newborn = births[tile];
+        EngineMetrics.Recorder recorder = metrics != null ? metrics.bind() : null;
+        for(Animal animal : residents[tile]) {
+            // Animals eaten by a tile of an earlier colour do not act.
+            if(animal.isAlive() && scheduler.readyToAct(animal)) {
+                randomizer.startAct(step, animal.getLocation());
+                if(recorder != null) {
+                    recorder.act(animal, newborn);
+                }
+                else {
+                    animal.act(newborn);
+                }
+            }
+        }
+        if(recorder != null) {
+            EngineMetrics.unbind();
+        }
+    }
+
+    /**
+     * @return The tile holding a cell.
+     */
+    private int tileOf(int row, int col)
+    {
+        return (row / TILE_ROWS) * tileCols + col / TILE_COLS;
+    }
+
+    /**
+     * @return The colour of a tile on the checkerboard.
+     */
+    private int colourOf(int tile)
+    {
+        int tileRow = tile / tileCols;
+        int tileCol = tile % tileCols;
+        return ((tileRow & 1) << 1) | (tileCol & 1);
+    }
+
+    /**
+     * Runs a range of the tiles of one colour, splitting the range
+     * between threads.
+     */
+    @SuppressWarnings("serial")
+    private class TileTask extends RecursiveAction
+    {
+        // The tiles of the colour.
+        private int[] tiles;
+        // The range of the tiles to run.
+        private int from, to;
+
+        /**
+         * Create a task for a range of tiles.
+         * @param tiles The tiles of the colour being run.
+         * @param from The first tile of the range.
+         * @param to The end of the range, exclusive.
+         */
+        TileTask(int[] tiles, int from, int to)
+        {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute()
+        {
+            if(to - from <= TILES_PER_TASK) {
+                for(int i = from; i < to; i++) {
+                    runTile(tiles[i]);
+                }
+            }
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(tiles, from, middle), new TileTask(tiles, middle, to));
+            }
+        }
+    }
+}
@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -14,27 +13,26 @@ public class Vulture extends Animal
     // class variables
     
     // The age at which a vulture can start to breed.
-    private static final int BREEDING_AGE = 7;
+    static final int BREEDING_AGE = 7;
     // The age to which a vulture can live.
-    private static final int MAX_AGE = 30;
+    static final int MAX_AGE = 30;
     // The likelihood of a vulture breeding.
-    private static final double BREEDING_PROBABILITY = 0.6;
+    static final double BREEDING_PROBABILITY = 0.6;
     // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 6;
+    static final int MAX_LITTER_SIZE = 6;
     
     // The food values of each prey. In effect, these is the
     // number of steps a vulture can go before it has to eat again.
-    private static final int GIRAFFE_FOOD_VALUE = 30;
-    private static final int RHINO_FOOD_VALUE = 45;
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    static final int GIRAFFE_FOOD_VALUE = 30;
+    static final int RHINO_FOOD_VALUE = 45;
+    // The species a vulture eats.
+    static final int DIET = Species.RHINO.bit() | Species.BABOON.bit();
+    // The hours of the day between which a vulture sleeps.
+    static final int SLEEP_START = 1;
+    static final int SLEEP_END = 5;
     // A shared male birth rate for animals of this species
     //private static final float maleBirthRate;
 
-    //instance fields
-    private int age;
-    private int foodLevel;
-
     /**
      * Create a vulture. A vulture can be created as a new born (age zero
      * and not hungry) or with a random age and food level.
@@ -50,6 +48,7 @@ public class Vulture extends Animal
     {
         super(field, location, clock);
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(RHINO_FOOD_VALUE);
         }
@@ -59,6 +58,15 @@ public class Vulture extends Animal
         }
     }
     
+    /**
+     * Return the species of a vulture.
+     * @return Species.VULTURE
+     */
+    public Species getSpecies()
+    {
+        return Species.VULTURE;
+    }
+
     /**
      * This is what the vultures does most of the time: it hunts for
      * prey. In the process, it might: breed, die of hunger/old age or 
@@ -75,6 +83,8 @@ public class Vulture extends Animal
             if (shouldSleep()) {
                 // maintain hunger level
                 decrementHunger();
+                // stay where it is while asleep
+                newLocation = getLocation();
             }
             else if (isAffectedByWeather()) {
                 // vulture can't hunt prey in fog
@@ -97,7 +107,7 @@ public class Vulture extends Animal
             }
             else {
                 // Overcrowding.
-                setDead();
+                setDead(Cause.OVERCROWDING);
             }
         }
     }
@@ -109,7 +119,7 @@ public class Vulture extends Animal
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(Cause.AGE);
         }
     }
     
@@ -120,7 +130,7 @@ public class Vulture extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(Cause.STARVATION);
         }
     }
     
@@ -141,28 +151,21 @@ public class Vulture extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
+        Location here = getLocation();
+        // Only live animals are in the field, so any prey found can be eaten.
+        int prey = field.adjacentSpeciesMask(here, DIET);
+        if(prey != 0) {
+            int direction = field.randomDirection(prey);
+            Animal animal = (Animal) field.getAdjacentObject(here, direction);
+            int foodValue;
             if(animal instanceof Rhino) {
-                Rhino rhino = (Rhino) animal;
-                if(rhino.isAlive()) { 
-                    rhino.setDead();
-                    foodLevel = RHINO_FOOD_VALUE;
-                    return where;
-                }
+                foodValue = RHINO_FOOD_VALUE;
             }
-            
-            if (animal instanceof Baboon) {
-                Baboon baboon = (Baboon) animal;
-                if(baboon.isAlive()) { 
-                    baboon.setDead();
-                    foodLevel = GIRAFFE_FOOD_VALUE;
-                    return where;
-                }    
+            else {
+                foodValue = GIRAFFE_FOOD_VALUE;
             }
+            eat(animal, foodValue);
+            return field.adjacentLocation(here, direction);
         }
         return null;
     }
@@ -175,14 +178,20 @@ public class Vulture extends Animal
     private void giveBirth(List<Animal> newVultures)
     {
         // New vultures are born into adjacent locations.
-        // Get a list of adjacent free locations.
+        // Use the free adjacent locations, chosen in a random order.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Vulture young = new Vulture(false, field, loc, getClock());
-            newVultures.add(young);
+        if(births > 0) {
+            int free = field.freeAdjacentMask(here);
+            while(births > 0 && free != 0) {
+                int direction = field.randomDirection(free);
+                free &= ~(1 << direction);
+                Location loc = field.adjacentLocation(here, direction);
+                Vulture young = new Vulture(false, field, loc, getClock());
+                newVultures.add(young);
+                births--;
+            }
         }
     }
         
@@ -193,6 +202,7 @@ public class Vulture extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
             births = rand.nextInt(MAX_LITTER_SIZE) + 1;
@@ -221,21 +231,7 @@ public class Vulture extends Animal
 
     private boolean isCompatibleAnimal()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Vulture){
-                Vulture vulture = (Vulture) animal;
-                if(vulture.getGender() == Gender.Male){
-                    return true;
-                }
-                
-                }
-            }
-            return false;
+        return getField().adjacentMaleMask(getLocation(), Species.VULTURE.bit()) != 0;
     }
     
     /**
@@ -244,10 +240,17 @@ public class Vulture extends Animal
      */
     public boolean isAffectedByWeather() 
     {
-        Environment.Weather weather = getClock().getCurrentWeather();
+        return isAffectedBy(getClock().getCurrentWeather());
+    }
 
-        boolean isAffectedByWeather = (weather == Environment.Weather.FOG);
-        return isAffectedByWeather;
+    /**
+     * Check whether vultures are affected by the given weather.
+     * @param weather The weather.
+     * @return true if a vulture cannot hunt or graze in that weather.
+     */
+    static boolean isAffectedBy(Environment.Weather weather)
+    {
+        return (weather == Environment.Weather.FOG);
     }
     
     /**
@@ -260,6 +263,6 @@ public class Vulture extends Animal
         int hourOfDay = getClock().getHourOfDay();
         
         // Lions should sleep between 18:00 and 23:00
-        return hourOfDay >= 1 && hourOfDay <= 5;
+        return hourOfDay >= SLEEP_START && hourOfDay <= SLEEP_END;
     }
 }
\ No newline at end of file